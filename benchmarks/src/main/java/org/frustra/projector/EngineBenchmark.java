@@ -0,0 +1,75 @@
+package org.frustra.projector;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.frustra.projector.gfx.BenchmarkScene;
+import org.frustra.projector.linear.Vector3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks a single EngineThread tick with a given number of live particles.
+ * The particles are refilled before every tick, since ticking ages them.
+ * The particle update runs on the given number of worker threads.
+ * 
+ * @author Jacob Wirth
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"})
+public class EngineBenchmark {
+	@Param({"1000", "100000", "1000000"})
+	int particles;
+
+	@Param({"1", "4"})
+	int threads;
+
+	EngineThread engine;
+	Random random;
+
+	@Setup
+	public void setup() {
+		BenchmarkScene.create("1280x720");
+		engine = new EngineThread(new ForkJoinPool(threads));
+		random = new Random(1);
+	}
+
+	@Setup(Level.Invocation)
+	public void spawn() {
+		Projector.particles.clear();
+		Projector.fires.clear();
+		Vector3 dir = new Vector3();
+		Vector3 loc = new Vector3();
+		// Spread particles around the scene, some of them heading into the sphere and cube.
+		for (int i = 0; i < particles; i++) {
+			loc.x = random.nextDouble() * 60 - 10;
+			loc.y = random.nextDouble() * 60 + 30;
+			loc.z = random.nextDouble() * 60 - 10;
+			dir.x = random.nextDouble() - 0.5;
+			dir.y = -random.nextDouble();
+			dir.z = random.nextDouble() - 0.5;
+			Projector.particles.add(loc, dir, random.nextInt(200), 0.4);
+		}
+	}
+
+	@Benchmark
+	public void tick() {
+		engine.tick();
+	}
+}
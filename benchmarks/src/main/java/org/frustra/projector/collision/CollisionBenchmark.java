@@ -0,0 +1,79 @@
+package org.frustra.projector.collision;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks ColliderTree queries against a varying number of spheres and boxes spread through a 1000 unit cube.
+ * Each operation is one query with a particle sized step, so the cost per query should grow slowly with the collider count.
+ * 
+ * @author Jacob Wirth
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1)
+public class CollisionBenchmark {
+	private static final int QUERIES = 1024;
+
+	@Param({"2", "1000", "100000"})
+	int colliders;
+
+	ColliderTree tree;
+	double[] segments = new double[QUERIES * 6];
+
+	@Setup
+	public void setup() {
+		Random random = new Random(1);
+		tree = new ColliderTree();
+		for (int i = 0; i < colliders; i++) {
+			double x = random.nextDouble() * 1000, y = random.nextDouble() * 1000, z = random.nextDouble() * 1000;
+			if ((i & 1) == 0) tree.add(new SphereCollider(x, y, z, 10));
+			else tree.add(new BoxCollider(x, y, z, x + 20, y + 20, z + 20));
+		}
+		tree.update();
+		for (int i = 0; i < segments.length; i += 6) {
+			segments[i] = random.nextDouble() * 1000;
+			segments[i + 1] = random.nextDouble() * 1000;
+			segments[i + 2] = random.nextDouble() * 1000;
+			segments[i + 3] = segments[i] + random.nextDouble() * 2 - 1;
+			segments[i + 4] = segments[i + 1] + random.nextDouble() * 2 - 1;
+			segments[i + 5] = segments[i + 2] + random.nextDouble() * 2 - 1;
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void intersectsSegment(Blackhole bh) {
+		double[] s = segments;
+		for (int i = 0; i < s.length; i += 6) {
+			bh.consume(tree.intersectsSegment(s[i], s[i + 1], s[i + 2], s[i + 3], s[i + 4], s[i + 5]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(QUERIES)
+	public void contains(Blackhole bh) {
+		double[] s = segments;
+		for (int i = 0; i < s.length; i += 6) {
+			bh.consume(tree.contains(s[i], s[i + 1], s[i + 2]));
+		}
+	}
+}
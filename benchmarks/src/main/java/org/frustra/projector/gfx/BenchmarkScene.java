@@ -0,0 +1,33 @@
+package org.frustra.projector.gfx;
+
+import org.frustra.projector.Projector;
+
+/**
+ * Sets up an off screen projector for benchmarking.
+ * 
+ * @author Jacob Wirth
+ *
+ */
+public class BenchmarkScene {
+	/**
+	 * Create a headless world with the given screen size, looking at the scene from the default camera position.
+	 * @param resolution The screen size as "WIDTHxHEIGHT"
+	 */
+	public static void create(String resolution) {
+		String[] size = resolution.split("x");
+		Projector.WIDTH = Integer.parseInt(size[0]);
+		Projector.HEIGHT = Integer.parseInt(size[1]);
+		Projector.createWorld();
+		updateCamera();
+	}
+
+	/**
+	 * Move the camera to the current input location, the same way Screen.renderFrame() does.
+	 */
+	public static void updateCamera() {
+		Projector.camera.x = Projector.input.tx;
+		Projector.camera.y = Projector.input.ty;
+		Projector.camera.z = Projector.input.tz;
+		Projector.camera.setRotation(Projector.input.pitch, Projector.input.yaw);
+	}
+}
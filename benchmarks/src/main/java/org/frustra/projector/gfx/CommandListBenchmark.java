@@ -0,0 +1,70 @@
+package org.frustra.projector.gfx;
+
+import java.util.concurrent.TimeUnit;
+
+import org.frustra.projector.Projector;
+import org.frustra.projector.linear.Vector3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks drawing a recorded command list of overlapping squares, recorded farthest first,
+ * in recorded order and front to back.
+ *
+ * @author Jacob Wirth
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CommandListBenchmark {
+	@Param({"16", "64"})
+	int layers;
+
+	Screen screen;
+	CommandList list = new CommandList();
+
+	@Setup
+	public void setup() {
+		BenchmarkScene.create("1280x720");
+		screen = Projector.screen;
+		// Squares facing the default camera along (1, 1, 1), each one farther away from it.
+		Vector3 u = new Vector3(1, -1, 0).normalize().multiplyInPlace(20);
+		Vector3 v = new Vector3(1, 1, -2).normalize().multiplyInPlace(20);
+		Vector3 a = new Vector3(), b = new Vector3(), c = new Vector3(), d = new Vector3();
+		for (int i = layers - 1; i >= 0; i--) {
+			double center = 15 - i;
+			a.set(center - u.x - v.x, center - u.y - v.y, center - u.z - v.z);
+			b.set(center + u.x - v.x, center + u.y - v.y, center + u.z - v.z);
+			c.set(center + u.x + v.x, center + u.y + v.y, center + u.z + v.z);
+			d.set(center - u.x + v.x, center - u.y + v.y, center - u.z + v.z);
+			int color = 0x202020 + i * 0x030303;
+			list.addTriangle(a, b, c, color);
+			list.addTriangle(a, c, d, color);
+		}
+	}
+
+	@Benchmark
+	public void recorded() {
+		screen.clearDepth();
+		list.execute(screen);
+	}
+
+	@Benchmark
+	public void frontToBack() {
+		screen.clearDepth();
+		list.executeFrontToBack(screen, Projector.camera);
+	}
+}
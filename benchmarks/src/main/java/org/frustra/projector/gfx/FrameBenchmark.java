@@ -0,0 +1,58 @@
+package org.frustra.projector.gfx;
+
+import java.util.concurrent.TimeUnit;
+
+import org.frustra.projector.EngineThread;
+import org.frustra.projector.Projector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks drawing a whole frame off screen, with the camera's particle stream in view.
+ * 
+ * @author Jacob Wirth
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class FrameBenchmark {
+	@Param({"1280x720", "3840x2160"})
+	String resolution;
+
+	@Param({"false", "true"})
+	boolean parallel;
+
+	// Keep the static scene between frames, the camera doesn't move so only the particles are drawn again
+	@Param({"false", "true"})
+	boolean incremental;
+
+	@Setup
+	public void setup() {
+		BenchmarkScene.create(resolution);
+		Projector.input.parallelRaster = parallel;
+		Projector.input.incrementalRender = incremental;
+		// Fire particles from the camera for a few seconds so the particle stream is fully grown.
+		EngineThread engine = new EngineThread();
+		Projector.input.leftClick = true;
+		for (int i = 0; i < 180; i++) engine.tick();
+		Projector.input.leftClick = false;
+	}
+
+	@Benchmark
+	public void renderFrame() {
+		Projector.screen.renderFrame();
+	}
+}
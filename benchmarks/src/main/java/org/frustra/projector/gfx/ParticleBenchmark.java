@@ -0,0 +1,83 @@
+package org.frustra.projector.gfx;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.frustra.projector.Projector;
+import org.frustra.projector.WorldSnapshot;
+import org.frustra.projector.linear.Vector3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks drawing a cloud of fire particles in front of the camera,
+ * with the particle splatter and with one drawCircle() call per particle.
+ *
+ * @author Jacob Wirth
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ParticleBenchmark {
+	@Param({"10000", "100000"})
+	int particles;
+
+	@Param({"false", "true"})
+	boolean parallel;
+
+	Screen screen;
+	WorldSnapshot world = new WorldSnapshot();
+	Vector3 point = new Vector3();
+
+	@Setup
+	public void setup() {
+		BenchmarkScene.create("1280x720");
+		screen = Projector.screen;
+		Projector.input.parallelRaster = parallel;
+		// Particles spread through the scene, all at different ages.
+		Random random = new Random(1);
+		world.particleXyz = new float[particles * 3];
+		world.particleTtl = new int[particles];
+		for (int i = 0; i < particles; i++) {
+			world.particleXyz[i * 3] = random.nextFloat() * 40;
+			world.particleXyz[i * 3 + 1] = random.nextFloat() * 60;
+			world.particleXyz[i * 3 + 2] = random.nextFloat() * 40;
+			world.particleTtl[i] = random.nextInt(256);
+		}
+		world.particleCount = particles;
+	}
+
+	@Benchmark
+	public void splat() {
+		screen.clearDepth();
+		screen.renderParticles(world);
+	}
+
+	@Benchmark
+	public void circles() {
+		screen.clearDepth();
+		screen.binning = parallel;
+		float[] xyz = world.particleXyz;
+		for (int i = 0; i < world.particleCount; i++) {
+			point.set(xyz[i * 3], xyz[i * 3 + 1], xyz[i * 3 + 2]);
+			screen.drawCircle(point, ParticleSplatter.PARTICLE_SIZE, ParticleSplatter.color(world.particleTtl[i]));
+		}
+		if (parallel) {
+			screen.binner.flush();
+			screen.binning = false;
+		}
+	}
+}
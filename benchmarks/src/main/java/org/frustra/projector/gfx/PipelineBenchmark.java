@@ -0,0 +1,68 @@
+package org.frustra.projector.gfx;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.frustra.projector.EngineThread;
+import org.frustra.projector.Projector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the time between frames with the frame pipeline, against drawing each frame on one thread (depth 0).
+ * Frames aren't shown anywhere, so the present stage does nothing.
+ *
+ * @author Jacob Wirth
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PipelineBenchmark {
+	@Param({"1280x720", "3840x2160"})
+	String resolution;
+
+	@Param({"0", "1", "2", "3"})
+	int depth;
+
+	private FramePipeline pipeline;
+
+	@Setup
+	public void setup() {
+		BenchmarkScene.create(resolution);
+		Projector.input.parallelRaster = true;
+		// Fire particles from the camera for a few seconds so the particle stream is fully grown.
+		EngineThread engine = new EngineThread();
+		Projector.input.leftClick = true;
+		for (int i = 0; i < 180; i++) engine.tick();
+		Projector.input.leftClick = false;
+		if (depth > 0) pipeline = new FramePipeline(Projector.screen, depth) {
+			protected void present(BufferedImage image) {}
+		};
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws InterruptedException {
+		if (pipeline != null) pipeline.drain();
+	}
+
+	@Benchmark
+	public void frame() throws InterruptedException {
+		if (pipeline != null) pipeline.submit();
+		else Projector.screen.renderFrame();
+	}
+}
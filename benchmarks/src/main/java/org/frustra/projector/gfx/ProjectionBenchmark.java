@@ -0,0 +1,115 @@
+package org.frustra.projector.gfx;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.frustra.projector.Projector;
+import org.frustra.projector.linear.Vector3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks projecting world coordinates onto the screen.
+ * 
+ * @author Jacob Wirth
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ProjectionBenchmark {
+	static final int VERTICES = 1024;
+
+	Vector3[] vertices;
+	Vector3 result = new Vector3();
+	float[] packed;
+	float[] screen;
+	byte[] clipFlags;
+	Clipper clipper = new Clipper();
+
+	@Setup
+	public void setup() {
+		BenchmarkScene.create("1280x720");
+		// Random points around the scene, most of them in front of the camera.
+		Random random = new Random(1);
+		vertices = new Vector3[VERTICES];
+		for (int i = 0; i < VERTICES; i++) {
+			vertices[i] = new Vector3(random.nextDouble() * 60 - 10, random.nextDouble() * 60, random.nextDouble() * 60 - 10);
+		}
+		packed = new float[VERTICES * 3];
+		for (int i = 0; i < VERTICES; i++) {
+			packed[i * 3] = (float) vertices[i].x;
+			packed[i * 3 + 1] = (float) vertices[i].y;
+			packed[i * 3 + 2] = (float) vertices[i].z;
+		}
+		screen = new float[VERTICES * 3];
+		clipFlags = new byte[VERTICES];
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VERTICES)
+	public void project(Blackhole bh) {
+		Camera camera = Projector.camera;
+		for (int i = 0; i < VERTICES; i++) {
+			bh.consume(camera.project(vertices[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VERTICES)
+	public void projectInto(Blackhole bh) {
+		Camera camera = Projector.camera;
+		for (int i = 0; i < VERTICES; i++) {
+			bh.consume(camera.project(vertices[i], result));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VERTICES)
+	public byte[] projectAll() {
+		Projector.camera.projectAll(packed, VERTICES, screen, clipFlags, 1280, 720);
+		return clipFlags;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VERTICES)
+	public int sphereVisible() {
+		Camera camera = Projector.camera;
+		int visible = 0;
+		for (int i = 0; i < VERTICES; i++) {
+			Vector3 v = vertices[i];
+			if (camera.isSphereVisible(v.x, v.y, v.z, 2)) visible++;
+		}
+		return visible;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(VERTICES / 3)
+	public int clipTriangle() {
+		// Random triangles, some of them crossing the near plane.
+		Camera camera = Projector.camera;
+		int vertices = 0;
+		for (int i = 0; i + 2 < VERTICES; i += 3) {
+			vertices += clipper.clipTriangle(camera, this.vertices[i], this.vertices[i + 1], this.vertices[i + 2], 1280, 720);
+		}
+		return vertices;
+	}
+
+	@Benchmark
+	public void setRotation() {
+		BenchmarkScene.updateCamera();
+	}
+}
@@ -0,0 +1,101 @@
+package org.frustra.projector.gfx;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.frustra.projector.Projector;
+import org.frustra.projector.linear.Vector3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the 2D fill functions and the depth overlay of Screen.
+ * The depth test is turned off so that every call writes the same pixels.
+ * 
+ * @author Jacob Wirth
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RasterBenchmark {
+	@Param({"1280x720", "3840x2160"})
+	String resolution;
+
+	Screen screen;
+	Vector3 a, b, c;
+	Vector3[] layers;
+
+	@Setup
+	public void setup() {
+		BenchmarkScene.create(resolution);
+		Projector.input.useDepthBuffer = false;
+		screen = Projector.screen;
+		// A triangle covering about a quarter of the screen, with depth values in the visible range.
+		a = new Vector3(screen.w * 0.2, screen.h * 0.1, 0.85);
+		b = new Vector3(screen.w * 0.8, screen.h * 0.4, 0.82);
+		c = new Vector3(screen.w * 0.4, screen.h * 0.9, 0.88);
+		// Fill the depth buffer so that the overlay has work to do everywhere.
+		for (int i = 0; i < screen.depth.length; i++) {
+			screen.depth[i] = 0.8f + (i % screen.w) * 0.1f / screen.w;
+		}
+		Arrays.fill(screen.pixels, 0x808080);
+		// The same triangle 8 times, each one farther away than the one before.
+		layers = new Vector3[8 * 3];
+		for (int i = 0; i < 8; i++) {
+			layers[i * 3] = new Vector3(a.x, a.y, a.z - i * 0.01);
+			layers[i * 3 + 1] = new Vector3(b.x, b.y, b.z - i * 0.01);
+			layers[i * 3 + 2] = new Vector3(c.x, c.y, c.z - i * 0.01);
+		}
+	}
+
+	@Benchmark
+	public void fillTriangle() {
+		screen.fillTriangle(a, b, c, 0x550000, 0, 0, screen.w, screen.h);
+	}
+
+	@Benchmark
+	public void fillTriangleReference() {
+		screen.fillTriangleReference(a, b, c, 0x550000, 0, 0, screen.w, screen.h);
+	}
+
+	@Benchmark
+	public void fillLine() {
+		screen.fillLine(a, c, 0xFFFFFF, 0, 0, screen.w, screen.h);
+	}
+
+	@Benchmark
+	public void fillCircle() {
+		screen.fillCircle(b, 40, 0xFF9B00, 0, 0, screen.w, screen.h);
+	}
+
+	/**
+	 * Draw 8 layers of overdraw front to back with the depth test on, so the hidden layers can be skipped.
+	 */
+	@Benchmark
+	public void fillTriangleOverdraw() {
+		Projector.input.useDepthBuffer = true;
+		screen.clearDepth();
+		for (int i = 0; i < 8; i++) {
+			screen.fillTriangle(layers[i * 3], layers[i * 3 + 1], layers[i * 3 + 2], 0x550000, 0, 0, screen.w, screen.h);
+		}
+		Projector.input.useDepthBuffer = false;
+	}
+
+	@Benchmark
+	public void depthOverlay() {
+		screen.renderDepthOverlay();
+	}
+}
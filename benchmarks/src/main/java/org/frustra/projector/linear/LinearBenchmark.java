@@ -0,0 +1,76 @@
+package org.frustra.projector.linear;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the matrix and quaternion operations used by the camera.
+ * 
+ * @author Jacob Wirth
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LinearBenchmark {
+	Matrix4x4 a;
+	Matrix4x4 b;
+	Vector4 q1;
+	Vector4 q2;
+	Vector4 vec;
+	Matrix4x4 matrixResult = new Matrix4x4();
+	Vector4 vectorResult = new Vector4();
+
+	@Setup
+	public void setup() {
+		q1 = new Vector4(0.3, 0.1, -0.2, 0.9).normalize();
+		q2 = new Vector4(-0.1, 0.7, 0.2, 0.6).normalize();
+		a = q1.toMatrix();
+		a.setColumn(3, -50, -70, -50, 1);
+		b = q2.toMatrix();
+		vec = new Vector4(15, 55, 15, 1);
+	}
+
+	@Benchmark
+	public Matrix4x4 matrixMultiply() {
+		return a.multiply(b);
+	}
+
+	@Benchmark
+	public Matrix4x4 matrixMulInto() {
+		return a.mulInto(b, matrixResult);
+	}
+
+	@Benchmark
+	public Vector4 matrixTransform() {
+		return a.multiply(vec);
+	}
+
+	@Benchmark
+	public Vector4 quaternionMultiply() {
+		return q1.multiply(q2);
+	}
+
+	@Benchmark
+	public Vector4 quaternionMulInto() {
+		return q1.mulInto(q2, vectorResult);
+	}
+
+	@Benchmark
+	public Matrix4x4 quaternionToMatrix() {
+		return q1.toMatrix();
+	}
+}
@@ -0,0 +1,78 @@
+package org.frustra.projector.mesh;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.frustra.projector.Projector;
+import org.frustra.projector.gfx.BenchmarkScene;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks loading a generated sphere mesh from OBJ and binary PLY files, and drawing it.
+ * The files are written to a temporary directory once, so the loads mostly read from the page cache.
+ * 
+ * @author Jacob Wirth
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"})
+public class MeshBenchmark {
+	@Param({"100000", "1000000"})
+	int triangles;
+
+	Path directory, obj, ply;
+	Mesh mesh;
+
+	@Setup
+	public void setup() throws IOException {
+		mesh = MeshFiles.sphere(triangles);
+		directory = Files.createTempDirectory("mesh-benchmark");
+		obj = directory.resolve("sphere.obj");
+		ply = directory.resolve("sphere.ply");
+		MeshFiles.writeObj(mesh, obj);
+		MeshFiles.writePly(mesh, ply);
+		BenchmarkScene.create("1280x720");
+		// Put the sphere in front of the default camera.
+		mesh.fit(15, 20, 15, 30);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(obj);
+		Files.deleteIfExists(ply);
+		Files.deleteIfExists(directory);
+	}
+
+	@Benchmark
+	public Mesh loadObj() throws IOException {
+		return MeshLoader.loadObj(obj);
+	}
+
+	@Benchmark
+	public Mesh loadPly() throws IOException {
+		return MeshLoader.loadPly(ply);
+	}
+
+	@Benchmark
+	public void drawMesh() {
+		Projector.screen.clearDepth();
+		Projector.screen.drawMesh(mesh, 0xC0C0C0);
+	}
+}
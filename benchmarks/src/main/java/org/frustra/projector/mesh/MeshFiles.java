@@ -0,0 +1,120 @@
+package org.frustra.projector.mesh;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes generated meshes to OBJ and PLY files for the loader benchmarks.
+ * 
+ * @author Jacob Wirth
+ *
+ */
+public class MeshFiles {
+	/**
+	 * Create a sphere of radius 10 with about the given number of triangles.
+	 */
+	public static Mesh sphere(int triangles) {
+		int rings = Math.max(2, (int) Math.sqrt(triangles / 2.0));
+		int segments = Math.max(3, triangles / (2 * rings));
+		float[] positions = new float[(rings + 1) * (segments + 1) * 3];
+		int v = 0;
+		for (int ring = 0; ring <= rings; ring++) {
+			double a = Math.PI * ring / rings;
+			for (int segment = 0; segment <= segments; segment++) {
+				double b = Math.PI * 2 * segment / segments;
+				positions[v++] = (float) (Math.sin(a) * Math.cos(b) * 10);
+				positions[v++] = (float) (Math.cos(a) * 10);
+				positions[v++] = (float) (Math.sin(a) * Math.sin(b) * 10);
+			}
+		}
+		int[] indices = new int[rings * segments * 6];
+		int i = 0;
+		for (int ring = 0; ring < rings; ring++) {
+			for (int segment = 0; segment < segments; segment++) {
+				int a = ring * (segments + 1) + segment;
+				int b = a + segments + 1;
+				indices[i++] = a;
+				indices[i++] = b;
+				indices[i++] = a + 1;
+				indices[i++] = a + 1;
+				indices[i++] = b;
+				indices[i++] = b + 1;
+			}
+		}
+		return new Mesh(positions, positions.length / 3, indices, indices.length / 3);
+	}
+
+	/**
+	 * Create an axis aligned box between two corners.
+	 */
+	public static Mesh box(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		float[] positions = new float[8 * 3];
+		for (int i = 0; i < 8; i++) {
+			positions[i * 3] = (i & 1) == 0 ? minX : maxX;
+			positions[i * 3 + 1] = (i & 2) == 0 ? minY : maxY;
+			positions[i * 3 + 2] = (i & 4) == 0 ? minZ : maxZ;
+		}
+		int[] indices = {
+			0, 1, 3, 0, 3, 2, 4, 5, 7, 4, 7, 6,
+			0, 1, 5, 0, 5, 4, 2, 3, 7, 2, 7, 6,
+			0, 2, 6, 0, 6, 4, 1, 3, 7, 1, 7, 5
+		};
+		return new Mesh(positions, 8, indices, 12);
+	}
+
+	public static void writeObj(Mesh mesh, Path path) throws IOException {
+		Writer out = new BufferedWriter(Files.newBufferedWriter(path, StandardCharsets.US_ASCII), 1 << 16);
+		try {
+			out.write("# Generated sphere\n");
+			for (int i = 0; i < mesh.vertexCount * 3; i += 3) {
+				out.write("v " + mesh.positions[i] + " " + mesh.positions[i + 1] + " " + mesh.positions[i + 2] + "\n");
+			}
+			for (int i = 0; i < mesh.triangleCount * 3; i += 3) {
+				out.write("f " + (mesh.indices[i] + 1) + " " + (mesh.indices[i + 1] + 1) + " " + (mesh.indices[i + 2] + 1) + "\n");
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Write a big endian binary PLY file, with vertex normals as well so that vertices aren't just x, y, z.
+	 */
+	public static void writePly(Mesh mesh, Path path) throws IOException {
+		OutputStream file = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16);
+		DataOutputStream out = new DataOutputStream(file);
+		try {
+			String header = "ply\nformat binary_big_endian 1.0\n"
+				+ "element vertex " + mesh.vertexCount + "\n"
+				+ "property float x\nproperty float y\nproperty float z\n"
+				+ "property float nx\nproperty float ny\nproperty float nz\n"
+				+ "element face " + mesh.triangleCount + "\n"
+				+ "property list uchar int vertex_indices\n"
+				+ "end_header\n";
+			out.write(header.getBytes(StandardCharsets.US_ASCII));
+			for (int i = 0; i < mesh.vertexCount * 3; i += 3) {
+				out.writeFloat(mesh.positions[i]);
+				out.writeFloat(mesh.positions[i + 1]);
+				out.writeFloat(mesh.positions[i + 2]);
+				out.writeFloat(mesh.positions[i] / 10);
+				out.writeFloat(mesh.positions[i + 1] / 10);
+				out.writeFloat(mesh.positions[i + 2] / 10);
+			}
+			for (int i = 0; i < mesh.triangleCount * 3; i += 3) {
+				out.writeByte(3);
+				out.writeInt(mesh.indices[i]);
+				out.writeInt(mesh.indices[i + 1]);
+				out.writeInt(mesh.indices[i + 2]);
+			}
+		} finally {
+			out.close();
+		}
+	}
+}
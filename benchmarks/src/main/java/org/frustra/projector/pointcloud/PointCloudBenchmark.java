@@ -0,0 +1,79 @@
+package org.frustra.projector.pointcloud;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.frustra.projector.Projector;
+import org.frustra.projector.gfx.BenchmarkScene;
+import org.frustra.projector.gfx.Screen;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks drawing a generated point cloud (a wavy surface next to the cube) with a fixed point budget.
+ * The frame time should stay about the same however many points the cloud has.
+ *
+ * @author Jacob Wirth
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"})
+public class PointCloudBenchmark {
+	@Param({"1000000", "8000000"})
+	int points;
+
+	@Param({"250000"})
+	int budget;
+
+	Path file;
+	PointCloud cloud;
+	Screen screen;
+
+	@Setup
+	public void setup() throws IOException {
+		Random random = new Random(1);
+		float[] xyz = new float[points * 3];
+		int[] colors = new int[points];
+		for (int i = 0; i < points; i++) {
+			float u = random.nextFloat(), v = random.nextFloat();
+			xyz[i * 3] = 60 + 40 * u;
+			xyz[i * 3 + 1] = 20 + (float) Math.sin(u * 20) * 3 + random.nextFloat();
+			xyz[i * 3 + 2] = 15 + 40 * v;
+			colors[i] = random.nextInt(0x1000000);
+		}
+		file = Files.createTempFile("point-cloud-benchmark", ".pco");
+		PointCloudBuilder.build(xyz, colors, points, file);
+		cloud = PointCloud.open(file);
+		BenchmarkScene.create("1280x720");
+		screen = Projector.screen;
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		cloud.close();
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public void drawPointCloud() {
+		screen.clearDepth();
+		screen.drawPointCloud(cloud, budget);
+	}
+}
@@ -0,0 +1,73 @@
+package org.frustra.projector.scene;
+
+import java.util.concurrent.TimeUnit;
+
+import org.frustra.projector.Projector;
+import org.frustra.projector.gfx.BenchmarkScene;
+import org.frustra.projector.gfx.Screen;
+import org.frustra.projector.linear.Matrix4x4;
+import org.frustra.projector.mesh.Mesh;
+import org.frustra.projector.mesh.MeshFiles;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks drawing a grid of spheres, one mesh node each, with a slab between the camera and half of them,
+ * with and without occlusion culling. The slab is the only occluder.
+ *
+ * @author Jacob Wirth
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class OcclusionBenchmark {
+	@Param({"false", "true"})
+	boolean occlusion;
+
+	Screen screen;
+	Scene scene = new Scene();
+
+	@Setup
+	public void setup() {
+		BenchmarkScene.create("1280x720");
+		screen = Projector.screen;
+		MeshNode slab = new MeshNode("slab", MeshFiles.box(-70, 20, -70, 0, 22, 70), 0x806040);
+		slab.occluder = true;
+		scene.root.add(slab);
+		Mesh mesh = MeshFiles.sphere(200);
+		Matrix4x4 transform = new Matrix4x4(1);
+		for (int i = 0; i < 1600; i++) {
+			transform.setIdentity().multiplyInPlace(0.15);
+			transform.setColumn(3, (i % 40) * 3.5 - 70, 0, (i / 40) * 3.5 - 70, 1);
+			SceneNode sphere = new MeshNode("sphere" + i, mesh, 0xC0C0C0);
+			sphere.setLocal(transform);
+			scene.root.add(sphere);
+		}
+		scene.update(0);
+	}
+
+	@Benchmark
+	public void drawScene() {
+		screen.clearDepth();
+		if (occlusion) {
+			screen.occlusion.begin(Projector.camera, screen.w, screen.h);
+			scene.drawOccluders(screen.occlusion);
+		} else {
+			screen.occlusion.disable();
+		}
+		scene.drawStatic(screen);
+	}
+}
@@ -0,0 +1,89 @@
+package org.frustra.projector.scene;
+
+import java.util.concurrent.TimeUnit;
+
+import org.frustra.projector.Projector;
+import org.frustra.projector.gfx.BenchmarkScene;
+import org.frustra.projector.gfx.Screen;
+import org.frustra.projector.linear.Matrix4x4;
+import org.frustra.projector.mesh.Mesh;
+import org.frustra.projector.mesh.MeshFiles;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks a grid of small spheres drawn as instances of one mesh and as one mesh node per sphere,
+ * and updating the scene graph of mesh nodes when nothing changed and when every node moved.
+ *
+ * @author Jacob Wirth
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"})
+public class SceneBenchmark {
+	@Param({"1000", "10000"})
+	int copies;
+
+	Screen screen;
+	Scene instanced = new Scene();
+	Scene separate = new Scene();
+
+	@Setup
+	public void setup() {
+		BenchmarkScene.create("1280x720");
+		screen = Projector.screen;
+		Mesh mesh = MeshFiles.sphere(80);
+		InstancedMeshNode node = new InstancedMeshNode("spheres", mesh, 0xC0C0C0);
+		instanced.root.add(node);
+		// Spheres on a flat grid around the origin, in view of the default camera.
+		int side = (int) Math.ceil(Math.sqrt(copies));
+		double spacing = 80.0 / side;
+		Matrix4x4 transform = new Matrix4x4(1);
+		for (int i = 0; i < copies; i++) {
+			transform.setIdentity().multiplyInPlace(spacing * 0.04);
+			transform.setColumn(3, (i % side) * spacing - 40, 0, (i / side) * spacing - 40, 1);
+			node.addInstance(transform);
+			SceneNode copy = new MeshNode("sphere" + i, mesh, 0xC0C0C0);
+			copy.setLocal(transform);
+			separate.root.add(copy);
+		}
+		instanced.update(0);
+		separate.update(0);
+	}
+
+	@Benchmark
+	public void drawInstanced() {
+		screen.clearDepth();
+		instanced.drawStatic(screen);
+	}
+
+	@Benchmark
+	public void drawSeparate() {
+		screen.clearDepth();
+		separate.drawStatic(screen);
+	}
+
+	@Benchmark
+	public boolean updateUnchanged() {
+		return separate.update(0);
+	}
+
+	@Benchmark
+	public boolean updateMoved() {
+		separate.root.markDirty();
+		return separate.update(0);
+	}
+}
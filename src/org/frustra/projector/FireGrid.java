@@ -0,0 +1,194 @@
+package org.frustra.projector;
+
+import java.util.Arrays;
+
+/**
+ * Stores burning locations in a sparse grid of cubic cells, at most one fire per cell.
+ * Setting fire to a location that is already burning makes that fire stronger and last longer
+ * instead of adding another emitter at nearly the same spot.
+ *
+ * Fires are kept in fixed capacity arrays like FireParticles, and found by cell in an open addressing
+ * hash table keyed by the packed cell coordinates. Adding, finding and removing a fire are all constant time,
+ * and removing one moves the last fire into its place, so the fires stay packed for iterating.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class FireGrid {
+	/**
+	 * Ticks a fire keeps burning after it was last set alight
+	 */
+	public static final int LIFETIME = 200;
+
+	/**
+	 * Most intensity a fire can build up, every time a fire is set alight it gains 1
+	 */
+	public static final float MAX_INTENSITY = 4;
+
+	/**
+	 * Maximum number of fires burning at the same time
+	 */
+	public final int capacity;
+
+	/**
+	 * Size of a grid cell, fires closer than this are usually merged
+	 */
+	public final double cellSize;
+
+	// Where the fire in each cell was first lit, particles are emitted from here
+	public final double[] x, y, z;
+	// How strongly each fire burns, particles are emitted in proportion to this
+	public final float[] intensity;
+	// Ticks left until each fire burns out
+	public final int[] life;
+	// Packed cell coordinates of each fire
+	private final long[] cell;
+	private int count = 0;
+
+	/*
+	 * Hash table from packed cell coordinates to fire index, using linear probing.
+	 * The table is at most half full, and removals shift the following entries back instead of leaving markers.
+	 */
+	private static final long EMPTY = -1;
+	private final long[] keys;
+	private final int[] index;
+	private final int mask;
+
+	// Cell coordinates are packed into 21 bits each, around the origin
+	private static final int CELL_BITS = 21;
+	private static final long CELL_MASK = (1L << CELL_BITS) - 1;
+	private static final int CELL_OFFSET = 1 << (CELL_BITS - 1);
+
+	/**
+	 * @param capacity The maximum number of fires
+	 * @param cellSize The size of a grid cell
+	 */
+	public FireGrid(int capacity, double cellSize) {
+		this.capacity = capacity;
+		this.cellSize = cellSize;
+		this.x = new double[capacity];
+		this.y = new double[capacity];
+		this.z = new double[capacity];
+		this.intensity = new float[capacity];
+		this.life = new int[capacity];
+		this.cell = new long[capacity];
+		int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) * 2;
+		this.keys = new long[size];
+		this.index = new int[size];
+		this.mask = size - 1;
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/**
+	 * @return The number of burning fires
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Put out all fires
+	 */
+	public void clear() {
+		if (count == 0) return;
+		Arrays.fill(keys, EMPTY);
+		count = 0;
+	}
+
+	/**
+	 * Set fire to a location. If its cell is already burning, the fire there gets stronger and starts its
+	 * lifetime over, otherwise a new fire is lit.
+	 * @return false if a new fire was needed but the grid is full
+	 */
+	public boolean ignite(double x, double y, double z) {
+		long key = key(x, y, z);
+		int slot = find(key);
+		if (keys[slot] != EMPTY) {
+			int i = index[slot];
+			intensity[i] = Math.min(MAX_INTENSITY, intensity[i] + 1);
+			life[i] = LIFETIME;
+			return true;
+		}
+		if (count >= capacity) return false;
+		int i = count++;
+		this.x[i] = x;
+		this.y[i] = y;
+		this.z[i] = z;
+		intensity[i] = 1;
+		life[i] = LIFETIME;
+		cell[i] = key;
+		keys[slot] = key;
+		index[slot] = i;
+		return true;
+	}
+
+	/**
+	 * @return The index of the fire burning in the cell around the given location, or -1 if there is none
+	 */
+	public int indexOf(double x, double y, double z) {
+		int slot = find(key(x, y, z));
+		return keys[slot] == EMPTY ? -1 : index[slot];
+	}
+
+	/**
+	 * Put out the fire at index i by moving the last fire into its place.
+	 * @param i
+	 */
+	public void remove(int i) {
+		if (i < 0 || i >= count) throw new IndexOutOfBoundsException("Fire " + i + " of " + count);
+		deleteSlot(find(cell[i]));
+		int last = --count;
+		if (i == last) return;
+		x[i] = x[last];
+		y[i] = y[last];
+		z[i] = z[last];
+		intensity[i] = intensity[last];
+		life[i] = life[last];
+		cell[i] = cell[last];
+		index[find(cell[i])] = i;
+	}
+
+	/**
+	 * Pack the coordinates of the cell around a location into a key, wrapping around far from the origin.
+	 */
+	private long key(double x, double y, double z) {
+		long cx = ((long) Math.floor(x / cellSize) + CELL_OFFSET) & CELL_MASK;
+		long cy = ((long) Math.floor(y / cellSize) + CELL_OFFSET) & CELL_MASK;
+		long cz = ((long) Math.floor(z / cellSize) + CELL_OFFSET) & CELL_MASK;
+		return cx << (CELL_BITS * 2) | cy << CELL_BITS | cz;
+	}
+
+	/**
+	 * @return The slot holding the key, or the empty slot where it would go
+	 */
+	private int find(long key) {
+		int slot = hash(key) & mask;
+		while (keys[slot] != EMPTY && keys[slot] != key) slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private static int hash(long key) {
+		key = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+		key = (key ^ (key >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return (int) (key ^ (key >>> 33));
+	}
+
+	/**
+	 * Empty a slot, moving back later entries of the same probe run that would no longer be found.
+	 */
+	private void deleteSlot(int slot) {
+		int hole = slot;
+		int next = (slot + 1) & mask;
+		while (keys[next] != EMPTY) {
+			int home = hash(keys[next]) & mask;
+			// The entry can fill the hole if the hole lies between its home slot and where it is now.
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				keys[hole] = keys[next];
+				index[hole] = index[next];
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[hole] = EMPTY;
+	}
+}
@@ -0,0 +1,255 @@
+package org.frustra.projector;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.frustra.projector.linear.Vector3;
+
+/**
+ * Stores existing fire particle information and handles particle physics.
+ * Particles are kept in fixed capacity primitive arrays (one array per attribute) so that
+ * no objects are created per particle and dead particles can be removed in constant time.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class FireParticles {
+	/**
+	 * Maximum number of particles that can be alive at the same time
+	 */
+	public final int capacity;
+
+	// Particle location
+	public final double[] x, y, z;
+	// Particle movement direction
+	public final double[] dx, dy, dz;
+	// Particle age, the particle is removed once this passes 255
+	public final int[] ttl;
+	// Chance of the particle setting fire to an object it hits
+	public final float[] spread;
+
+	private int count = 0;
+	
+	/**
+	 * Random numbers for the single threaded parts of the simulation, like spawning particles
+	 */
+	public final SplittableRandom random;
+	
+	// Particles are ticked in chunks of this size, each with its own random numbers
+	private static final int CHUNK_SIZE = 16384;
+	private final long seed;
+	private long ticks = 0;
+	// Per chunk results of the last tick: surviving particles, and locations that caught fire
+	private int[] chunkAlive = new int[0];
+	private double[][] chunkFires = new double[0][];
+	private int[] chunkFireCount = new int[0];
+
+	/**
+	 * @param capacity The maximum number of particles
+	 * @param seed The run seed, the same seed and input always gives the same particles
+	 */
+	public FireParticles(int capacity, long seed) {
+		this.capacity = capacity;
+		this.seed = seed;
+		this.random = new SplittableRandom(seed);
+		this.x = new double[capacity];
+		this.y = new double[capacity];
+		this.z = new double[capacity];
+		this.dx = new double[capacity];
+		this.dy = new double[capacity];
+		this.dz = new double[capacity];
+		this.ttl = new int[capacity];
+		this.spread = new float[capacity];
+	}
+
+	/**
+	 * @return The number of living particles
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Remove all particles
+	 */
+	public void clear() {
+		count = 0;
+	}
+
+	public boolean add(Vector3 loc, Vector3 dir) {
+		return add(loc, dir, random.nextInt(200), 0.4);
+	}
+
+	/**
+	 * Add a new particle.
+	 * @param loc The location to emit the particle from
+	 * @param dir The particle's initial direction
+	 * @param ttl The particle's initial age
+	 * @param spread The chance of the particle setting fire to an object it hits
+	 * @return false if the pool is full and the particle was dropped
+	 */
+	public boolean add(Vector3 loc, Vector3 dir, int ttl, double spread) {
+		if (count >= capacity) return false;
+		int i = count++;
+		// Randomize particle direction slightly to make it look good.
+		double theta = random.nextDouble() * Math.PI * 2;
+		double a = random.nextDouble() * 0.2;
+		double b = random.nextDouble() * 0.05;
+		double sin = Math.sin(theta);
+		double cos = Math.cos(theta);
+		this.dx[i] = dir.x + sin * b;
+		this.dy[i] = dir.y + random.nextDouble() * 0.1;
+		this.dz[i] = dir.z + cos * b;
+		this.x[i] = loc.x + sin * a + dir.x * 3;
+		this.y[i] = loc.y + dir.y * 3;
+		this.z[i] = loc.z + cos * a + dir.z * 3;
+		this.ttl[i] = ttl;
+		this.spread[i] = (float) spread;
+		return true;
+	}
+
+	/**
+	 * Remove the particle at index i by moving the last particle into its place.
+	 * @param i
+	 */
+	public void remove(int i) {
+		if (i < 0 || i >= count) throw new IndexOutOfBoundsException("Particle " + i + " of " + count);
+		int last = --count;
+		if (i == last) return;
+		x[i] = x[last];
+		y[i] = y[last];
+		z[i] = z[last];
+		dx[i] = dx[last];
+		dy[i] = dy[last];
+		dz[i] = dz[last];
+		ttl[i] = ttl[last];
+		spread[i] = spread[last];
+	}
+
+	/**
+	 * Called 60 times per second by EngineThread.
+	 * Particles are updated in fixed size chunks on the worker threads. Each chunk uses its own random
+	 * numbers, seeded from the run seed, the tick number and the chunk number, and records its deaths
+	 * and new fires. Afterwards the chunks are merged in order, so the result only depends on the seed
+	 * and never on how many threads did the work.
+	 */
+	public void tick(ForkJoinPool workers) {
+		int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		if (chunkAlive.length < chunks) {
+			chunkAlive = new int[chunks];
+			chunkFires = new double[chunks][];
+			chunkFireCount = new int[chunks];
+			for (int c = 0; c < chunks; c++) chunkFires[c] = new double[48];
+		}
+		if (chunks == 1) {
+			tickChunk(0);
+		} else if (chunks > 1) {
+			workers.invoke(new ChunkTask(0, chunks));
+		}
+		
+		// Merge the chunks in order: close the gaps left by dead particles, then light the new fires.
+		int alive = 0;
+		for (int c = 0; c < chunks; c++) {
+			int from = c * CHUNK_SIZE;
+			int n = chunkAlive[c];
+			if (from != alive && n > 0) {
+				System.arraycopy(x, from, x, alive, n);
+				System.arraycopy(y, from, y, alive, n);
+				System.arraycopy(z, from, z, alive, n);
+				System.arraycopy(dx, from, dx, alive, n);
+				System.arraycopy(dy, from, dy, alive, n);
+				System.arraycopy(dz, from, dz, alive, n);
+				System.arraycopy(ttl, from, ttl, alive, n);
+				System.arraycopy(spread, from, spread, alive, n);
+			}
+			alive += n;
+			double[] fires = chunkFires[c];
+			for (int i = 0; i < chunkFireCount[c] * 3; i += 3) {
+				Projector.fires.ignite(fires[i], fires[i + 1], fires[i + 2]);
+			}
+		}
+		count = alive;
+		ticks++;
+	}
+	
+	/**
+	 * Move the particles in one chunk, packing the survivors at the start of the chunk.
+	 */
+	private void tickChunk(int chunk) {
+		SplittableRandom chunkRandom = new SplittableRandom(mix(seed, ticks, chunk));
+		int from = chunk * CHUNK_SIZE;
+		int end = Math.min(count, from + CHUNK_SIZE);
+		int alive = from;
+		int fires = 0;
+		for (int i = from; i < end; i++) {
+			// Remove old particles
+			if (ttl[i] + 3 > 255) continue;
+			int age = ttl[i] + 3;
+			// The particle's new location based on movement direction.
+			double speed = (300 - age) / 255.0;
+			double x2 = x[i] + dx[i] * speed;
+			double y2 = y[i] + dy[i] * speed;
+			double z2 = z[i] + dz[i] * speed;
+			// Check to see if the particle will hit an object on its way to the new location and remove it.
+			if (Projector.colliders.intersectsSegment(x[i], y[i], z[i], x2, y2, z2)) {
+				// There is a random chance that a particle will catch fire to the object it hits.
+				if (chunkRandom.nextDouble() < spread[i]) {
+					double[] list = chunkFires[chunk];
+					if (list.length < fires * 3 + 3) list = chunkFires[chunk] = Arrays.copyOf(list, list.length * 2);
+					list[fires * 3] = x[i];
+					list[fires * 3 + 1] = y[i];
+					list[fires * 3 + 2] = z[i];
+					fires++;
+				}
+				continue;
+			}
+			x[alive] = x2;
+			// Slight upward movement.
+			y[alive] = y2 + 0.2;
+			z[alive] = z2;
+			dx[alive] = dx[i];
+			dy[alive] = dy[i];
+			dz[alive] = dz[i];
+			ttl[alive] = age;
+			spread[alive] = spread[i];
+			alive++;
+		}
+		chunkAlive[chunk] = alive - from;
+		chunkFireCount[chunk] = fires;
+	}
+	
+	/**
+	 * Combine the run seed, tick and chunk numbers into the seed for one chunk's random numbers.
+	 */
+	private static long mix(long seed, long tick, int chunk) {
+		long h = seed ^ (tick * 0x9E3779B97F4A7C15L) ^ (chunk * 0xC2B2AE3D27D4EB4FL);
+		h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+		h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return h ^ (h >>> 33);
+	}
+	
+	/**
+	 * Ticks a range of chunks, splitting it between worker threads.
+	 */
+	private class ChunkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final int start, end;
+		
+		ChunkTask(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+		
+		protected void compute() {
+			if (end - start > 1) {
+				int mid = (start + end) >>> 1;
+				invokeAll(new ChunkTask(start, mid), new ChunkTask(mid, end));
+			} else {
+				tickChunk(start);
+			}
+		}
+	}
+}
@@ -1,100 +1,233 @@
-package org.frustra.projector;
-
-import java.applet.Applet;
-import java.awt.BorderLayout;
-import java.awt.Dimension;
-import java.awt.Toolkit;
-import java.util.ArrayList;
-
-import javax.swing.JFrame;
-
-import org.frustra.projector.gfx.Camera;
-import org.frustra.projector.gfx.RenderThread;
-import org.frustra.projector.gfx.Screen;
-import org.frustra.projector.linear.Vector3;
-
-/**
- * The main 3D Projector class.
- * Stores instances for different classes, and is the UI window itself.
- * 
- * @author Jacob Wirth
- *
- */
-public class Projector extends Applet {
-	private static final long serialVersionUID = 1L;
-	
-	public static int WIDTH = 900;
-	public static int HEIGHT = 600;
-	
-	public static boolean isApplet = true;
-	public static JFrame frame = null;
-
-	public static Screen screen;
-	public static Camera camera;
-	
-	public static EngineThread engine;
-	public static RenderThread render;
-	public static InputHandler input;
-
-	/**
-	 * Existing fire particles
-	 */
-	public static ArrayList<FireParticle> particles;
-	
-	/**
-	 * Locations currently burning (particle emitter locations)
-	 */
-	public static ArrayList<Vector3> fires;
-	
-	public void init() {
-		screen = new Screen(WIDTH, HEIGHT, true);
-		camera = new Camera();
-		
-		input = new InputHandler();
-		screen.addKeyListener(input);
-		screen.addMouseListener(input);
-		screen.addMouseMotionListener(input);
-
-		particles = new ArrayList<FireParticle>();
-		fires = new ArrayList<Vector3>();
-
-		setSize(WIDTH, HEIGHT);
-		setPreferredSize(new Dimension(WIDTH, HEIGHT));
-		setLayout(new BorderLayout());
-		add(screen, BorderLayout.CENTER);
-	}
-	
-	public void start() {
-		engine = new EngineThread();
-		engine.start();
-		render = new RenderThread();
-		render.start();
-		input.start();
-	}
-	
-	public void stop() {
-		engine.stop();
-		render.stop();
-	}
-	
-	public static void main(String[] args) {
-		isApplet = false;
-		Projector game = new Projector();
-		
-		// The projector is not running in an applet, make the window bigger because we can.
-		Dimension size = Toolkit.getDefaultToolkit().getScreenSize();
-		WIDTH = (int) (size.width * 0.9);
-		HEIGHT = (int) (size.height * 0.9);
-		game.init();
-		
-		frame = new JFrame("3D Projector V2");
-		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-		frame.setLayout(new BorderLayout());
-		frame.add(game, BorderLayout.CENTER);
-		frame.setResizable(false);
-		frame.pack();
-		frame.setLocationRelativeTo(null);
-		frame.setVisible(true);
-		game.start();
-	}
-}
+package org.frustra.projector;
+
+import java.applet.Applet;
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.Toolkit;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import javax.swing.JFrame;
+
+import org.frustra.projector.capture.FrameCapture;
+import org.frustra.projector.collision.BoxCollider;
+import org.frustra.projector.collision.ColliderTree;
+import org.frustra.projector.collision.SphereCollider;
+import org.frustra.projector.gfx.Camera;
+import org.frustra.projector.gfx.RenderThread;
+import org.frustra.projector.gfx.Screen;
+import org.frustra.projector.mesh.Mesh;
+import org.frustra.projector.mesh.MeshLoader;
+import org.frustra.projector.metrics.Metrics;
+import org.frustra.projector.pointcloud.PointCloud;
+import org.frustra.projector.replay.InputRecorder;
+import org.frustra.projector.scene.MeshNode;
+import org.frustra.projector.scene.Scene;
+
+/**
+ * The main 3D Projector class.
+ * Stores instances for different classes, and is the UI window itself.
+ * 
+ * @author Jacob Wirth
+ *
+ */
+public class Projector extends Applet {
+	private static final long serialVersionUID = 1L;
+	
+	public static int WIDTH = 900;
+	public static int HEIGHT = 600;
+	
+	public static boolean isApplet = true;
+	public static JFrame frame = null;
+
+	public static Screen screen;
+	public static Camera camera;
+	
+	public static EngineThread engine;
+	public static RenderThread render;
+	public static InputHandler input;
+
+	/**
+	 * Maximum number of fire particles alive at once, set with -Dprojector.particleCapacity
+	 */
+	public static final int PARTICLE_CAPACITY = Integer.getInteger("projector.particleCapacity", 1 << 20);
+
+	/**
+	 * Existing fire particles
+	 */
+	public static FireParticles particles;
+	
+	/**
+	 * Seed for all random numbers in the simulation, set with -Dprojector.seed to repeat a run
+	 */
+	public static long seed = Long.getLong("projector.seed", System.nanoTime());
+	
+	/**
+	 * Maximum number of fires burning at once, set with -Dprojector.fireCapacity
+	 */
+	public static final int FIRE_CAPACITY = Integer.getInteger("projector.fireCapacity", 4096);
+	
+	/**
+	 * Locations currently burning (particle emitter locations)
+	 */
+	public static FireGrid fires;
+	
+	/**
+	 * Solid objects that particles collide with and fires can't burn inside of
+	 */
+	public static ColliderTree colliders;
+	
+	/**
+	 * Particles and fires as of the last finished tick, for drawing
+	 */
+	public static SnapshotBuffer snapshots;
+	
+	/**
+	 * Everything drawn apart from the axes, the particles and the point cloud
+	 */
+	public static Scene scene;
+	
+	/**
+	 * A mesh loaded from the file given on the command line, or null
+	 */
+	public static Mesh mesh;
+	
+	/**
+	 * A point cloud opened from the .pco file given on the command line, or null
+	 */
+	public static PointCloud pointCloud;
+	
+	/**
+	 * Records every rendered frame when turned on with -Dprojector.capture, otherwise null
+	 */
+	public static FrameCapture capture;
+	
+	/**
+	 * Records the input of every tick when turned on with -Dprojector.record, otherwise null
+	 */
+	public static InputRecorder recorder;
+	
+	public void init() {
+		createWorld();
+		screen.addKeyListener(input);
+		screen.addMouseListener(input);
+		screen.addMouseMotionListener(input);
+
+		setSize(WIDTH, HEIGHT);
+		setPreferredSize(new Dimension(WIDTH, HEIGHT));
+		setLayout(new BorderLayout());
+		add(screen, BorderLayout.CENTER);
+	}
+	
+	/**
+	 * Create the screen, camera, input and simulation state using the current WIDTH and HEIGHT.
+	 * Nothing is shown or started, so this can also be used without a window.
+	 */
+	public static void createWorld() {
+		screen = new Screen(WIDTH, HEIGHT, true);
+		camera = new Camera();
+		input = new InputHandler();
+
+		particles = new FireParticles(PARTICLE_CAPACITY, seed);
+		fires = new FireGrid(FIRE_CAPACITY, 1);
+		
+		// The default scene, with the loaded mesh if there is one. Both the cube and the mesh hide what is behind them.
+		scene = Scene.createDefault();
+		if (mesh != null) {
+			MeshNode node = new MeshNode("mesh", mesh, 0xC0C0C0);
+			node.occluder = true;
+			scene.root.add(node);
+		}
+		
+		// The sphere and cube in the default scene, and the loaded mesh
+		colliders = new ColliderTree();
+		colliders.add(new SphereCollider(15, 55, 15, 10));
+		colliders.add(new BoxCollider(5, 5, 5, 25, 25, 25));
+		if (mesh != null && mesh.triangleCount > 0) colliders.add(mesh.createCollider());
+		colliders.update();
+		
+		snapshots = new SnapshotBuffer();
+	}
+	
+	public void start() {
+		Metrics.register();
+		engine = new EngineThread();
+		engine.start();
+		render = new RenderThread();
+		render.start();
+		input.start();
+	}
+	
+	public void stop() {
+		engine.stop();
+		render.stop();
+	}
+	
+	/**
+	 * Open a point cloud (a .pco file built by PointCloudBuilder), which is read as it is drawn,
+	 * or load a mesh (an OBJ or binary PLY file) and place it next to the cube.
+	 */
+	public static void loadModel(String file) throws IOException {
+		if (file.toLowerCase().endsWith(".pco")) {
+			pointCloud = PointCloud.open(Paths.get(file));
+			System.out.println("Opened a point cloud of " + pointCloud.pointCount + " points in " + pointCloud.nodeCount + " nodes from " + file);
+		} else {
+			long start = System.currentTimeMillis();
+			mesh = MeshLoader.load(Paths.get(file)).fit(60, 20, 15, 40);
+			System.out.println("Loaded " + mesh.triangleCount + " triangles from " + file + " in " + (System.currentTimeMillis() - start) + "ms");
+		}
+	}
+	
+	public static void main(String[] args) throws IOException {
+		isApplet = false;
+		Projector game = new Projector();
+		if (args.length > 0) loadModel(args[0]);
+		
+		// The projector is not running in an applet, make the window bigger because we can.
+		Dimension size = Toolkit.getDefaultToolkit().getScreenSize();
+		WIDTH = (int) (size.width * 0.9);
+		HEIGHT = (int) (size.height * 0.9);
+		game.init();
+		
+		capture = FrameCapture.fromProperties(screen.w, screen.h);
+		if (capture != null) {
+			// Write out the queued frames when the window is closed.
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				public void run() {
+					try {
+						capture.close();
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+					System.out.println("Captured " + capture.getWritten() + " frames to " + capture.target + ", dropped " + capture.getDropped());
+				}
+			});
+		}
+		
+		// Record the input for replaying later with ReplayDriver, until the window is closed.
+		String record = System.getProperty("projector.record");
+		if (record != null && !record.isEmpty()) {
+			recorder = new InputRecorder(Paths.get(record), seed, screen.w, screen.h);
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				public void run() {
+					try {
+						recorder.close();
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+					System.out.println("Recorded " + recorder.getTicks() + " ticks of input to " + recorder.file);
+				}
+			});
+		}
+		
+		frame = new JFrame("3D Projector V2");
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.setLayout(new BorderLayout());
+		frame.add(game, BorderLayout.CENTER);
+		frame.setResizable(false);
+		frame.pack();
+		frame.setLocationRelativeTo(null);
+		frame.setVisible(true);
+		game.start();
+	}
+}
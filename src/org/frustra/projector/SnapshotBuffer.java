@@ -0,0 +1,50 @@
+package org.frustra.projector;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Passes world snapshots from one writer thread to one reader thread without either of them waiting.
+ * There are 3 snapshots: one being written, one being read, and a shared one that the writer
+ * publishes into and the reader picks up from, swapped with a single atomic operation.
+ * The reader always sees a complete snapshot, and skips any that were replaced before it looked.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class SnapshotBuffer {
+	// The shared state holds the index of the shared snapshot, plus a flag if it is newer than what the reader has.
+	private static final int INDEX = 3;
+	private static final int FRESH = 4;
+	
+	private final WorldSnapshot[] snapshots = { new WorldSnapshot(), new WorldSnapshot(), new WorldSnapshot() };
+	private final AtomicInteger shared = new AtomicInteger(1);
+	// Only used by the writer
+	private int back = 0;
+	// Only used by the reader
+	private int front = 2;
+	
+	/**
+	 * The snapshot the writer can fill in. Only call this from the writer thread.
+	 */
+	public WorldSnapshot back() {
+		return snapshots[back];
+	}
+	
+	/**
+	 * Make the back snapshot available to the reader, and take over the old shared snapshot for the next write.
+	 */
+	public void publish() {
+		back = shared.getAndSet(back | FRESH) & INDEX;
+	}
+	
+	/**
+	 * The newest published snapshot. Only call this from the reader thread, the snapshot stays
+	 * unchanged until the next call.
+	 */
+	public WorldSnapshot latest() {
+		if ((shared.get() & FRESH) != 0) {
+			front = shared.getAndSet(front) & INDEX;
+		}
+		return snapshots[front];
+	}
+}
@@ -0,0 +1,42 @@
+package org.frustra.projector;
+
+/**
+ * A copy of the simulation state that the renderer needs, taken at the end of a tick.
+ * Snapshots are handed from EngineThread to RenderThread through a SnapshotBuffer,
+ * and are never changed while the renderer is using them.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class WorldSnapshot {
+	/**
+	 * The tick this snapshot was taken at
+	 */
+	public long tick = -1;
+	
+	// Particle locations packed as x, y, z, and their ages
+	public float[] particleXyz = new float[0];
+	public int[] particleTtl = new int[0];
+	public int particleCount = 0;
+	
+	/**
+	 * Copy the current particles into this snapshot, growing the arrays if needed.
+	 */
+	public void capture(long tick, FireParticles particles) {
+		this.tick = tick;
+		int count = particles.size();
+		if (particleTtl.length < count) {
+			particleXyz = new float[count * 3];
+			particleTtl = new int[count];
+		}
+		float[] xyz = particleXyz;
+		double[] x = particles.x, y = particles.y, z = particles.z;
+		for (int i = 0; i < count; i++) {
+			xyz[i * 3] = (float) x[i];
+			xyz[i * 3 + 1] = (float) y[i];
+			xyz[i * 3 + 2] = (float) z[i];
+		}
+		System.arraycopy(particles.ttl, 0, particleTtl, 0, count);
+		particleCount = count;
+	}
+}
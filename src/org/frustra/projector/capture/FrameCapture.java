@@ -0,0 +1,262 @@
+package org.frustra.projector.capture;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Records rendered frames to disk without slowing down the render thread.
+ * capture() copies the frame into a free buffer from a fixed pool and queues it, and a background thread
+ * writes queued frames out and returns their buffers to the pool. When every buffer is in use, the frame
+ * is either dropped or capture() waits for the writer, depending on the backpressure setting.
+ *
+ * Frames are written as a numbered PNG sequence in a directory, or as one raw stream of 8 bit RGB pixels
+ * with no header, which ffmpeg can read with: -f rawvideo -pix_fmt rgb24 -s WIDTHxHEIGHT -r 60 -i FILE
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class FrameCapture implements Closeable {
+	public enum Format {
+		/** Numbered PNG files in a directory */
+		PNG,
+		/** A single file of raw RGB frames */
+		RAW
+	}
+
+	public enum Backpressure {
+		/** Skip frames while the writer is behind */
+		DROP,
+		/** Make the render thread wait for the writer */
+		BLOCK
+	}
+
+	public final Path target;
+	public final Format format;
+	public final Backpressure backpressure;
+	public final int width, height;
+
+	// Free buffers, and frames waiting to be written. A frame with no pixels tells the writer to stop.
+	private final ArrayBlockingQueue<Frame> free;
+	private final ArrayBlockingQueue<Frame> queued;
+	private static final Frame END = new Frame(0);
+
+	private final AtomicLong captured = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+	private long frameNumber = 0;
+	// Held while queueing a frame and while closing, so that no frame is queued after the END marker
+	private final Object queueLock = new Object();
+	private volatile boolean closed = false;
+	private volatile IOException error;
+
+	private final FileChannel channel;
+	private final Thread writer;
+
+	private static class Frame {
+		final int[] pixels;
+		long number;
+
+		Frame(int size) {
+			this.pixels = new int[size];
+		}
+	}
+
+	/**
+	 * Start a capture. Existing files at the target are replaced.
+	 * @param target The directory for PNG files, or the file for a raw stream
+	 * @param buffers The number of frames that can be waiting for the writer at once
+	 */
+	public FrameCapture(Path target, Format format, Backpressure backpressure, int width, int height, int buffers) throws IOException {
+		if (buffers < 1) throw new IllegalArgumentException("At least one capture buffer is needed");
+		this.target = target;
+		this.format = format;
+		this.backpressure = backpressure;
+		this.width = width;
+		this.height = height;
+		if (format == Format.PNG) {
+			Files.createDirectories(target);
+			channel = null;
+		} else {
+			Path parent = target.toAbsolutePath().getParent();
+			if (parent != null) Files.createDirectories(parent);
+			channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		}
+		free = new ArrayBlockingQueue<Frame>(buffers);
+		queued = new ArrayBlockingQueue<Frame>(buffers + 1);
+		for (int i = 0; i < buffers; i++) free.add(new Frame(width * height));
+
+		writer = new Thread(new Runnable() {
+			public void run() {
+				writeFrames();
+			}
+		}, "Frame Capture");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Start a capture configured by system properties, or return null if capturing is off:
+	 * -Dprojector.capture=PATH turns it on. A path ending in .rgb or .raw is written as a raw stream,
+	 * anything else as a directory of PNG files.
+	 * -Dprojector.capture.backpressure=drop|block picks what happens when the writer falls behind (default drop).
+	 * -Dprojector.capture.buffers=N sets how many frames can wait for the writer (default 8).
+	 */
+	public static FrameCapture fromProperties(int width, int height) throws IOException {
+		String path = System.getProperty("projector.capture");
+		if (path == null || path.isEmpty()) return null;
+		String name = path.toLowerCase();
+		Format format = name.endsWith(".rgb") || name.endsWith(".raw") ? Format.RAW : Format.PNG;
+		Backpressure backpressure = Backpressure.valueOf(System.getProperty("projector.capture.backpressure", "drop").toUpperCase());
+		int buffers = Integer.getInteger("projector.capture.buffers", 8);
+		return new FrameCapture(Paths.get(path), format, backpressure, width, height, buffers);
+	}
+
+	/**
+	 * Queue a copy of a frame to be written. Only one thread may capture at a time, but another thread
+	 * may close the capture meanwhile. Frames captured once it is closed are dropped.
+	 * @param pixels The frame's pixels, width * height of them as 0xRRGGBB
+	 * @return false if the frame was dropped
+	 */
+	public boolean capture(int[] pixels) {
+		if (closed) {
+			dropped.incrementAndGet();
+			return false;
+		}
+		Frame frame = free.poll();
+		if (frame == null && backpressure == Backpressure.BLOCK) {
+			try {
+				frame = free.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (frame == null) {
+			dropped.incrementAndGet();
+			return false;
+		}
+		System.arraycopy(pixels, 0, frame.pixels, 0, width * height);
+		synchronized (queueLock) {
+			// The writer stops at the END marker, so a frame queued after it would never be written.
+			if (closed) {
+				free.add(frame);
+				dropped.incrementAndGet();
+				return false;
+			}
+			frame.number = frameNumber++;
+			queued.add(frame);
+		}
+		captured.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * @return The number of frames queued for writing so far
+	 */
+	public long getCaptured() {
+		return captured.get();
+	}
+
+	/**
+	 * @return The number of frames skipped because no buffer was free, or because the capture was closed
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return The number of frames written to disk so far
+	 */
+	public long getWritten() {
+		return written.get();
+	}
+
+	/**
+	 * Stop capturing, and wait until every queued frame is written.
+	 * @throws IOException If writing any frame failed
+	 */
+	public void close() throws IOException {
+		synchronized (queueLock) {
+			if (closed) return;
+			closed = true;
+			queued.add(END);
+		}
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (channel != null) channel.close();
+		if (error != null) throw error;
+	}
+
+	private void writeFrames() {
+		// Scratch space reused for every frame
+		BufferedImage image = null;
+		ByteBuffer rgb = null;
+		byte[] row = null;
+		if (format == Format.PNG) {
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		} else {
+			rgb = ByteBuffer.allocateDirect(width * height * 3);
+			row = new byte[width * 3];
+		}
+
+		while (true) {
+			Frame frame;
+			try {
+				frame = queued.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (frame == END) return;
+			// After an error the remaining frames are thrown away, and close() reports it.
+			if (error == null) {
+				try {
+					if (format == Format.PNG) writePng(frame, image);
+					else writeRaw(frame, rgb, row);
+					written.incrementAndGet();
+				} catch (IOException e) {
+					error = e;
+					System.err.println("Frame capture stopped: " + e);
+				}
+			}
+			free.add(frame);
+		}
+	}
+
+	private void writePng(Frame frame, BufferedImage image) throws IOException {
+		int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		System.arraycopy(frame.pixels, 0, data, 0, data.length);
+		Path file = target.resolve(String.format("frame-%06d.png", frame.number));
+		if (!ImageIO.write(image, "png", file.toFile())) throw new IOException("No PNG writer available");
+	}
+
+	private void writeRaw(Frame frame, ByteBuffer rgb, byte[] row) throws IOException {
+		// Convert a row at a time, and copy each row into the direct buffer in one go.
+		rgb.clear();
+		int[] pixels = frame.pixels;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0, i = y * width; x < width; x++, i++) {
+				int p = pixels[i];
+				row[x * 3] = (byte) (p >> 16);
+				row[x * 3 + 1] = (byte) (p >> 8);
+				row[x * 3 + 2] = (byte) p;
+			}
+			rgb.put(row);
+		}
+		rgb.flip();
+		while (rgb.hasRemaining()) channel.write(rgb);
+	}
+}
@@ -0,0 +1,21 @@
+package org.frustra.projector.collision;
+
+/**
+ * A solid axis aligned box.
+ * 
+ * @author Jacob Wirth
+ *
+ */
+public class BoxCollider extends Collider {
+	public BoxCollider(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		super(minX, minY, minZ, maxX, maxY, maxZ);
+	}
+	
+	public boolean contains(double x, double y, double z) {
+		return x > minX && y > minY && z > minZ && x < maxX && y < maxY && z < maxZ;
+	}
+	
+	public boolean intersectsSegment(double x0, double y0, double z0, double x1, double y1, double z1) {
+		return segmentHitsBox(x0, y0, z0, x1 - x0, y1 - y0, z1 - z0, minX, minY, minZ, maxX, maxY, maxZ);
+	}
+}
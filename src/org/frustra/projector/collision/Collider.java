@@ -0,0 +1,69 @@
+package org.frustra.projector.collision;
+
+/**
+ * A solid object that particles can collide with.
+ * Colliders have a fixed axis aligned bounding box, which is what ColliderTree sorts them by.
+ * 
+ * @author Jacob Wirth
+ *
+ */
+public abstract class Collider {
+	/**
+	 * Axis aligned bounding box containing the whole collider
+	 */
+	public final double minX, minY, minZ, maxX, maxY, maxZ;
+	
+	protected Collider(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		this.minX = minX;
+		this.minY = minY;
+		this.minZ = minZ;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.maxZ = maxZ;
+	}
+	
+	/**
+	 * Check if a point is inside the collider.
+	 */
+	public abstract boolean contains(double x, double y, double z);
+	
+	/**
+	 * Check if the line segment from (x0, y0, z0) to (x1, y1, z1) touches the collider anywhere,
+	 * including segments that start or end inside it.
+	 */
+	public abstract boolean intersectsSegment(double x0, double y0, double z0, double x1, double y1, double z1);
+	
+	/**
+	 * Check if the segment from o to o + d crosses the box (minX, minY, minZ) - (maxX, maxY, maxZ).
+	 */
+	static boolean segmentHitsBox(double ox, double oy, double oz, double dx, double dy, double dz,
+			double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		// Clip the segment's range [0, 1] against each pair of planes.
+		double t0 = 0, t1 = 1;
+		if (dx == 0) {
+			if (ox < minX || ox > maxX) return false;
+		} else {
+			double a = (minX - ox) / dx, b = (maxX - ox) / dx;
+			t0 = Math.max(t0, Math.min(a, b));
+			t1 = Math.min(t1, Math.max(a, b));
+			if (t0 > t1) return false;
+		}
+		if (dy == 0) {
+			if (oy < minY || oy > maxY) return false;
+		} else {
+			double a = (minY - oy) / dy, b = (maxY - oy) / dy;
+			t0 = Math.max(t0, Math.min(a, b));
+			t1 = Math.min(t1, Math.max(a, b));
+			if (t0 > t1) return false;
+		}
+		if (dz == 0) {
+			if (oz < minZ || oz > maxZ) return false;
+		} else {
+			double a = (minZ - oz) / dz, b = (maxZ - oz) / dz;
+			t0 = Math.max(t0, Math.min(a, b));
+			t1 = Math.min(t1, Math.max(a, b));
+			if (t0 > t1) return false;
+		}
+		return true;
+	}
+}
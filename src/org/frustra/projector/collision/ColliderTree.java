@@ -0,0 +1,234 @@
+package org.frustra.projector.collision;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Holds a set of colliders in a bounding volume hierarchy, so that a query only has to test
+ * the few colliders whose bounding boxes are near it.
+ * The hierarchy is rebuilt by update() after colliders are added or removed. Queries don't change
+ * the tree, so any number of threads can run them at the same time between updates.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class ColliderTree {
+	// Maximum number of colliders in a leaf node
+	private static final int LEAF_SIZE = 4;
+
+	private final ArrayList<Collider> colliders = new ArrayList<Collider>();
+	private boolean dirty = false;
+
+	/*
+	 * Nodes are stored in flat arrays. Each node has a bounding box (6 values in bounds), and is either:
+	 * - A leaf with count[node] > 0, holding items[first[node]] to items[first[node] + count[node] - 1]
+	 * - An inner node with count[node] == 0, whose children are first[node] and first[node] + 1
+	 */
+	private Collider[] items = new Collider[0];
+	private double[] bounds = new double[0];
+	private int[] first = new int[0];
+	private int[] count = new int[0];
+	private int nodes = 0;
+
+	public void add(Collider collider) {
+		colliders.add(collider);
+		dirty = true;
+	}
+
+	public boolean remove(Collider collider) {
+		if (!colliders.remove(collider)) return false;
+		dirty = true;
+		return true;
+	}
+
+	public void clear() {
+		colliders.clear();
+		dirty = true;
+	}
+
+	public int size() {
+		return colliders.size();
+	}
+
+	/**
+	 * Rebuild the hierarchy if colliders were added or removed since the last update.
+	 * Must be called before querying, and not while other threads are querying.
+	 */
+	public void update() {
+		if (!dirty) return;
+		dirty = false;
+		items = colliders.toArray(new Collider[colliders.size()]);
+		int capacity = Math.max(1, items.length * 2);
+		bounds = new double[capacity * 6];
+		first = new int[capacity];
+		count = new int[capacity];
+		nodes = 1;
+		if (items.length == 0) return;
+		build(0, 0, items.length);
+	}
+
+	/**
+	 * Bounding box of every collider in the tree
+	 */
+	public double minX() {
+		return bounds[0];
+	}
+
+	public double minY() {
+		return bounds[1];
+	}
+
+	public double minZ() {
+		return bounds[2];
+	}
+
+	public double maxX() {
+		return bounds[3];
+	}
+
+	public double maxY() {
+		return bounds[4];
+	}
+
+	public double maxZ() {
+		return bounds[5];
+	}
+
+	private void build(int node, int start, int end) {
+		// Bounding box of the colliders, and of their centers to choose the split axis
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+		double cminX = Double.POSITIVE_INFINITY, cminY = Double.POSITIVE_INFINITY, cminZ = Double.POSITIVE_INFINITY;
+		double cmaxX = Double.NEGATIVE_INFINITY, cmaxY = Double.NEGATIVE_INFINITY, cmaxZ = Double.NEGATIVE_INFINITY;
+		for (int i = start; i < end; i++) {
+			Collider c = items[i];
+			minX = Math.min(minX, c.minX);
+			minY = Math.min(minY, c.minY);
+			minZ = Math.min(minZ, c.minZ);
+			maxX = Math.max(maxX, c.maxX);
+			maxY = Math.max(maxY, c.maxY);
+			maxZ = Math.max(maxZ, c.maxZ);
+			double x = c.minX + c.maxX, y = c.minY + c.maxY, z = c.minZ + c.maxZ;
+			cminX = Math.min(cminX, x);
+			cminY = Math.min(cminY, y);
+			cminZ = Math.min(cminZ, z);
+			cmaxX = Math.max(cmaxX, x);
+			cmaxY = Math.max(cmaxY, y);
+			cmaxZ = Math.max(cmaxZ, z);
+		}
+		int o = node * 6;
+		bounds[o] = minX;
+		bounds[o + 1] = minY;
+		bounds[o + 2] = minZ;
+		bounds[o + 3] = maxX;
+		bounds[o + 4] = maxY;
+		bounds[o + 5] = maxZ;
+
+		if (end - start <= LEAF_SIZE) {
+			first[node] = start;
+			count[node] = end - start;
+			return;
+		}
+
+		// Split the colliders in half along the axis where their centers are most spread out.
+		double sizeX = cmaxX - cminX, sizeY = cmaxY - cminY, sizeZ = cmaxZ - cminZ;
+		Comparator<Collider> axis;
+		if (sizeX >= sizeY && sizeX >= sizeZ) axis = BY_X;
+		else if (sizeY >= sizeZ) axis = BY_Y;
+		else axis = BY_Z;
+		Arrays.sort(items, start, end, axis);
+		int mid = (start + end) >>> 1;
+
+		int left = nodes;
+		nodes += 2;
+		first[node] = left;
+		count[node] = 0;
+		build(left, start, mid);
+		build(left + 1, mid, end);
+	}
+
+	private static final Comparator<Collider> BY_X = new Comparator<Collider>() {
+		public int compare(Collider a, Collider b) {
+			return Double.compare(a.minX + a.maxX, b.minX + b.maxX);
+		}
+	};
+
+	private static final Comparator<Collider> BY_Y = new Comparator<Collider>() {
+		public int compare(Collider a, Collider b) {
+			return Double.compare(a.minY + a.maxY, b.minY + b.maxY);
+		}
+	};
+
+	private static final Comparator<Collider> BY_Z = new Comparator<Collider>() {
+		public int compare(Collider a, Collider b) {
+			return Double.compare(a.minZ + a.maxZ, b.minZ + b.maxZ);
+		}
+	};
+
+	/**
+	 * Check if a point is inside any of the colliders.
+	 */
+	public boolean contains(double x, double y, double z) {
+		return items.length > 0 && contains(0, x, y, z);
+	}
+
+	private boolean contains(int node, double x, double y, double z) {
+		int o = node * 6;
+		if (x < bounds[o] || y < bounds[o + 1] || z < bounds[o + 2] || x > bounds[o + 3] || y > bounds[o + 4] || z > bounds[o + 5]) return false;
+		if (count[node] > 0) {
+			for (int i = first[node], end = i + count[node]; i < end; i++) {
+				if (items[i].contains(x, y, z)) return true;
+			}
+			return false;
+		}
+		return contains(first[node], x, y, z) || contains(first[node] + 1, x, y, z);
+	}
+
+	/**
+	 * Check if the line segment from (x0, y0, z0) to (x1, y1, z1) touches any of the colliders.
+	 */
+	public boolean intersectsSegment(double x0, double y0, double z0, double x1, double y1, double z1) {
+		return items.length > 0 && intersectsSegment(0, x0, y0, z0, x1, y1, z1);
+	}
+
+	private boolean intersectsSegment(int node, double x0, double y0, double z0, double x1, double y1, double z1) {
+		if (!overlapsSegment(node, x0, y0, z0, x1, y1, z1)) return false;
+		if (count[node] > 0) {
+			for (int i = first[node], end = i + count[node]; i < end; i++) {
+				if (items[i].intersectsSegment(x0, y0, z0, x1, y1, z1)) return true;
+			}
+			return false;
+		}
+		return intersectsSegment(first[node], x0, y0, z0, x1, y1, z1) || intersectsSegment(first[node] + 1, x0, y0, z0, x1, y1, z1);
+	}
+
+	/**
+	 * Check if a node's bounding box overlaps the bounding box of a segment.
+	 * This lets through some segments that pass by the corner of a node, but the colliders' own tests catch those.
+	 */
+	private boolean overlapsSegment(int node, double x0, double y0, double z0, double x1, double y1, double z1) {
+		int o = node * 6;
+		return Math.max(x0, x1) >= bounds[o] && Math.max(y0, y1) >= bounds[o + 1] && Math.max(z0, z1) >= bounds[o + 2]
+			&& Math.min(x0, x1) <= bounds[o + 3] && Math.min(y0, y1) <= bounds[o + 4] && Math.min(z0, z1) <= bounds[o + 5];
+	}
+
+	/**
+	 * Count the colliders that the line segment from (x0, y0, z0) to (x1, y1, z1) touches.
+	 */
+	public int countSegmentHits(double x0, double y0, double z0, double x1, double y1, double z1) {
+		return items.length > 0 ? countSegmentHits(0, x0, y0, z0, x1, y1, z1) : 0;
+	}
+
+	private int countSegmentHits(int node, double x0, double y0, double z0, double x1, double y1, double z1) {
+		if (!overlapsSegment(node, x0, y0, z0, x1, y1, z1)) return 0;
+		int hits = 0;
+		if (count[node] > 0) {
+			for (int i = first[node], end = i + count[node]; i < end; i++) {
+				if (items[i].intersectsSegment(x0, y0, z0, x1, y1, z1)) hits++;
+			}
+			return hits;
+		}
+		return countSegmentHits(first[node], x0, y0, z0, x1, y1, z1) + countSegmentHits(first[node] + 1, x0, y0, z0, x1, y1, z1);
+	}
+}
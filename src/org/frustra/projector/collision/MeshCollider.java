@@ -0,0 +1,56 @@
+package org.frustra.projector.collision;
+
+/**
+ * A solid object bounded by a closed triangle mesh.
+ * The triangles are kept in their own ColliderTree so that large meshes stay cheap to test against.
+ * 
+ * @author Jacob Wirth
+ *
+ */
+public class MeshCollider extends Collider {
+	private final ColliderTree triangles;
+	
+	/**
+	 * @param positions Vertex positions, packed as x, y, z
+	 * @param indices Vertex indices, 3 per triangle
+	 */
+	public MeshCollider(float[] positions, int[] indices) {
+		this(createTree(positions, indices));
+	}
+	
+	private MeshCollider(ColliderTree triangles) {
+		super(triangles.minX(), triangles.minY(), triangles.minZ(), triangles.maxX(), triangles.maxY(), triangles.maxZ());
+		this.triangles = triangles;
+	}
+	
+	private static ColliderTree createTree(float[] positions, int[] indices) {
+		if (indices.length < 3) throw new IllegalArgumentException("A mesh collider needs at least one triangle");
+		ColliderTree tree = new ColliderTree();
+		for (int i = 0; i + 2 < indices.length; i += 3) {
+			int a = indices[i] * 3, b = indices[i + 1] * 3, c = indices[i + 2] * 3;
+			tree.add(new TriangleCollider(positions[a], positions[a + 1], positions[a + 2],
+				positions[b], positions[b + 1], positions[b + 2],
+				positions[c], positions[c + 1], positions[c + 2]));
+		}
+		tree.update();
+		return tree;
+	}
+	
+	/**
+	 * A point is inside if a ray from it crosses the mesh an odd number of times.
+	 * The ray is tilted slightly off the x axis, so that it is unlikely to pass exactly through an edge shared by two triangles.
+	 */
+	public boolean contains(double x, double y, double z) {
+		if (x < minX || y < minY || z < minZ || x > maxX || y > maxY || z > maxZ) return false;
+		double length = maxX + 1 - x;
+		return (triangles.countSegmentHits(x, y, z, maxX + 1, y + length * 0.000137, z + length * 0.000311) & 1) == 1;
+	}
+	
+	/**
+	 * A segment touches the mesh if it crosses one of the triangles, or lies completely inside,
+	 * in which case its start is inside too.
+	 */
+	public boolean intersectsSegment(double x0, double y0, double z0, double x1, double y1, double z1) {
+		return triangles.intersectsSegment(x0, y0, z0, x1, y1, z1) || contains(x0, y0, z0);
+	}
+}
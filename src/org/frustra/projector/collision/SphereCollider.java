@@ -0,0 +1,34 @@
+package org.frustra.projector.collision;
+
+/**
+ * A solid sphere.
+ * 
+ * @author Jacob Wirth
+ *
+ */
+public class SphereCollider extends Collider {
+	public final double x, y, z, radius;
+	
+	public SphereCollider(double x, double y, double z, double radius) {
+		super(x - radius, y - radius, z - radius, x + radius, y + radius, z + radius);
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.radius = radius;
+	}
+	
+	public boolean contains(double x, double y, double z) {
+		double dx = x - this.x, dy = y - this.y, dz = z - this.z;
+		return dx * dx + dy * dy + dz * dz < radius * radius;
+	}
+	
+	public boolean intersectsSegment(double x0, double y0, double z0, double x1, double y1, double z1) {
+		// Find the closest point on the segment to the center.
+		double dx = x1 - x0, dy = y1 - y0, dz = z1 - z0;
+		double length = dx * dx + dy * dy + dz * dz;
+		double t = length == 0 ? 0 : ((x - x0) * dx + (y - y0) * dy + (z - z0) * dz) / length;
+		if (t < 0) t = 0;
+		else if (t > 1) t = 1;
+		return contains(x0 + dx * t, y0 + dy * t, z0 + dz * t);
+	}
+}
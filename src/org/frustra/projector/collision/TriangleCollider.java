@@ -0,0 +1,56 @@
+package org.frustra.projector.collision;
+
+/**
+ * A single triangle of a MeshCollider. Triangles have no inside, so only segments crossing them collide.
+ * 
+ * @author Jacob Wirth
+ *
+ */
+class TriangleCollider extends Collider {
+	private final double ax, ay, az;
+	// Edges a-b and a-c
+	private final double e1x, e1y, e1z, e2x, e2y, e2z;
+	
+	TriangleCollider(double ax, double ay, double az, double bx, double by, double bz, double cx, double cy, double cz) {
+		super(Math.min(ax, Math.min(bx, cx)), Math.min(ay, Math.min(by, cy)), Math.min(az, Math.min(bz, cz)),
+			Math.max(ax, Math.max(bx, cx)), Math.max(ay, Math.max(by, cy)), Math.max(az, Math.max(bz, cz)));
+		this.ax = ax;
+		this.ay = ay;
+		this.az = az;
+		this.e1x = bx - ax;
+		this.e1y = by - ay;
+		this.e1z = bz - az;
+		this.e2x = cx - ax;
+		this.e2y = cy - ay;
+		this.e2z = cz - az;
+	}
+	
+	public boolean contains(double x, double y, double z) {
+		return false;
+	}
+	
+	/**
+	 * Moller-Trumbore intersection, limited to the length of the segment.
+	 */
+	public boolean intersectsSegment(double x0, double y0, double z0, double x1, double y1, double z1) {
+		double dx = x1 - x0, dy = y1 - y0, dz = z1 - z0;
+		// p = d x e2
+		double px = dy * e2z - dz * e2y;
+		double py = dz * e2x - dx * e2z;
+		double pz = dx * e2y - dy * e2x;
+		double det = e1x * px + e1y * py + e1z * pz;
+		if (det == 0) return false;
+		double inv = 1 / det;
+		double sx = x0 - ax, sy = y0 - ay, sz = z0 - az;
+		double u = (sx * px + sy * py + sz * pz) * inv;
+		if (u < 0 || u > 1) return false;
+		// q = s x e1
+		double qx = sy * e1z - sz * e1y;
+		double qy = sz * e1x - sx * e1z;
+		double qz = sx * e1y - sy * e1x;
+		double v = (dx * qx + dy * qy + dz * qz) * inv;
+		if (v < 0 || u + v > 1) return false;
+		double t = (e2x * qx + e2y * qy + e2z * qz) * inv;
+		return t >= 0 && t <= 1;
+	}
+}
@@ -1,131 +1,303 @@
-package org.frustra.projector.gfx;
-
-import org.frustra.projector.Projector;
-import org.frustra.projector.linear.Matrix4x4;
-import org.frustra.projector.linear.Vector3;
-import org.frustra.projector.linear.Vector4;
-
-/**
- * Handles all camera rotations and translations.
- * Does the actual projection math.
- * 
- * @author Jacob Wirth
- *
- */
-public class Camera {
-	Matrix4x4 viewMatrix;
-	Matrix4x4 projMatrix;
-	Vector4 rotation;
-	
-	double x;
-	double y;
-	double z;
-	double pitch;
-	double yaw;
-	
-	public Camera() {
-		viewMatrix = new Matrix4x4(1);
-		projMatrix = new Matrix4x4(1);
-		// Initialize the viewport with the correct aspect ratio.
-		Vector3 viewport = new Vector3(Projector.WIDTH, Projector.HEIGHT, 0).normalize();
-		setViewport(viewport.x, viewport.y, 1, 10);
-	}
-	
-	/**
-	 * Reset the rotation vector, apply the yaw rotation, and then apply the pitch rotation (Standard first person camera)
-	 * @param pitch Up / down rotation
-	 * @param yaw Left / right rotation
-	 */
-	public void setRotation(double pitch, double yaw) {
-		this.pitch = pitch / 2.0; // Up / down
-		this.yaw = yaw / 2.0; // Left / right
-		viewMatrix = new Matrix4x4(1);
-		rotation = new Vector4(0, 0, 0, 1);
-		offsetRotation(new Vector3(1, 0, 0), this.pitch);
-		offsetRotation(new Vector3(0, 1, 0), this.yaw);
-		viewMatrix = viewMatrix.multiply(rotation.toMatrix());
-		setTranslation(new Vector3(x, y, z));
-	}
-	
-	/**
-	 * Apply a rotation to the existing rotation vector.
-	 * @param axis A unit vector in the direction of the axis
-	 * @param angle The angle to rotate around the given axis
-	 */
-	private void offsetRotation(Vector3 axis, double angle) {
-		axis = axis.multiply(Math.sin(angle));
-		double scalar = Math.cos(angle);
-		
-		Vector4 offset = new Vector4(axis, scalar);
-		
-		rotation = rotation.multiply(offset);
-		rotation = rotation.normalize();
-	}
-	
-	/**
-	 * Apply a translation to the View Matrix
-	 * @param vec
-	 */
-	private void setTranslation(Vector3 vec) {
-		this.x = vec.x;
-		this.y = vec.y;
-		this.z = vec.z;
-		Vector4 a = viewMatrix.data[0].multiply(vec.x);
-		Vector4 b = viewMatrix.data[1].multiply(vec.y);
-		Vector4 c = viewMatrix.data[2].multiply(vec.z);
-		viewMatrix.data[3] = a.add(b).add(c).add(viewMatrix.data[3]);
-	}
-	
-	/**
-	 * Move the camera to the given x, y, z coordinates (Regenerate the View Matrix in the process)
-	 * @param x
-	 * @param y
-	 * @param z
-	 */
-	public void setTranslation(double x, double y, double z) {
-		viewMatrix = new Matrix4x4(1);
-		rotation = new Vector4(0, 0, 0, 1);
-		offsetRotation(new Vector3(1, 0, 0), pitch);
-		offsetRotation(new Vector3(0, 1, 0), yaw);
-		viewMatrix = viewMatrix.multiply(rotation.toMatrix());
-		setTranslation(new Vector3(x, y, z));
-	}
-	
-	/**
-	 * Set the view port information and generate the Projection Matrix.
-	 * @param right Location of the right side of the screen
-	 * @param top Location of the top of the screen
-	 * @param near Distance of the near plane
-	 * @param far Distance of the far plane
-	 */
-	public void setViewport(double right, double top, double near, double far) {
-		projMatrix.data[0].x = near / right;
-		projMatrix.data[1].y = near / top;
-		projMatrix.data[2].z = -(far + near) / (far - near);
-		projMatrix.data[3].z = -2.0 * near * far / (far - near);
-		projMatrix.data[2].w = -2 * near;
-	}
-	
-	/**
-	 * Project a 3D world coordinate on the screen space (with a depth value)
-	 * @param vec The 3D coordinate to project
-	 * @return A normalized 2D screen coordinate (This value is between -0.5 and 0.5, 0 being the center of the screen)
-	 */
-	public Vector3 project(Vector3 vec) {
-		/*
-		 * Relative 3D Coordinate = View Matrix * vec
-		 * Result = (Projection * Relative 3D Coordinate) / w value
-		 */
-		
-		Vector4 tmp = new Vector4(vec, 1);
-		tmp = viewMatrix.multiply(tmp);
-		// Ignore points behind the near plane, they can't be projected.
-		if (tmp.z < 1) return null;
-		tmp = projMatrix.multiply(tmp);
-
-		tmp = tmp.multiply(1.0 / tmp.w);
-		tmp = tmp.multiply(0.5).add(0.5);
-
-		return new Vector3(tmp.x, tmp.y, tmp.z);
-	}
-}
+package org.frustra.projector.gfx;
+
+import org.frustra.projector.Projector;
+import org.frustra.projector.linear.Matrix4x4;
+import org.frustra.projector.linear.Vector3;
+import org.frustra.projector.linear.Vector4;
+
+/**
+ * Handles all camera rotations and translations.
+ * Does the actual projection math.
+ * 
+ * @author Jacob Wirth
+ *
+ */
+public class Camera {
+	/**
+	 * Clip flags set by projectAll()
+	 */
+	public static final byte CLIP_NEAR = 1;
+	public static final byte CLIP_LEFT = 2;
+	public static final byte CLIP_RIGHT = 4;
+	public static final byte CLIP_TOP = 8;
+	public static final byte CLIP_BOTTOM = 16;
+	
+	final Matrix4x4 viewMatrix;
+	final Matrix4x4 projMatrix;
+	// Projection * View, used for projecting many points at once
+	final Matrix4x4 viewProjMatrix;
+	final Vector4 rotation;
+	
+	// Distance of the near plane
+	double near;
+	
+	/*
+	 * World space planes of the view frustum as a, b, c, d with a unit normal (a, b, c) pointing inwards,
+	 * so a point is on the visible side when a * x + b * y + c * z + d >= 0.
+	 * The near plane comes first, then the left, right, top and bottom sides of the screen.
+	 * There is no far plane, nothing is hidden for being too far away.
+	 */
+	private final double[] planes = new double[5 * 4];
+	
+	double x;
+	double y;
+	double z;
+	double pitch;
+	double yaw;
+	
+	// Scratch space so that projecting doesn't create any objects
+	private final Vector4 offset = new Vector4();
+	private final Vector4 tmp = new Vector4();
+	
+	public Camera() {
+		viewMatrix = new Matrix4x4(1);
+		projMatrix = new Matrix4x4(1);
+		viewProjMatrix = new Matrix4x4(1);
+		rotation = new Vector4(0, 0, 0, 1);
+		// Initialize the viewport with the correct aspect ratio.
+		Vector3 viewport = new Vector3(Projector.WIDTH, Projector.HEIGHT, 0).normalize();
+		setViewport(viewport.x, viewport.y, 1, 10);
+	}
+	
+	/**
+	 * Reset the rotation vector, apply the yaw rotation, and then apply the pitch rotation (Standard first person camera)
+	 * @param pitch Up / down rotation
+	 * @param yaw Left / right rotation
+	 */
+	public void setRotation(double pitch, double yaw) {
+		this.pitch = pitch / 2.0; // Up / down
+		this.yaw = yaw / 2.0; // Left / right
+		updateViewMatrix();
+	}
+	
+	/**
+	 * Regenerate the View Matrix from the current rotation and translation.
+	 */
+	private void updateViewMatrix() {
+		rotation.set(0, 0, 0, 1);
+		offsetRotation(1, 0, 0, this.pitch);
+		offsetRotation(0, 1, 0, this.yaw);
+		// The view rotates the world the opposite way of the camera, which is the transposed rotation.
+		rotation.toMatrix(viewMatrix).transposeInPlace();
+		applyTranslation();
+		updateFrustum();
+	}
+	
+	/**
+	 * Apply a rotation to the existing rotation vector.
+	 * @param ax, ay, az A unit vector in the direction of the axis
+	 * @param angle The angle to rotate around the given axis
+	 */
+	private void offsetRotation(double ax, double ay, double az, double angle) {
+		double sin = Math.sin(angle);
+		offset.set(ax * sin, ay * sin, az * sin, Math.cos(angle));
+		
+		rotation.mulInto(offset, rotation);
+		rotation.normalizeInPlace();
+	}
+	
+	/**
+	 * Apply the current translation to the View Matrix
+	 */
+	private void applyTranslation() {
+		double[] m = viewMatrix.m;
+		for (int row = 0; row < 4; row++) {
+			m[12 + row] = m[row] * x + m[4 + row] * y + m[8 + row] * z + m[12 + row];
+		}
+	}
+	
+	/**
+	 * Move the camera to the given x, y, z coordinates (Regenerate the View Matrix in the process)
+	 * @param x
+	 * @param y
+	 * @param z
+	 */
+	public void setTranslation(double x, double y, double z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		updateViewMatrix();
+	}
+	
+	/**
+	 * Set the view port information and generate the Projection Matrix.
+	 * @param right Location of the right side of the screen
+	 * @param top Location of the top of the screen
+	 * @param near Distance of the near plane
+	 * @param far Distance of the far plane
+	 */
+	public void setViewport(double right, double top, double near, double far) {
+		this.near = near;
+		projMatrix.set(0, 0, near / right);
+		projMatrix.set(1, 1, near / top);
+		projMatrix.set(2, 2, -(far + near) / (far - near));
+		projMatrix.set(3, 2, -2.0 * near * far / (far - near));
+		projMatrix.set(2, 3, -2 * near);
+		updateFrustum();
+	}
+	
+	/**
+	 * Regenerate the combined View Projection Matrix and the frustum planes.
+	 */
+	private void updateFrustum() {
+		projMatrix.mulInto(viewMatrix, viewProjMatrix);
+		double[] v = viewMatrix.m;
+		double[] m = viewProjMatrix.m;
+		// In front of the near plane: view z >= near
+		setPlane(0, v[2], v[6], v[10], v[14] - near);
+		/*
+		 * On screen: -1 <= clip x / w <= 1, and the same for y.
+		 * w is negative in front of the near plane, so this is w <= clip x <= -w.
+		 */
+		setPlane(1, m[0] - m[3], m[4] - m[7], m[8] - m[11], m[12] - m[15]);
+		setPlane(2, -m[0] - m[3], -m[4] - m[7], -m[8] - m[11], -m[12] - m[15]);
+		setPlane(3, m[1] - m[3], m[5] - m[7], m[9] - m[11], m[13] - m[15]);
+		setPlane(4, -m[1] - m[3], -m[5] - m[7], -m[9] - m[11], -m[13] - m[15]);
+	}
+	
+	private void setPlane(int plane, double a, double b, double c, double d) {
+		double scale = 1.0 / Math.sqrt(a * a + b * b + c * c);
+		planes[plane * 4] = a * scale;
+		planes[plane * 4 + 1] = b * scale;
+		planes[plane * 4 + 2] = c * scale;
+		planes[plane * 4 + 3] = d * scale;
+	}
+	
+	/**
+	 * Check if any part of a sphere might be visible.
+	 * A sphere is only hidden if it is completely behind one of the frustum planes, so some spheres
+	 * near the corners of the frustum are reported visible even though they are not.
+	 * @param x, y, z The center of the sphere
+	 * @param radius
+	 */
+	public boolean isSphereVisible(double x, double y, double z, double radius) {
+		double[] p = planes;
+		for (int i = 0; i < p.length; i += 4) {
+			if (p[i] * x + p[i + 1] * y + p[i + 2] * z + p[i + 3] < -radius) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Check if any part of an axis aligned box might be visible, like isSphereVisible().
+	 */
+	public boolean isBoxVisible(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		double[] p = planes;
+		for (int i = 0; i < p.length; i += 4) {
+			// Test the corner of the box that is farthest along the plane's normal.
+			double a = p[i], b = p[i + 1], c = p[i + 2];
+			if (a * (a > 0 ? maxX : minX) + b * (b > 0 ? maxY : minY) + c * (c > 0 ? maxZ : minZ) + p[i + 3] < 0) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Estimate how large a sphere looks on the screen.
+	 * @param x, y, z The center of the sphere
+	 * @param radius
+	 * @param width The screen width
+	 * @return The radius of the sphere on the screen in pixels, or infinity if it reaches behind the near plane
+	 */
+	public double projectedSize(double x, double y, double z, double radius, double width) {
+		viewMatrix.transform(x, y, z, 1, tmp);
+		if (tmp.z - radius < near) return Double.POSITIVE_INFINITY;
+		projMatrix.transform(tmp, tmp);
+		return radius * Math.abs(projMatrix.get(0, 0) / tmp.w) * 0.5 * width;
+	}
+	
+	/**
+	 * Transform a 3D world coordinate into clip space, before the divide by w done by project().
+	 * @param dst Receives the clip space coordinate
+	 * @return How far the point is in front of the near plane, negative if it is behind it
+	 */
+	public double toClip(double x, double y, double z, Vector4 dst) {
+		viewMatrix.transform(x, y, z, 1, dst);
+		double distance = dst.z - near;
+		projMatrix.transform(dst, dst);
+		return distance;
+	}
+	
+	/**
+	 * Project a 3D world coordinate on the screen space (with a depth value)
+	 * @param vec The 3D coordinate to project
+	 * @return A normalized 2D screen coordinate (This value is between -0.5 and 0.5, 0 being the center of the screen)
+	 */
+	public Vector3 project(Vector3 vec) {
+		return project(vec, new Vector3());
+	}
+	
+	/**
+	 * Project a 3D world coordinate on the screen space (with a depth value) without creating any objects.
+	 * @param vec The 3D coordinate to project
+	 * @param dst Where to store the normalized 2D screen coordinate, may be the same as vec
+	 * @return dst, or null if the point is behind the near plane
+	 */
+	public Vector3 project(Vector3 vec, Vector3 dst) {
+		/*
+		 * Relative 3D Coordinate = View Matrix * vec
+		 * Result = (Projection * Relative 3D Coordinate) / w value
+		 */
+		
+		viewMatrix.transform(vec.x, vec.y, vec.z, 1, tmp);
+		// Ignore points behind the near plane, they can't be projected.
+		if (tmp.z < near) return null;
+		projMatrix.transform(tmp, tmp);
+
+		tmp.multiplyInPlace(1.0 / tmp.w);
+		tmp.multiplyInPlace(0.5).addInPlace(0.5);
+
+		return dst.set(tmp.x, tmp.y, tmp.z);
+	}
+	
+	/**
+	 * Project many 3D world coordinates at once, see project().
+	 * @param xyz Packed x, y, z coordinates
+	 * @param count The number of coordinates to project
+	 * @param outScreen Receives the packed normalized x, y, depth screen coordinates
+	 * @param outClipFlags Receives the CLIP_ flags of each coordinate, 0 if it is on screen.
+	 *        The screen coordinate of a point with CLIP_NEAR set is meaningless.
+	 */
+	public void projectAll(float[] xyz, int count, float[] outScreen, byte[] outClipFlags) {
+		projectAll(xyz, count, outScreen, outClipFlags, 1, 1);
+	}
+	
+	/**
+	 * Project many 3D world coordinates at once, scaling them to absolute screen coordinates.
+	 * @param xyz Packed x, y, z coordinates
+	 * @param count The number of coordinates to project
+	 * @param outScreen Receives the packed x, y, depth screen coordinates
+	 * @param outClipFlags Receives the CLIP_ flags of each coordinate, 0 if it is on screen.
+	 *        The screen coordinate of a point with CLIP_NEAR set is meaningless.
+	 * @param width The screen width
+	 * @param height The screen height
+	 */
+	public void projectAll(float[] xyz, int count, float[] outScreen, byte[] outClipFlags, double width, double height) {
+		// Keep the matrices in locals so that the loop only touches the coordinate arrays.
+		double[] m = viewProjMatrix.m;
+		double m0 = m[0], m4 = m[4], m8 = m[8], m12 = m[12];
+		double m1 = m[1], m5 = m[5], m9 = m[9], m13 = m[13];
+		double m2 = m[2], m6 = m[6], m10 = m[10], m14 = m[14];
+		double m3 = m[3], m7 = m[7], m11 = m[11], m15 = m[15];
+		double[] v = viewMatrix.m;
+		double v2 = v[2], v6 = v[6], v10 = v[10], v14 = v[14];
+		double near = this.near;
+		double hw = width * 0.5;
+		double hh = height * 0.5;
+		for (int i = 0, j = 0; i < count; i++, j += 3) {
+			double x = xyz[j];
+			double y = xyz[j + 1];
+			double z = xyz[j + 2];
+			double viewZ = v2 * x + v6 * y + v10 * z + v14;
+			double inv = 1.0 / (m3 * x + m7 * y + m11 * z + m15);
+			// The flags are worked out from the stored coordinates, which can round up to the screen edge.
+			float sx = (float) (((m0 * x + m4 * y + m8 * z + m12) * inv + 1) * hw);
+			float sy = (float) (((m1 * x + m5 * y + m9 * z + m13) * inv + 1) * hh);
+			outScreen[j] = sx;
+			outScreen[j + 1] = sy;
+			outScreen[j + 2] = (float) ((m2 * x + m6 * y + m10 * z + m14) * inv * 0.5 + 0.5);
+			outClipFlags[i] = (byte) ((viewZ < near ? CLIP_NEAR : 0)
+				| (sx < 0 ? CLIP_LEFT : 0) | (sx >= width ? CLIP_RIGHT : 0)
+				| (sy < 0 ? CLIP_TOP : 0) | (sy >= height ? CLIP_BOTTOM : 0));
+		}
+	}
+}
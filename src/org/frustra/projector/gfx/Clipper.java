@@ -0,0 +1,200 @@
+package org.frustra.projector.gfx;
+
+import org.frustra.projector.linear.Vector3;
+import org.frustra.projector.linear.Vector4;
+
+/**
+ * Clips lines and triangles that cross the near plane, so that the part in front of the camera can still be drawn.
+ * Vertices are clipped in homogeneous clip space, before the divide by w, where the near plane cuts every
+ * edge in a straight line. Afterwards the result is projected to the screen like Camera.project() does.
+ *
+ * Primitives reaching far past the edges of the screen are also cut down to a guard band around it,
+ * which keeps their screen coordinates small enough for the fixed point rasterizer.
+ * Anything inside the guard band is left alone, the rasterizer clips it to the screen for free.
+ *
+ * @author Jacob Wirth
+ *
+ */
+class Clipper {
+	/**
+	 * Distance in pixels that primitives may reach past the screen edges before they are clipped
+	 */
+	static final double GUARD_BAND = 8192;
+
+	// A triangle gains at most one vertex from each plane it is clipped by (near plane, 4 guard band edges).
+	private static final int MAX_VERTICES = 8;
+
+	/**
+	 * The clipped polygon (or line) in screen space, packed as x, y, depth
+	 */
+	final double[] out = new double[MAX_VERTICES * 3];
+
+	// Clip space vertices as x, y, z, w and the distance in front of the near plane
+	private final double[] clip = new double[MAX_VERTICES * 5];
+	private final double[] clipTmp = new double[MAX_VERTICES * 5];
+	private final double[] screenTmp = new double[MAX_VERTICES * 3];
+	private final Vector4 tmp = new Vector4();
+
+	/**
+	 * Clip a triangle to the near plane and the guard band.
+	 * @return The number of vertices of the convex polygon left in out, 0 if nothing is visible
+	 */
+	int clipTriangle(Camera camera, Vector3 a, Vector3 b, Vector3 c, double width, double height) {
+		return clipTriangle(camera, a.x, a.y, a.z, b.x, b.y, b.z, c.x, c.y, c.z, width, height);
+	}
+
+	int clipTriangle(Camera camera, double ax, double ay, double az, double bx, double by, double bz, double cx, double cy, double cz, double width, double height) {
+		toClip(camera, ax, ay, az, clip, 0);
+		toClip(camera, bx, by, bz, clip, 1);
+		toClip(camera, cx, cy, cz, clip, 2);
+		int count = 3;
+		if (clip[4] < 0 || clip[9] < 0 || clip[14] < 0) {
+			if (clip[4] < 0 && clip[9] < 0 && clip[14] < 0) return 0;
+			count = clipNear(clip, count, clipTmp);
+			System.arraycopy(clipTmp, 0, clip, 0, count * 5);
+		}
+		for (int i = 0; i < count; i++) toScreen(clip, i, out, width, height);
+		if (!insideGuardBand(out, count, width, height)) count = clipGuardBand(count, width, height);
+		return count;
+	}
+
+	/**
+	 * Clip a line to the near plane and the guard band.
+	 * @return false if nothing is visible, otherwise the end points are left in out
+	 */
+	boolean clipLine(Camera camera, Vector3 a, Vector3 b, double width, double height) {
+		toClip(camera, a.x, a.y, a.z, clip, 0);
+		toClip(camera, b.x, b.y, b.z, clip, 1);
+		double da = clip[4], db = clip[9];
+		if (da < 0 && db < 0) return false;
+		// Move the end point behind the near plane onto it.
+		if (da < 0) lerp(clip, 1, 0, db / (db - da), clip, 0);
+		else if (db < 0) lerp(clip, 0, 1, da / (da - db), clip, 1);
+		toScreen(clip, 0, out, width, height);
+		toScreen(clip, 1, out, width, height);
+		if (insideGuardBand(out, 2, width, height)) return true;
+
+		// Cut the line down to the guard band (Liang-Barsky), the depth changes linearly along it on screen.
+		double x0 = out[0], y0 = out[1], z0 = out[2];
+		double dx = out[3] - x0, dy = out[4] - y0, dz = out[5] - z0;
+		double t0 = 0, t1 = 1;
+		double[] p = { -dx, dx, -dy, dy };
+		double[] q = { x0 + GUARD_BAND, width + GUARD_BAND - x0, y0 + GUARD_BAND, height + GUARD_BAND - y0 };
+		for (int i = 0; i < 4; i++) {
+			if (p[i] == 0) {
+				if (q[i] < 0) return false;
+			} else {
+				double t = q[i] / p[i];
+				if (p[i] < 0) t0 = Math.max(t0, t);
+				else t1 = Math.min(t1, t);
+			}
+		}
+		if (t0 > t1) return false;
+		out[0] = x0 + dx * t0;
+		out[1] = y0 + dy * t0;
+		out[2] = z0 + dz * t0;
+		out[3] = x0 + dx * t1;
+		out[4] = y0 + dy * t1;
+		out[5] = z0 + dz * t1;
+		return true;
+	}
+
+	private void toClip(Camera camera, double x, double y, double z, double[] dst, int i) {
+		double distance = camera.toClip(x, y, z, tmp);
+		dst[i * 5] = tmp.x;
+		dst[i * 5 + 1] = tmp.y;
+		dst[i * 5 + 2] = tmp.z;
+		dst[i * 5 + 3] = tmp.w;
+		dst[i * 5 + 4] = distance;
+	}
+
+	/**
+	 * Divide a clip space vertex by w and scale it to the screen, the same way Camera.project() does.
+	 */
+	private static void toScreen(double[] src, int i, double[] dst, double width, double height) {
+		double inv = 1.0 / src[i * 5 + 3];
+		dst[i * 3] = (src[i * 5] * inv * 0.5 + 0.5) * width;
+		dst[i * 3 + 1] = (src[i * 5 + 1] * inv * 0.5 + 0.5) * height;
+		dst[i * 3 + 2] = src[i * 5 + 2] * inv * 0.5 + 0.5;
+	}
+
+	/**
+	 * Set vertex i of dst to the point a fraction t of the way from vertex a to vertex b of src.
+	 */
+	private static void lerp(double[] src, int a, int b, double t, double[] dst, int i) {
+		for (int k = 0; k < 5; k++) {
+			double va = src[a * 5 + k];
+			dst[i * 5 + k] = va + (src[b * 5 + k] - va) * t;
+		}
+		// Land exactly on the plane, rounding must not put the vertex back behind it.
+		dst[i * 5 + 4] = 0;
+	}
+
+	/**
+	 * Clip a polygon to the near plane (Sutherland-Hodgman).
+	 * @return The number of vertices written to dst
+	 */
+	private static int clipNear(double[] src, int count, double[] dst) {
+		int n = 0;
+		for (int i = 0; i < count; i++) {
+			int j = i + 1 == count ? 0 : i + 1;
+			double di = src[i * 5 + 4], dj = src[j * 5 + 4];
+			if (di >= 0) {
+				System.arraycopy(src, i * 5, dst, n * 5, 5);
+				n++;
+			}
+			if ((di >= 0) != (dj >= 0)) {
+				lerp(src, i, j, di / (di - dj), dst, n);
+				n++;
+			}
+		}
+		return n;
+	}
+
+	private static boolean insideGuardBand(double[] xyz, int count, double width, double height) {
+		for (int i = 0; i < count * 3; i += 3) {
+			double x = xyz[i], y = xyz[i + 1];
+			if (!(x >= -GUARD_BAND && x <= width + GUARD_BAND && y >= -GUARD_BAND && y <= height + GUARD_BAND)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Clip the screen space polygon in out to the guard band, one edge at a time.
+	 * Depth changes linearly across a triangle on screen, so it can be interpolated after the divide by w.
+	 */
+	private int clipGuardBand(int count, double width, double height) {
+		count = clipEdge(out, count, screenTmp, 0, -1, -GUARD_BAND);
+		count = clipEdge(screenTmp, count, out, 0, 1, width + GUARD_BAND);
+		count = clipEdge(out, count, screenTmp, 1, -1, -GUARD_BAND);
+		count = clipEdge(screenTmp, count, out, 1, 1, height + GUARD_BAND);
+		return count < 3 ? 0 : count;
+	}
+
+	/**
+	 * Keep the part of a screen space polygon where sign * coordinate <= sign * limit (Sutherland-Hodgman).
+	 * @param axis 0 for x, 1 for y
+	 * @return The number of vertices written to dst
+	 */
+	private static int clipEdge(double[] src, int count, double[] dst, int axis, int sign, double limit) {
+		int n = 0;
+		for (int i = 0; i < count; i++) {
+			int j = i + 1 == count ? 0 : i + 1;
+			double di = (limit - src[i * 3 + axis]) * sign, dj = (limit - src[j * 3 + axis]) * sign;
+			if (di >= 0) {
+				System.arraycopy(src, i * 3, dst, n * 3, 3);
+				n++;
+			}
+			if ((di >= 0) != (dj >= 0)) {
+				double t = di / (di - dj);
+				for (int k = 0; k < 3; k++) {
+					double v = src[i * 3 + k];
+					dst[n * 3 + k] = v + (src[j * 3 + k] - v) * t;
+				}
+				dst[n * 3 + axis] = limit;
+				n++;
+			}
+		}
+		return n;
+	}
+}
@@ -0,0 +1,243 @@
+package org.frustra.projector.gfx;
+
+import java.util.Arrays;
+
+import org.frustra.projector.linear.Matrix4x4;
+import org.frustra.projector.linear.Vector3;
+import org.frustra.projector.linear.Vector4;
+
+/**
+ * Records draw calls in world space so that they can be drawn later, and drawn again in later frames.
+ * Recording copies the coordinates, so the vectors passed in can be reused right away,
+ * and drawing a list doesn't change it, so a list of static geometry only has to be recorded once.
+ *
+ * A list can be drawn in the order it was recorded, or grouped by primitive type with the triangles
+ * sorted nearest first. Lines and points are drawn first, then triangles front to back so that the ones behind
+ * fail the depth test early. Circles are only drawn if their center passes the depth test, so they keep their
+ * place: only the primitives between two circles are grouped and sorted.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class CommandList {
+	private static final byte POINT = 0;
+	private static final byte LINE = 1;
+	private static final byte TRIANGLE = 2;
+	private static final byte CIRCLE = 3;
+
+	// Primitive storage, 9 coordinates per primitive (x, y, z of up to 3 vertices, or x, y, z, radius for circles)
+	private byte[] type = new byte[64];
+	private double[] coords = new double[64 * 9];
+	private int[] color = new int[64];
+	private int count = 0;
+
+	// Scratch space for drawing
+	private long[] keys = new long[64];
+	private int[] order = new int[64];
+	private final Vector3 a = new Vector3();
+	private final Vector3 b = new Vector3();
+	private final Vector3 c = new Vector3();
+	private final Vector4 tmp = new Vector4();
+	// The triangles packed for the occlusion culler
+	private float[] occluderXyz = new float[0];
+	private int[] occluderIndices = new int[0];
+
+	/**
+	 * @return The number of recorded primitives
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Remove every recorded primitive.
+	 */
+	public void clear() {
+		count = 0;
+	}
+
+	public void addPoint(Vector3 a, int color) {
+		int i = add(POINT, color);
+		set(i, 0, a);
+	}
+
+	public void addLine(Vector3 a, Vector3 b, int color) {
+		int i = add(LINE, color);
+		set(i, 0, a);
+		set(i, 1, b);
+	}
+
+	public void addTriangle(Vector3 a, Vector3 b, Vector3 c, int color) {
+		int i = add(TRIANGLE, color);
+		set(i, 0, a);
+		set(i, 1, b);
+		set(i, 2, c);
+	}
+
+	public void addCircle(Vector3 a, double radius, int color) {
+		int i = add(CIRCLE, color);
+		set(i, 0, a);
+		coords[i * 9 + 3] = radius;
+	}
+
+	private int add(byte primitive, int rgb) {
+		if (count == type.length) {
+			int size = count * 2;
+			type = Arrays.copyOf(type, size);
+			coords = Arrays.copyOf(coords, size * 9);
+			color = Arrays.copyOf(color, size);
+		}
+		type[count] = primitive;
+		color[count] = rgb;
+		return count++;
+	}
+
+	private void set(int i, int vertex, Vector3 vec) {
+		coords[i * 9 + vertex * 3] = vec.x;
+		coords[i * 9 + vertex * 3 + 1] = vec.y;
+		coords[i * 9 + vertex * 3 + 2] = vec.z;
+	}
+
+	/**
+	 * Replace the contents of another list with this one's primitives moved by a matrix.
+	 * Circles keep their radius, since it is measured on the screen.
+	 * @param matrix A transform without a projection part
+	 * @param dst The list to record into, not this one
+	 */
+	public void transformInto(Matrix4x4 matrix, CommandList dst) {
+		dst.clear();
+		for (int i = 0; i < count; i++) {
+			int j = dst.add(type[i], color[i]);
+			System.arraycopy(coords, i * 9, dst.coords, j * 9, 9);
+			for (int k = 0; k < vertices(type[i]); k++) {
+				int o = j * 9 + k * 3;
+				matrix.transform(dst.coords[o], dst.coords[o + 1], dst.coords[o + 2], 1, tmp);
+				dst.coords[o] = tmp.x;
+				dst.coords[o + 1] = tmp.y;
+				dst.coords[o + 2] = tmp.z;
+			}
+		}
+	}
+
+	/**
+	 * Find the axis aligned box around every recorded vertex, and the centers of circles.
+	 * @param dst Receives minX, minY, minZ, maxX, maxY, maxZ
+	 * @return false if the list is empty
+	 */
+	public boolean getBounds(double[] dst) {
+		dst[0] = dst[1] = dst[2] = Double.POSITIVE_INFINITY;
+		dst[3] = dst[4] = dst[5] = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < count; i++) {
+			for (int k = 0; k < vertices(type[i]); k++) {
+				int o = i * 9 + k * 3;
+				for (int axis = 0; axis < 3; axis++) {
+					dst[axis] = Math.min(dst[axis], coords[o + axis]);
+					dst[axis + 3] = Math.max(dst[axis + 3], coords[o + axis]);
+				}
+			}
+		}
+		return count > 0;
+	}
+
+	private static int vertices(byte primitive) {
+		return primitive == LINE ? 2 : primitive == TRIANGLE ? 3 : 1;
+	}
+
+	/**
+	 * Draw every primitive in the order it was recorded.
+	 */
+	public void execute(Screen screen) {
+		for (int i = 0; i < count; i++) draw(screen, i);
+	}
+
+	/**
+	 * Draw every primitive grouped by type, with the triangles nearest to the camera first.
+	 * Circles are drawn in their recorded place, after everything recorded before them and before everything after.
+	 * With the depth buffer on this gives the same picture as execute(), apart from primitives at exactly the same depth.
+	 */
+	public void executeFrontToBack(Screen screen, Camera camera) {
+		if (keys.length < count) {
+			keys = new long[count];
+			order = new int[count];
+		}
+		int n = 0, from = 0;
+		for (int i = 0; i < count; i++) {
+			if (type[i] != CIRCLE) continue;
+			n = orderRun(camera, from, i, n);
+			order[n++] = i;
+			from = i + 1;
+		}
+		n = orderRun(camera, from, count, n);
+		for (int k = 0; k < n; k++) draw(screen, order[k]);
+	}
+
+	/**
+	 * Add the primitives from..to (exclusive), none of them circles, to the drawing order.
+	 * @return The new length of the drawing order
+	 */
+	private int orderRun(Camera camera, int from, int to, int n) {
+		// Lines and points keep their order, and go first.
+		int triangles = 0;
+		for (int i = from; i < to; i++) {
+			if (type[i] == POINT || type[i] == LINE) order[n++] = i;
+		}
+		/*
+		 * Sort the triangles by the distance of their nearest vertex in front of the near plane.
+		 * The distance is positive, so its float bits sort the same way as the distance, and the index
+		 * in the low bits keeps triangles at the same distance in recorded order.
+		 */
+		for (int i = from; i < to; i++) {
+			if (type[i] != TRIANGLE) continue;
+			double[] v = coords;
+			int j = i * 9;
+			double distance = Math.min(camera.toClip(v[j], v[j + 1], v[j + 2], tmp),
+				Math.min(camera.toClip(v[j + 3], v[j + 4], v[j + 5], tmp), camera.toClip(v[j + 6], v[j + 7], v[j + 8], tmp)));
+			keys[triangles++] = (long) Float.floatToIntBits((float) Math.max(0, distance)) << 32 | i;
+		}
+		Arrays.sort(keys, 0, triangles);
+		for (int k = 0; k < triangles; k++) order[n++] = (int) keys[k];
+		return n;
+	}
+
+	/**
+	 * Draw the recorded triangles into an occlusion buffer. The other primitives don't hide anything.
+	 */
+	public void drawOccluders(OcclusionCuller culler) {
+		int triangles = 0;
+		for (int i = 0; i < count; i++) {
+			if (type[i] == TRIANGLE) triangles++;
+		}
+		if (triangles == 0) return;
+		if (occluderIndices.length < triangles * 3) {
+			occluderXyz = new float[triangles * 9];
+			occluderIndices = new int[triangles * 3];
+			for (int k = 0; k < occluderIndices.length; k++) occluderIndices[k] = k;
+		}
+		int n = 0;
+		for (int i = 0; i < count; i++) {
+			if (type[i] != TRIANGLE) continue;
+			for (int k = 0; k < 9; k++) occluderXyz[n * 9 + k] = (float) coords[i * 9 + k];
+			n++;
+		}
+		culler.addOccluder(occluderXyz, triangles * 3, occluderIndices, triangles);
+	}
+
+	private void draw(Screen screen, int i) {
+		double[] v = coords;
+		int j = i * 9;
+		switch (type[i]) {
+		case POINT:
+			screen.drawPoint(a.set(v[j], v[j + 1], v[j + 2]), color[i]);
+			break;
+		case LINE:
+			screen.drawLine(a.set(v[j], v[j + 1], v[j + 2]), b.set(v[j + 3], v[j + 4], v[j + 5]), color[i]);
+			break;
+		case TRIANGLE:
+			screen.drawTriangle(a.set(v[j], v[j + 1], v[j + 2]), b.set(v[j + 3], v[j + 4], v[j + 5]), c.set(v[j + 6], v[j + 7], v[j + 8]), color[i]);
+			break;
+		case CIRCLE:
+			screen.drawCircle(a.set(v[j], v[j + 1], v[j + 2]), v[j + 3], color[i]);
+			break;
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package org.frustra.projector.gfx;
+
+import org.frustra.projector.Projector;
+
+/**
+ * Makes the pixels darker the farther away from the camera they are. (Overlays the depth buffer)
+ * The brightness for a depth is log10(depth * 100 - 80), kept between 0.05 and 1. It only changes for depths
+ * between 0.8 and 0.9, so it is looked up in a table over that range, and pixels are scaled with integer math.
+ *
+ * @author Jacob Wirth
+ *
+ */
+class DepthOverlayPass extends PostProcessPass {
+	private static final float MIN_DEPTH = 0.8f;
+	private static final float MAX_DEPTH = 0.9f;
+	private static final int STEPS = 4096;
+	private static final float STEP_SCALE = STEPS / (MAX_DEPTH - MIN_DEPTH);
+
+	// Brightness by depth step, in 1/256ths
+	private static final int[] SCALE = new int[STEPS + 1];
+
+	static {
+		for (int i = 0; i <= STEPS; i++) {
+			double depth = MIN_DEPTH + i / (double) STEP_SCALE;
+			double scale = Math.max(0.05, Math.min(1.0, Math.log10(depth * 100.0 - 80)));
+			// Nothing in front of the near plane is farther than the table, but keep it dark just in case.
+			if (Double.isNaN(scale)) scale = 0.05;
+			SCALE[i] = (int) (scale * 256 + 0.5);
+		}
+	}
+
+	public boolean isEnabled() {
+		return Projector.input.depthBufferOverlay;
+	}
+
+	public void apply(Screen screen, int x0, int y0, int x1, int y1) {
+		int[] pixels = screen.pixels;
+		float[] depth = screen.depth;
+		int[] table = SCALE;
+		for (int y = y0; y < y1; y++) {
+			for (int i = x0 + y * screen.w, end = x1 + y * screen.w; i < end; i++) {
+				float d = depth[i];
+				// Empty pixels and everything nearer than the table keep full brightness. This is written without
+				// branches that depend on the depth, since neighbouring pixels often go different ways.
+				int step = (int) ((d - MIN_DEPTH) * STEP_SCALE);
+				step = d == 0 ? STEPS : Math.min(STEPS, Math.max(0, step));
+				int scale = table[step];
+				int p = pixels[i];
+				// Scale red and blue together, and green on its own.
+				pixels[i] = ((p & 0xFF00FF) * scale >>> 8) & 0xFF00FF | ((p & 0xFF00) * scale >>> 8) & 0xFF00;
+			}
+		}
+	}
+}
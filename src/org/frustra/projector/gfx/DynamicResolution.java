@@ -0,0 +1,110 @@
+package org.frustra.projector.gfx;
+
+/**
+ * Picks the internal resolution to draw at, from a few fixed scales of the window size, so that drawing a frame
+ * fits in a time budget.
+ *
+ * The drawing time is smoothed over recent frames. The scale goes down a level after several frames over the budget,
+ * and only back up after many frames where the time predicted for the bigger level is well under the budget.
+ * Drawing time is mostly proportional to the number of pixels, so the prediction scales the time by the area.
+ * After a change the time is given a few frames to settle before the next one.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class DynamicResolution {
+	/**
+	 * Scales of the window size to draw at, largest first
+	 */
+	public static final double[] SCALES = {1, 0.875, 0.75, 0.625, 0.5};
+
+	// Weight of the newest frame in the smoothed time
+	private static final double SMOOTHING = 0.1;
+	// Fraction of the budget the bigger level has to be predicted to fit in before going up
+	private static final double RAISE_AT = 0.75;
+	private static final int LOWER_FRAMES = 10;
+	private static final int RAISE_FRAMES = 60;
+	private static final int SETTLE_FRAMES = 20;
+
+	/**
+	 * The time to draw a frame in, in milliseconds
+	 */
+	public final double budget;
+
+	private int level = 0;
+	private double average = -1;
+	private int over = 0, under = 0, settle = 0;
+
+	public DynamicResolution(double budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Use the budget set with -Dprojector.frameBudget in milliseconds, 16 by default for 60 frames per second.
+	 */
+	public static DynamicResolution fromProperties() {
+		return new DynamicResolution(Double.parseDouble(System.getProperty("projector.frameBudget", "16")));
+	}
+
+	/**
+	 * Record how long the last frame took to draw, and pick the level for the next one.
+	 * @param nanos The drawing time of the last frame, which was drawn at the current level
+	 * @return The level to draw the next frame at
+	 */
+	public int update(long nanos) {
+		double millis = nanos / 1e6;
+		average = average < 0 ? millis : average + (millis - average) * SMOOTHING;
+		if (settle > 0) {
+			settle--;
+			return level;
+		}
+		over = average > budget ? over + 1 : 0;
+		double raised = level > 0 ? average * area(level - 1) / area(level) : Double.POSITIVE_INFINITY;
+		under = raised < budget * RAISE_AT ? under + 1 : 0;
+		if (over >= LOWER_FRAMES && level < SCALES.length - 1) change(level + 1);
+		else if (under >= RAISE_FRAMES) change(level - 1);
+		return level;
+	}
+
+	private void change(int next) {
+		// Guess the new time from the area, until frames at the new level have been measured.
+		average = average * area(next) / area(level);
+		level = next;
+		over = 0;
+		under = 0;
+		settle = SETTLE_FRAMES;
+	}
+
+	private static double area(int level) {
+		return SCALES[level] * SCALES[level];
+	}
+
+	/**
+	 * Go back to full resolution and forget the measured times.
+	 */
+	public void reset() {
+		level = 0;
+		average = -1;
+		over = 0;
+		under = 0;
+		settle = 0;
+	}
+
+	/**
+	 * @return The index of the scale to draw at in SCALES
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	public double getScale() {
+		return SCALES[level];
+	}
+
+	/**
+	 * @return The smoothed drawing time in milliseconds, or -1 before the first frame
+	 */
+	public double getAverage() {
+		return average;
+	}
+}
@@ -0,0 +1,252 @@
+package org.frustra.projector.gfx;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.frustra.projector.Projector;
+import org.frustra.projector.WorldSnapshot;
+import org.frustra.projector.metrics.FrameStage;
+import org.frustra.projector.metrics.Metrics;
+
+/**
+ * Draws frames in three stages on separate threads, so that the geometry of the next frame is worked out
+ * while the current one is rasterized, and the one before that is shown.
+ *
+ * - Geometry, on the thread calling submit(): moves the camera, animates and culls the scene, and projects
+ *   everything into the frame's tile binner and particle splatter. Nothing is drawn yet.
+ * - Raster: clears the screen's buffers, rasterizes the binned primitives and particles, runs the
+ *   post process passes, and copies the finished pixels into the frame's own image.
+ * - Present: copies the frame's image to the window.
+ *
+ * Frames are passed along through bounded queues, and the depth sets how many can be in the pipeline at once,
+ * each with its own primitive storage and image. With a depth of 1 the stages take turns, with 3 all of them can
+ * run at once. The geometry stage waits when no frame is free, so the pipeline never gets more than depth frames ahead.
+ *
+ * Only the raster stage uses the screen's pixel and depth buffers. Every stage times its own parts of the frame
+ * and keeps the durations with it, since the next frame is already being timed by the time one is presented.
+ * TOTAL is the time from the start of the geometry stage to the end of the present stage.
+ *
+ * A frame that fails in the raster or present stage is dropped, and the failure is thrown from the next
+ * call to submit() or drain().
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class FramePipeline {
+	public final int depth;
+
+	private final Screen screen;
+
+	// Frames ready for the geometry stage, and the ones waiting for the next two stages.
+	// Each queue has room for every frame, so handing a frame on never waits.
+	private final ArrayBlockingQueue<Frame> free;
+	private final ArrayBlockingQueue<Frame> rasterQueue;
+	private final ArrayBlockingQueue<Frame> presentQueue;
+
+	private boolean started = false;
+	// The first failure in a stage thread, not yet thrown to the submitting thread
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+	private static class Frame {
+		final TileBinner binner;
+		final ParticleSplatter splatter;
+		final BufferedImage image;
+		final int[] pixels;
+		// When the geometry stage started on this frame
+		long start;
+		// Stage durations and occlusion culling counts of this frame, for its frame event
+		final long[] laps = new long[FrameStage.values().length];
+		int occlusionTested, occlusionCulled;
+
+		Frame(Screen screen) {
+			this.binner = new TileBinner(screen);
+			this.binner.deferred = true;
+			this.splatter = new ParticleSplatter(screen);
+			this.image = new BufferedImage(screen.w, screen.h, BufferedImage.TYPE_INT_RGB);
+			this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		}
+	}
+
+	/**
+	 * @param depth The number of frames that can be in the pipeline at once, at least 1
+	 */
+	public FramePipeline(Screen screen, int depth) {
+		if (depth < 1) throw new IllegalArgumentException("The pipeline depth must be at least 1");
+		this.screen = screen;
+		this.depth = depth;
+		free = new ArrayBlockingQueue<Frame>(depth);
+		rasterQueue = new ArrayBlockingQueue<Frame>(depth);
+		presentQueue = new ArrayBlockingQueue<Frame>(depth);
+		for (int i = 0; i < depth; i++) free.add(new Frame(screen));
+	}
+
+	/**
+	 * Use the depth set with -Dprojector.pipelineDepth, 2 by default.
+	 */
+	public static FramePipeline fromProperties(Screen screen) {
+		return new FramePipeline(screen, Integer.getInteger("projector.pipelineDepth", 2));
+	}
+
+	/**
+	 * Run the geometry stage for the next frame and hand it on, waiting for a free frame first if needed.
+	 * The stage threads are started by the first call. Only one thread may submit frames.
+	 */
+	public void submit() throws InterruptedException {
+		if (!started) start();
+		Frame frame = free.take();
+		try {
+			checkFailure();
+			geometry(frame);
+		} catch (RuntimeException e) {
+			free.add(frame);
+			throw e;
+		}
+		rasterQueue.add(frame);
+	}
+
+	/**
+	 * Wait until every submitted frame has been presented, after which the screen's buffers can be used again.
+	 */
+	public void drain() throws InterruptedException {
+		if (!started) return;
+		Frame[] frames = new Frame[depth];
+		for (int i = 0; i < depth; i++) frames[i] = free.take();
+		for (Frame frame : frames) free.add(frame);
+		checkFailure();
+	}
+	
+	private void checkFailure() {
+		Throwable e = failure.getAndSet(null);
+		if (e != null) throw new IllegalStateException("A frame pipeline stage failed", e);
+	}
+	
+	/**
+	 * Drop a frame that failed in a stage, and keep the failure for the submitting thread.
+	 */
+	private void fail(Frame frame, Throwable e) {
+		failure.compareAndSet(null, e);
+		free.add(frame);
+	}
+
+	private void start() {
+		started = true;
+		Thread raster = new Thread(new Runnable() {
+			public void run() {
+				try {
+					while (true) {
+						Frame frame = rasterQueue.take();
+						try {
+							raster(frame);
+						} catch (Throwable e) {
+							fail(frame, e);
+							continue;
+						}
+						presentQueue.add(frame);
+					}
+				} catch (InterruptedException e) {}
+			}
+		}, "Raster");
+		Thread present = new Thread(new Runnable() {
+			public void run() {
+				try {
+					while (true) {
+						Frame frame = presentQueue.take();
+						try {
+							long t = System.nanoTime();
+							present(frame.image);
+							lap(frame, FrameStage.PRESENT, t);
+							lap(frame, FrameStage.TOTAL, frame.start);
+							Metrics.endFrame(frame.laps, frame.occlusionTested, frame.occlusionCulled);
+						} catch (Throwable e) {
+							fail(frame, e);
+							continue;
+						}
+						free.add(frame);
+					}
+				} catch (InterruptedException e) {}
+			}
+		}, "Present");
+		raster.setDaemon(true);
+		present.setDaemon(true);
+		raster.start();
+		present.start();
+	}
+
+	/**
+	 * Time a stage of a frame, keeping the duration with the frame.
+	 */
+	private static long lap(Frame frame, FrameStage stage, long start) {
+		long now = Metrics.frame.lap(stage, start);
+		frame.laps[stage.ordinal()] = now - start;
+		return now;
+	}
+	
+	private void geometry(Frame frame) {
+		Arrays.fill(frame.laps, 0);
+		long t = frame.start = System.nanoTime();
+		Projector.camera.x = Projector.input.tx;
+		Projector.camera.y = Projector.input.ty;
+		Projector.camera.z = Projector.input.tz;
+		Projector.camera.setRotation(Projector.input.pitch, Projector.input.yaw);
+		t = lap(frame, FrameStage.CAMERA, t);
+
+		// Everything is binned into this frame's storage, whatever the parallel raster setting.
+		// A frame that failed before can still have primitives left in it.
+		WorldSnapshot world = Projector.snapshots.latest();
+		TileBinner binner = screen.binner;
+		frame.binner.clear();
+		screen.binner = frame.binner;
+		screen.binning = true;
+		try {
+			screen.renderAxes();
+			t = lap(frame, FrameStage.AXES, t);
+			screen.renderScene();
+			frame.splatter.project(world);
+			lap(frame, FrameStage.SCENE, t);
+			screen.reportOcclusion();
+			frame.occlusionTested = screen.occlusion.getTested();
+			frame.occlusionCulled = screen.occlusion.getCulled();
+		} finally {
+			screen.binning = false;
+			screen.binner = binner;
+		}
+	}
+
+	private void raster(Frame frame) {
+		long t = System.nanoTime();
+		// The screen's pixels no longer hold the static frame for incremental mode.
+		screen.invalidateStaticFrame();
+		screen.g2.setBackground(Color.BLACK);
+		screen.g2.clearRect(0, 0, screen.w, screen.h);
+		screen.clearDepth();
+		t = lap(frame, FrameStage.CLEAR, t);
+		frame.binner.flush();
+		t = lap(frame, FrameStage.RASTER, t);
+		frame.splatter.drawProjected(Projector.input.parallelRaster);
+		t = lap(frame, FrameStage.PARTICLES, t);
+		screen.postProcess.run(screen);
+		t = lap(frame, FrameStage.OVERLAY, t);
+		if (Projector.capture != null) {
+			Projector.capture.capture(screen.pixels);
+			lap(frame, FrameStage.CAPTURE, t);
+		}
+		System.arraycopy(screen.pixels, 0, frame.pixels, 0, frame.pixels.length);
+	}
+
+	/**
+	 * Show a finished frame, called on the present thread.
+	 */
+	protected void present(BufferedImage image) {
+		BufferStrategy bs = screen.getBufferStrategy();
+		Graphics g = bs.getDrawGraphics();
+		g.drawImage(image, 0, 0, screen.w, screen.h, null);
+		g.dispose();
+		bs.show();
+	}
+}
@@ -0,0 +1,214 @@
+package org.frustra.projector.gfx;
+
+import java.util.Arrays;
+
+/**
+ * Skips objects hidden behind large occluders, using a small depth buffer of just the occluders.
+ *
+ * Each frame the occluder triangles are drawn into the buffer first, and then the box around each object is
+ * tested against it before any of the object's vertices are projected. Both sides are conservative, so nothing
+ * visible is ever skipped:
+ * - An occluder only writes to the buffer pixels it covers completely (with a screen pixel to spare), and
+ *   writes its depth at the farthest corner of the pixel. Screen depth changes linearly across a triangle,
+ *   so that is the farthest it gets in the pixel.
+ * - A box is only hidden if every buffer pixel under its screen rectangle has an occluder nearer than
+ *   its nearest corner. A box reaching behind the camera is never hidden.
+ *
+ * Depths are the screen depths the rasterizer uses, 0 where there is no occluder and larger is closer.
+ * The drawing order shows without the depth buffer, so culling should only be used with it on.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class OcclusionCuller {
+	/**
+	 * Default buffer size, much smaller than the screen
+	 */
+	public static final int WIDTH = 256, HEIGHT = 128;
+
+	public final int width, height;
+	private final float[] depth;
+
+	private Camera camera;
+	private int screenW, screenH;
+	// Buffer pixels per screen pixel
+	private double scaleX, scaleY;
+	private boolean active = false, empty = true;
+
+	// Counts for the current frame
+	private int occluderTriangles = 0, tested = 0, culled = 0;
+
+	// Scratch space for projecting occluders and boxes
+	private float[] projected = new float[0];
+	private byte[] clipFlags = new byte[0];
+	private final float[] corners = new float[8 * 3];
+	private final float[] projectedCorners = new float[8 * 3];
+	private final byte[] cornerFlags = new byte[8];
+
+	public OcclusionCuller(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.depth = new float[width * height];
+	}
+
+	/**
+	 * Clear the buffer for a new frame and start culling. The camera must already be in place for the frame.
+	 * @param screenW, screenH The size of the screen being drawn
+	 */
+	public void begin(Camera camera, int screenW, int screenH) {
+		this.camera = camera;
+		this.screenW = screenW;
+		this.screenH = screenH;
+		this.scaleX = (double) width / screenW;
+		this.scaleY = (double) height / screenH;
+		Arrays.fill(depth, 0);
+		active = true;
+		empty = true;
+		occluderTriangles = 0;
+		tested = 0;
+		culled = 0;
+	}
+
+	/**
+	 * Stop culling until the next begin(), nothing is hidden in between.
+	 */
+	public void disable() {
+		active = false;
+		occluderTriangles = 0;
+		tested = 0;
+		culled = 0;
+	}
+
+	/**
+	 * Draw indexed occluder triangles into the buffer, given in world space.
+	 * Triangles reaching behind the camera are left out.
+	 */
+	public void addOccluder(float[] pos, int count, int[] indices, int triangleCount) {
+		if (!active) return;
+		if (projected.length < count * 3) {
+			projected = new float[count * 3];
+			clipFlags = new byte[count];
+		}
+		camera.projectAll(pos, count, projected, clipFlags, screenW, screenH);
+		for (int t = 0; t < triangleCount; t++) {
+			int i0 = indices[t * 3], i1 = indices[t * 3 + 1], i2 = indices[t * 3 + 2];
+			byte f0 = clipFlags[i0], f1 = clipFlags[i1], f2 = clipFlags[i2];
+			if (((f0 | f1 | f2) & Camera.CLIP_NEAR) != 0 || (f0 & f1 & f2) != 0) continue;
+			fillTriangle(i0 * 3, i1 * 3, i2 * 3);
+		}
+	}
+
+	/**
+	 * Write the depth of a projected triangle to the buffer pixels it covers completely, the farthest it is in each.
+	 */
+	private void fillTriangle(int a, int b, int c) {
+		double ax = projected[a] * scaleX, ay = projected[a + 1] * scaleY;
+		double bx = projected[b] * scaleX, by = projected[b + 1] * scaleY;
+		double cx = projected[c] * scaleX, cy = projected[c + 1] * scaleY;
+		double area = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+		if (area == 0) return;
+		double sign = area > 0 ? 1 : -1;
+		occluderTriangles++;
+
+		// Depth across the triangle, never farther than its farthest corner.
+		double az = projected[a + 2], bz = projected[b + 2], cz = projected[c + 2];
+		double dzdx = ((bz - az) * (cy - ay) - (cz - az) * (by - ay)) / area;
+		double dzdy = ((cz - az) * (bx - ax) - (bz - az) * (cx - ax)) / area;
+		double far = Math.min(az, Math.min(bz, cz));
+
+		// Edge functions e = A * x + B * y + C, positive inside the triangle.
+		double a0 = (ay - by) * sign, b0 = (bx - ax) * sign, c0 = (ax * by - ay * bx) * sign;
+		double a1 = (by - cy) * sign, b1 = (cx - bx) * sign, c1 = (bx * cy - by * cx) * sign;
+		double a2 = (cy - ay) * sign, b2 = (ax - cx) * sign, c2 = (cx * ay - cy * ax) * sign;
+		/*
+		 * A pixel (grown by a screen pixel on each side) is inside when its corner with the lowest value
+		 * of each edge function is, which is the center value less the half size times the slopes.
+		 */
+		double hw = 0.5 + scaleX, hh = 0.5 + scaleY;
+		double m0 = Math.abs(a0) * hw + Math.abs(b0) * hh;
+		double m1 = Math.abs(a1) * hw + Math.abs(b1) * hh;
+		double m2 = Math.abs(a2) * hw + Math.abs(b2) * hh;
+		double mz = Math.abs(dzdx) * hw + Math.abs(dzdy) * hh;
+
+		int x0 = Math.max(0, (int) Math.floor(Math.min(ax, Math.min(bx, cx))));
+		int y0 = Math.max(0, (int) Math.floor(Math.min(ay, Math.min(by, cy))));
+		int x1 = Math.min(width - 1, (int) Math.floor(Math.max(ax, Math.max(bx, cx))));
+		int y1 = Math.min(height - 1, (int) Math.floor(Math.max(ay, Math.max(by, cy))));
+		for (int y = y0; y <= y1; y++) {
+			double py = y + 0.5;
+			for (int x = x0; x <= x1; x++) {
+				double px = x + 0.5;
+				if (a0 * px + b0 * py + c0 < m0) continue;
+				if (a1 * px + b1 * py + c1 < m1) continue;
+				if (a2 * px + b2 * py + c2 < m2) continue;
+				float z = (float) Math.max(far, az + dzdx * (px - ax) + dzdy * (py - ay) - mz);
+				int i = x + y * width;
+				if (z > depth[i]) {
+					depth[i] = z;
+					empty = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check if a box in world space is completely hidden behind the occluders drawn so far.
+	 * @return false if it might be visible
+	 */
+	public boolean isBoxOccluded(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		if (!active || empty) return false;
+		tested++;
+		for (int i = 0; i < 8; i++) {
+			corners[i * 3] = (float) ((i & 1) == 0 ? minX : maxX);
+			corners[i * 3 + 1] = (float) ((i & 2) == 0 ? minY : maxY);
+			corners[i * 3 + 2] = (float) ((i & 4) == 0 ? minZ : maxZ);
+		}
+		camera.projectAll(corners, 8, projectedCorners, cornerFlags, screenW, screenH);
+		float left = Float.POSITIVE_INFINITY, top = Float.POSITIVE_INFINITY;
+		float right = Float.NEGATIVE_INFINITY, bottom = Float.NEGATIVE_INFINITY;
+		float nearest = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < 8; i++) {
+			if ((cornerFlags[i] & Camera.CLIP_NEAR) != 0) return false;
+			left = Math.min(left, projectedCorners[i * 3]);
+			top = Math.min(top, projectedCorners[i * 3 + 1]);
+			right = Math.max(right, projectedCorners[i * 3]);
+			bottom = Math.max(bottom, projectedCorners[i * 3 + 1]);
+			nearest = Math.max(nearest, projectedCorners[i * 3 + 2]);
+		}
+		// Lines can be drawn up to 2 pixels outside the rectangle.
+		int x0 = Math.max(0, (int) Math.floor((left - 2) * scaleX));
+		int y0 = Math.max(0, (int) Math.floor((top - 2) * scaleY));
+		int x1 = Math.min(width - 1, (int) Math.floor((right + 2) * scaleX));
+		int y1 = Math.min(height - 1, (int) Math.floor((bottom + 2) * scaleY));
+		if (x0 > x1 || y0 > y1) return false;
+		for (int y = y0; y <= y1; y++) {
+			for (int x = x0; x <= x1; x++) {
+				float d = depth[x + y * width];
+				if (d == 0 || d <= nearest) return false;
+			}
+		}
+		culled++;
+		return true;
+	}
+
+	/**
+	 * @return The number of occluder triangles drawn this frame
+	 */
+	public int getOccluderTriangles() {
+		return occluderTriangles;
+	}
+
+	/**
+	 * @return The number of boxes tested this frame, not counting the ones tested before any occluder was drawn
+	 */
+	public int getTested() {
+		return tested;
+	}
+
+	/**
+	 * @return The number of boxes found hidden this frame
+	 */
+	public int getCulled() {
+		return culled;
+	}
+}
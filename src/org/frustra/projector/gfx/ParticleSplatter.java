@@ -0,0 +1,315 @@
+package org.frustra.projector.gfx;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+import org.frustra.projector.Projector;
+import org.frustra.projector.WorldSnapshot;
+
+/**
+ * Draws fire particles as flat circles (splats), much faster than one Screen.drawCircle() per particle.
+ * All particles are projected at once, then sorted into screen tiles, and each tile draws its splats row by row
+ * from a precomputed table of circle widths. Tiles don't share pixels, so they can be drawn on separate threads,
+ * and every tile draws its splats in the same order, so the result doesn't depend on how many threads did the work.
+ *
+ * With the depth buffer on, splats are drawn nearest first. Only the nearest splat shows at each pixel either way,
+ * but this way tiles fill up early and the farther splats behind them are skipped a whole tile at a time.
+ *
+ * @author Jacob Wirth
+ *
+ */
+class ParticleSplatter {
+	/**
+	 * Size of a particle in the world, a splat's radius in pixels is this scaled by its depth
+	 */
+	static final double PARTICLE_SIZE = 10;
+
+	/**
+	 * Largest splat radius in pixels, particles right in front of the camera are clamped to this
+	 */
+	static final int MAX_RADIUS = 256;
+
+	/*
+	 * Circle span table. A circle of radius r covers rows -r to r - 1 around its center, and the
+	 * row dy covers columns -SPANS[SPAN_START[r] + dy + r] up to (but not including) the same value.
+	 * These are the same pixels Screen.fillCircle() draws for an integer radius.
+	 */
+	private static final int[] SPAN_START = new int[MAX_RADIUS + 1];
+	private static final int[] SPANS;
+
+	/**
+	 * Particle color by age, getting lighter over the particle's life span
+	 */
+	static final int[] PALETTE = new int[256];
+
+	static {
+		int size = 0;
+		for (int r = 0; r <= MAX_RADIUS; r++) {
+			SPAN_START[r] = size;
+			size += r * 2;
+		}
+		SPANS = new int[size];
+		for (int r = 0; r <= MAX_RADIUS; r++) {
+			for (int dy = -r; dy < r; dy++) {
+				SPANS[SPAN_START[r] + dy + r] = (int) Math.sqrt(r * r - dy * dy);
+			}
+		}
+		for (int age = 0; age < PALETTE.length; age++) {
+			PALETTE[age] = 0xFF000000 | Math.min(255, age + 155) << 16 | Math.max(0, age - 155) << 8;
+		}
+	}
+
+	private final Screen screen;
+
+	// Projected particles, with their colors, so that drawing doesn't need the snapshot any more
+	private float[] projected = new float[0];
+	private byte[] clipFlags = new byte[0];
+	private int[] colors = new int[0];
+	private int projectedCount = 0;
+
+	/*
+	 * Splats that passed the depth test at their center, 4 ints each: the center pixel as x | y << 16,
+	 * the radius, the color and the bits of the float depth. Splats are collected in particle order,
+	 * and then put in drawing order in sorted.
+	 */
+	private int[] splats = new int[0];
+	private int[] sorted = new int[0];
+	private int splatCount = 0;
+
+	// Splats are sorted nearest first into this many depth ranges
+	private static final int DEPTH_BUCKETS = 1024;
+	private final int[] bucketStart = new int[DEPTH_BUCKETS + 1];
+
+	// Splats sorted by tile, tile t holds splats binStart[t] up to binStart[t + 1] of binItems, in drawing order
+	private final int[] binStart;
+	private final int[] binFill;
+	private int[] binItems = new int[0];
+
+	ParticleSplatter(Screen screen) {
+		this.screen = screen;
+		this.binStart = new int[screen.tilesX * screen.tilesY + 1];
+		this.binFill = new int[screen.tilesX * screen.tilesY];
+	}
+
+	/**
+	 * Look up the color of a particle of the given age.
+	 */
+	static int color(int age) {
+		return PALETTE[age < 0 ? 0 : age > 255 ? 255 : age];
+	}
+
+	/**
+	 * Draw all particles in a snapshot. Everything else has to be drawn first, since a particle is
+	 * only drawn if its center is in front of what is already in the depth buffer.
+	 * @param parallel Draw the tiles on the screen's worker threads
+	 */
+	void draw(WorldSnapshot world, boolean parallel) {
+		project(world);
+		drawProjected(parallel);
+	}
+
+	/**
+	 * Project the particles in a snapshot, the first half of draw().
+	 * Everything needed from the snapshot is copied, so it can be replaced before they are drawn.
+	 */
+	void project(WorldSnapshot world) {
+		int count = world.particleCount;
+		if (projected.length < count * 3) {
+			projected = new float[count * 3];
+			clipFlags = new byte[count];
+			colors = new int[count];
+			splats = new int[count * 4];
+			sorted = new int[count * 4];
+		}
+		Projector.camera.projectAll(world.particleXyz, count, projected, clipFlags, screen.w, screen.h);
+		int[] ttl = world.particleTtl;
+		for (int i = 0; i < count; i++) colors[i] = color(ttl[i]);
+		projectedCount = count;
+	}
+
+	/**
+	 * Mark every tile that a projected particle could draw to, whatever is in the depth buffer.
+	 * @param tiles Set to true for the tiles covered, in the same order as the screen's tiles
+	 */
+	void markTiles(boolean[] tiles) {
+		int w = screen.w, h = screen.h, tilesX = screen.tilesX;
+		for (int i = 0; i < projectedCount; i++) {
+			if (clipFlags[i] != 0) continue;
+			int x = (int) projected[i * 3], y = (int) projected[i * 3 + 1];
+			int radius = radius(projected[i * 3 + 2]);
+			int tx0 = Math.max(0, x - radius) >> TileBinner.TILE_SHIFT, tx1 = Math.min(w - 1, x + radius - 1) >> TileBinner.TILE_SHIFT;
+			int ty0 = Math.max(0, y - radius) >> TileBinner.TILE_SHIFT, ty1 = Math.min(h - 1, y + radius - 1) >> TileBinner.TILE_SHIFT;
+			for (int ty = ty0; ty <= ty1; ty++) {
+				for (int tx = tx0; tx <= tx1; tx++) tiles[tx + ty * tilesX] = true;
+			}
+		}
+	}
+
+	/**
+	 * Splat radius in pixels for a particle at the given screen depth.
+	 * Splats keep the same size in the window on the lower resolution screens.
+	 */
+	private int radius(float z) {
+		int radius = (int) (Math.max(2, PARTICLE_SIZE * (z - 0.8) * 15) * screen.pixelScale + 0.5);
+		return radius > MAX_RADIUS ? MAX_RADIUS : radius < 1 ? 1 : radius;
+	}
+
+	/**
+	 * Draw the particles last passed to project(), the second half of draw().
+	 */
+	void drawProjected(boolean parallel) {
+		int count = projectedCount;
+		if (count == 0) return;
+
+		// Keep the particles with a visible center, and count the tiles each one covers.
+		int w = screen.w, h = screen.h, tilesX = screen.tilesX;
+		float[] depth = screen.depth;
+		// binFill holds the number of splats in each tile until they are sorted.
+		Arrays.fill(binFill, 0);
+		int n = 0, items = 0;
+		float near = 0, far = Float.MAX_VALUE;
+		for (int i = 0; i < count; i++) {
+			if (clipFlags[i] != 0) continue;
+			int x = (int) projected[i * 3];
+			int y = (int) projected[i * 3 + 1];
+			float z = projected[i * 3 + 2];
+			float d = depth[x + y * w];
+			if (d != 0 && d >= z) continue;
+			int radius = radius(z);
+			splats[n * 4] = x | y << 16;
+			splats[n * 4 + 1] = radius;
+			splats[n * 4 + 2] = colors[i];
+			splats[n * 4 + 3] = Float.floatToRawIntBits(z);
+			n++;
+			if (z > near) near = z;
+			if (z < far) far = z;
+			int tx0 = Math.max(0, x - radius) >> TileBinner.TILE_SHIFT, tx1 = Math.min(w - 1, x + radius - 1) >> TileBinner.TILE_SHIFT;
+			int ty0 = Math.max(0, y - radius) >> TileBinner.TILE_SHIFT, ty1 = Math.min(h - 1, y + radius - 1) >> TileBinner.TILE_SHIFT;
+			for (int ty = ty0; ty <= ty1; ty++) {
+				for (int tx = tx0; tx <= tx1; tx++) binFill[tx + ty * tilesX]++;
+			}
+			items += (tx1 - tx0 + 1) * (ty1 - ty0 + 1);
+		}
+		splatCount = n;
+		if (n == 0) return;
+		int[] order = Projector.input.useDepthBuffer ? sortByDepth(near, far) : splats;
+
+		// Sort the splats into tiles, keeping them in drawing order.
+		int tiles = binFill.length;
+		binStart[0] = 0;
+		for (int t = 0; t < tiles; t++) {
+			binStart[t + 1] = binStart[t] + binFill[t];
+			binFill[t] = binStart[t];
+		}
+		if (binItems.length < items * 4) binItems = new int[(items + items / 4) * 4];
+		for (int k = 0; k < n * 4; k += 4) {
+			int x = order[k] & 0xFFFF, y = order[k] >>> 16, radius = order[k + 1];
+			int tx0 = Math.max(0, x - radius) >> TileBinner.TILE_SHIFT, tx1 = Math.min(w - 1, x + radius - 1) >> TileBinner.TILE_SHIFT;
+			int ty0 = Math.max(0, y - radius) >> TileBinner.TILE_SHIFT, ty1 = Math.min(h - 1, y + radius - 1) >> TileBinner.TILE_SHIFT;
+			for (int ty = ty0; ty <= ty1; ty++) {
+				for (int tx = tx0; tx <= tx1; tx++) {
+					System.arraycopy(order, k, binItems, binFill[tx + ty * tilesX]++ * 4, 4);
+				}
+			}
+		}
+
+		if (parallel) {
+			Screen.workers.invoke(new TileTask(0, tiles));
+		} else {
+			for (int t = 0; t < tiles; t++) drawTile(t);
+		}
+	}
+
+	/**
+	 * Copy the splats into sorted, nearest first, keeping particle order between splats at about the same depth.
+	 * Only the nearest splat shows at each pixel whatever the order, apart from splats at exactly the same depth.
+	 * @param near, far The nearest and farthest splat depths
+	 * @return sorted
+	 */
+	private int[] sortByDepth(float near, float far) {
+		// Counting sort by depth range.
+		int n = splatCount;
+		float scale = near > far ? (DEPTH_BUCKETS - 1) / (near - far) : 0;
+		int[] start = bucketStart;
+		Arrays.fill(start, 0);
+		for (int k = 0; k < n * 4; k += 4) {
+			start[bucket(splats[k + 3], near, scale) + 1]++;
+		}
+		for (int b = 0; b < DEPTH_BUCKETS; b++) start[b + 1] += start[b];
+		for (int k = 0; k < n * 4; k += 4) {
+			int j = start[bucket(splats[k + 3], near, scale)]++ * 4;
+			System.arraycopy(splats, k, sorted, j, 4);
+		}
+		return sorted;
+	}
+
+	private static int bucket(int depthBits, float near, float scale) {
+		return (int) ((near - Float.intBitsToFloat(depthBits)) * scale);
+	}
+
+	/**
+	 * Draws a range of tiles, splitting it between worker threads.
+	 */
+	private class TileTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int start, end;
+
+		TileTask(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		protected void compute() {
+			if (end - start > 1) {
+				int mid = (start + end) >>> 1;
+				invokeAll(new TileTask(start, mid), new TileTask(mid, end));
+			} else {
+				drawTile(start);
+			}
+		}
+	}
+
+	/**
+	 * Draw the splats binned in one tile, clipped to the tile.
+	 */
+	private void drawTile(int tile) {
+		int from = binStart[tile], to = binStart[tile + 1];
+		int[] items = binItems;
+		if (from == to) return;
+		int w = screen.w;
+		int x0 = (tile % screen.tilesX) << TileBinner.TILE_SHIFT;
+		int y0 = (tile / screen.tilesX) << TileBinner.TILE_SHIFT;
+		int x1 = Math.min(x0 + TileBinner.TILE_SIZE, w);
+		int y1 = Math.min(y0 + TileBinner.TILE_SIZE, screen.h);
+		int[] pixels = screen.pixels;
+		float[] depth = screen.depth;
+		boolean useDepthBuffer = Projector.input.useDepthBuffer;
+		for (int k = from; k < to; k++) {
+			int j = k * 4;
+			float z = Float.intBitsToFloat(items[j + 3]);
+			// Skip splats behind everything in the tile.
+			if (screen.isTileHidden(tile, z)) continue;
+			int cx = items[j] & 0xFFFF, cy = items[j] >>> 16, radius = items[j + 1], color = items[j + 2];
+			int spans = SPAN_START[radius] + radius - cy;
+			int filled = 0, written = 0;
+			int rowEnd = Math.min(y1, cy + radius);
+			for (int y = Math.max(y0, cy - radius); y < rowEnd; y++) {
+				int hw = SPANS[spans + y];
+				int start = Math.max(x0, cx - hw), end = Math.min(x1, cx + hw);
+				if (start >= end) continue;
+				written += end - start;
+				for (int i = start + y * w, last = end + y * w; i < last; i++) {
+					float d = depth[i];
+					if (d == 0 || d < z || !useDepthBuffer) {
+						if (d == 0) filled++;
+						depth[i] = z;
+						pixels[i] = color;
+					}
+				}
+			}
+			screen.tileEmpty[tile] -= filled;
+			screen.tileWrites[tile] += written;
+		}
+	}
+}
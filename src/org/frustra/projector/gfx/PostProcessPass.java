@@ -0,0 +1,22 @@
+package org.frustra.projector.gfx;
+
+/**
+ * A full screen pass that changes the finished frame before it is shown, like the depth overlay.
+ * Passes are run by a PostProcessor, which splits the screen into bands of rows (or tiles) and processes them on
+ * the render worker threads, so apply() is called from several threads at once for different parts of the screen.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public abstract class PostProcessPass {
+	/**
+	 * @return true if the pass should run on this frame
+	 */
+	public abstract boolean isEnabled();
+
+	/**
+	 * Process the pixels from x0, y0 up to (but not including) x1, y1.
+	 * Only pixels in this rectangle may be changed, but the whole depth buffer can be read.
+	 */
+	public abstract void apply(Screen screen, int x0, int y0, int x1, int y1);
+}
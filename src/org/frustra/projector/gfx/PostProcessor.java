@@ -0,0 +1,131 @@
+package org.frustra.projector.gfx;
+
+import java.util.ArrayList;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a list of post process passes over the screen, one after another, in the order they were added.
+ * Each pass is split into bands of rows for the render worker threads, and finishes before the next one starts.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class PostProcessor {
+	// Rows per task, enough work per task to be worth handing to another thread
+	private static final int BAND_ROWS = 32;
+
+	private final ArrayList<PostProcessPass> passes = new ArrayList<PostProcessPass>();
+
+	// The tiles to process in run(Screen, boolean[])
+	private int[] tiles = new int[0];
+
+	public void add(PostProcessPass pass) {
+		passes.add(pass);
+	}
+
+	public boolean remove(PostProcessPass pass) {
+		return passes.remove(pass);
+	}
+
+	/**
+	 * Run every enabled pass over the screen.
+	 */
+	public void run(Screen screen) {
+		for (int i = 0; i < passes.size(); i++) {
+			PostProcessPass pass = passes.get(i);
+			if (pass.isEnabled()) apply(screen, pass);
+		}
+	}
+
+	/**
+	 * Run every enabled pass over some of the screen tiles, leaving the rest of the screen alone.
+	 * @param dirty Whether to process each tile, in the same order as the screen's tiles
+	 */
+	public void run(Screen screen, boolean[] dirty) {
+		int count = 0;
+		if (tiles.length < dirty.length) tiles = new int[dirty.length];
+		for (int t = 0; t < dirty.length; t++) {
+			if (dirty[t]) tiles[count++] = t;
+		}
+		if (count == 0) return;
+		for (int i = 0; i < passes.size(); i++) {
+			PostProcessPass pass = passes.get(i);
+			if (!pass.isEnabled()) continue;
+			if (count == 1) applyTile(screen, pass, tiles[0]);
+			else Screen.workers.invoke(new TileTask(screen, pass, tiles, 0, count));
+		}
+	}
+
+	/**
+	 * Run a single pass over the screen, even if it is not enabled.
+	 */
+	public void apply(Screen screen, PostProcessPass pass) {
+		if (screen.h <= BAND_ROWS) {
+			pass.apply(screen, 0, 0, screen.w, screen.h);
+		} else {
+			Screen.workers.invoke(new BandTask(screen, pass, 0, screen.h));
+		}
+	}
+
+	private static void applyTile(Screen screen, PostProcessPass pass, int tile) {
+		int x0 = (tile % screen.tilesX) << TileBinner.TILE_SHIFT;
+		int y0 = (tile / screen.tilesX) << TileBinner.TILE_SHIFT;
+		pass.apply(screen, x0, y0, Math.min(x0 + TileBinner.TILE_SIZE, screen.w), Math.min(y0 + TileBinner.TILE_SIZE, screen.h));
+	}
+
+	/**
+	 * Applies a pass to a range of rows, splitting it between worker threads.
+	 */
+	private static class BandTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Screen screen;
+		private final PostProcessPass pass;
+		private final int start, end;
+
+		BandTask(Screen screen, PostProcessPass pass, int start, int end) {
+			this.screen = screen;
+			this.pass = pass;
+			this.start = start;
+			this.end = end;
+		}
+
+		protected void compute() {
+			if (end - start > BAND_ROWS) {
+				int mid = (start + end) >>> 1;
+				invokeAll(new BandTask(screen, pass, start, mid), new BandTask(screen, pass, mid, end));
+			} else {
+				pass.apply(screen, 0, start, screen.w, end);
+			}
+		}
+	}
+
+	/**
+	 * Applies a pass to a list of tiles, splitting it between worker threads.
+	 */
+	private static class TileTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Screen screen;
+		private final PostProcessPass pass;
+		private final int[] tiles;
+		private final int start, end;
+
+		TileTask(Screen screen, PostProcessPass pass, int[] tiles, int start, int end) {
+			this.screen = screen;
+			this.pass = pass;
+			this.tiles = tiles;
+			this.start = start;
+			this.end = end;
+		}
+
+		protected void compute() {
+			if (end - start > 1) {
+				int mid = (start + end) >>> 1;
+				invokeAll(new TileTask(screen, pass, tiles, start, mid), new TileTask(screen, pass, tiles, mid, end));
+			} else {
+				applyTile(screen, pass, tiles[start]);
+			}
+		}
+	}
+}
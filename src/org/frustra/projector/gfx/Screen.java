@@ -1,378 +1,1101 @@
-package org.frustra.projector.gfx;
-
-
-import java.awt.Canvas;
-import java.awt.Color;
-import java.awt.Graphics;
-import java.awt.Graphics2D;
-import java.awt.image.BufferStrategy;
-import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferInt;
-
-import org.frustra.projector.Projector;
-import org.frustra.projector.linear.Vector3;
-
-/**
- * Stores pixel and depth data buffers for the screen.
- * Contains many different custom drawing functions
- * 
- * @author Jacob Wirth
- *
- */
-public class Screen extends Canvas {
-	private static final long serialVersionUID = 1L;
-	
-	public final int w, h;
-	public BufferedImage image;
-	public Graphics2D g2;
-	
-	/**
-	 * Red, Green, Blue pixel data
-	 */
-	public int[] pixels;
-	
-	/**
-	 * Screen depth buffer (The depth of each pixel on screen)
-	 */
-	public double[] depth;
-	
-	public Screen(int w, int h, boolean top) {
-		this.w = w;
-		this.h = h;
-		setSize(w, h);
-		
-		this.image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
-		this.g2 = this.image.createGraphics();
-		this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
-		this.depth = new double[this.pixels.length];
-	}
-	
-	/**
-	 * Called 60 times per second by RenderThread.
-	 */
-	public void render() {
-		BufferStrategy bs = getBufferStrategy();
-		if (bs == null) {
-			createBufferStrategy(3);
-			requestFocus();
-			return;
-		}
-
-		if (!this.isVisible()) return;
-		Graphics g = bs.getDrawGraphics();
-		g2.setBackground(Color.BLACK);
-		g2.clearRect(0, 0, w, h);
-		this.depth = new double[this.pixels.length];
-
-		Projector.camera.x = Projector.input.tx;
-		Projector.camera.y = Projector.input.ty;
-		Projector.camera.z = Projector.input.tz;
-		Projector.camera.setRotation(Projector.input.pitch, Projector.input.yaw);
-		
-		renderAxes();
-		renderScene();
-		for (int i = 0; i < Projector.particles.size(); i++) {
-			Projector.particles.get(i).draw();
-		}
-		
-		if (Projector.input.depthBufferOverlay) {
-			// Make the pixels darker the farther away from the camera they are. (Overlay the depth buffer)
-			for (int i = 0; i < pixels.length; i++) {
-				if (depth[i] == 0) continue;
-				double scale = Math.max(0.05, Math.min(1.0, Math.log10(depth[i] * 100 - 80)));
-				pixels[i] = new Color((int) (((pixels[i] >> 16) & 0xFF) * scale), (int) (((pixels[i] >> 8) & 0xFF) * scale), (int) ((pixels[i] & 0xFF) * scale)).getRGB();
-			}
-		}
-		
-		g.drawImage(image, 0, 0, w, h, null);
-		g.dispose();
-		bs.show();
-	}
-	
-	/**
-	 * Render the 3 axes. X: Red, Y: Green, Z: Blue
-	 */
-	public void renderAxes() {
-		drawLine(new Vector3(), new Vector3(100, 0, 0), 0xFF0000);
-		drawLine(new Vector3(), new Vector3(0, 100, 0), 0x00FF00);
-		drawLine(new Vector3(), new Vector3(0, 0, 100), 0x0000FF);
-	}
-	
-	/**
-	 * Render the scene. (Sphere and Cube)
-	 */
-	public void renderScene() {
-		// Calculate and draw many points on the sphere.
-		/*for (double a = -Math.PI / 2; a < Math.PI / 2; a += Math.PI / 32) {
-			for (double b = 0; b < Math.PI * 2; b += Math.PI / 32) {
-				drawPoint(new Vector3(Math.sin(b) * Math.cos(a) * 10 + 15, Math.sin(a) * 10 + 55, Math.cos(b) * Math.cos(a) * 10 + 15), 0xFFFFFF);
-			}
-		}*/
-		double N = 500;
-		double inc = Math.PI * (3.0 - Math.sqrt(5));
-		Vector3 center = new Vector3(15, 55, 15);
-		double off = 2 / N;
-		for (int k = 0; k < N; k++) {
-			double y = k * off - 1.0 + (off / 2.0);
-			double r = Math.sqrt(1 - y * y);
-			double phi = k * inc;
-			Vector3 vec = new Vector3(Math.cos(phi + System.currentTimeMillis() / 1000.0) * r, y, Math.sin(phi + System.currentTimeMillis() / 1000.0) * r);
-			drawPoint(center.add(vec.multiply(10)), 0xFFFFFF);
-		}
-		
-		// The 8 points on the cube.
-		Vector3 vec1 = new Vector3(5, 5, 5);
-		Vector3 vec2 = new Vector3(25, 5, 5);
-		Vector3 vec3 = new Vector3(5, 25, 5);
-		Vector3 vec4 = new Vector3(5, 5, 25);
-		Vector3 vec5 = new Vector3(25, 25, 5);
-		Vector3 vec6 = new Vector3(5, 25, 25);
-		Vector3 vec7 = new Vector3(25, 5, 25);
-		Vector3 vec8 = new Vector3(25, 25, 25);
-		
-		// Top and bottom face lines.
-		drawLine(vec3, vec8, 0xFFFFFF);
-		drawLine(vec5, vec6, 0xFFFFFF);
-		
-		drawLine(vec1, vec7, 0xFFFFFF);
-		drawLine(vec4, vec2, 0xFFFFFF);
-
-		// The 4 solid faces.
-		drawTriangle(vec1, vec4, vec6, 0x550000);
-		drawTriangle(vec1, vec3, vec6, 0x550000);
-
-		drawTriangle(vec2, vec7, vec8, 0x555500);
-		drawTriangle(vec2, vec5, vec8, 0x555500);
-
-		drawTriangle(vec1, vec2, vec5, 0x000055);
-		drawTriangle(vec1, vec3, vec5, 0x000055);
-
-		drawTriangle(vec4, vec7, vec8, 0x005555);
-		drawTriangle(vec4, vec6, vec8, 0x005555);
-
-		// A face intersecting another one of the faces to demonstrate and test the depth buffer.
-		drawTriangle(new Vector3(15, 5, 15), new Vector3(35, 5, 15), new Vector3(35, 25, 15), 0x005555);
-		drawTriangle(new Vector3(15, 5, 15), new Vector3(15, 25, 15), new Vector3(35, 25, 15), 0x005555);
-	}
-	
-	/**
-	 * Draw a line from point A to point B in 3D space.
-	 * @param a
-	 * @param b
-	 * @param color
-	 */
-	public void drawLine(Vector3 a, Vector3 b, int color) {
-		Vector3 vec1 = Vector3.toScreen(Projector.camera.project(a), w, h);
-		Vector3 vec2 = Vector3.toScreen(Projector.camera.project(b), w, h);
-		if (vec1 != null && vec2 != null) fillLine(vec1, vec2, color);
-	}
-
-	/**
-	 * Fill in the 3D point A with the specified color.
-	 * @param a
-	 * @param b
-	 * @param color
-	 */
-	public void drawPoint(Vector3 a, int color) {
-		Vector3 vec = Vector3.toScreen(Projector.camera.project(a), w, h);
-		if (vec != null) fillPixel((int) vec.x, (int) vec.y, vec.z, color);
-	}
-	
-	/**
-	 * Draw a circle at the specified 3D point with the specified radius.
-	 * @param a
-	 * @param radius
-	 * @param color
-	 */
-	public void drawCircle(Vector3 a, double radius, int color) {
-		Vector3 vec = Vector3.toScreen(Projector.camera.project(a), w, h);
-		if (vec != null) {
-			int i = (int) vec.x + (int) vec.y * w;
-			if (vec.x < 0 || vec.x >= w || vec.y < 0 || vec.y >= h) return;
-			if (depth[i] == 0 || depth[i] < vec.z) {
-				fillCircle(vec, Math.max(2, radius * (vec.z - 0.8) * 15), color);
-			}
-		}
-	}
-	
-	/**
-	 * Fill in a triangle in 3D space with the specified color.
-	 * @param a
-	 * @param b
-	 * @param c
-	 * @param color
-	 */
-	public void drawTriangle(Vector3 a, Vector3 b, Vector3 c, int color) {
-		Vector3 vec1 = Vector3.toScreen(Projector.camera.project(a), w, h);
-		Vector3 vec2 = Vector3.toScreen(Projector.camera.project(b), w, h);
-		Vector3 vec3 = Vector3.toScreen(Projector.camera.project(c), w, h);
-		if (vec1 != null && vec2 != null && vec3 != null) {
-			fillTriangle(vec1, vec2, vec3, color);
-		}
-	}
-	/**
-	 * Fill in a circle at point A in 2D space with the specified color.
-	 * @param a1
-	 * @param b1
-	 * @param color
-	 */
-	private void fillCircle(Vector3 a, double radius, int color) {
-		double radiuss = radius * radius;
-		for (int y = (int) -radius; y < radius; y++) {
-			int hw = (int) Math.sqrt(radiuss - y * y);
-			for (int x = -hw; x < hw; x++) {
-				fillPixel((int) (a.x + x), (int) (a.y + y), a.z, color);
-			}
-		}
-	}
-	
-	/**
-	 * Fill in a line from A to B in 2D space with the specified color.
-	 * @param a1
-	 * @param b1
-	 * @param color
-	 */
-	private void fillLine(Vector3 a1, Vector3 b1, int color) {
-		Vector3 a = null;
-		Vector3 b = null;
-		double slope = (b1.y - a1.y) / (b1.x - a1.x);
-		if (slope > 1 || slope < -1) {
-			if (a1.y < b1.y) {
-				a = a1;
-				b = b1;
-			} else {
-				a = b1;
-				b = a1;
-			}
-			slope = (b.x - a.x) / (b.y - a.y);
-			double slope2 = (b.z - a.z) / (b.y - a.y);
-			double x = a.x;
-			double z = a.z;
-			for (int y = (int) a.y; y <= b.y; y++) {
-				fillPixel((int) (x += slope), (int) y, z += slope2, color);
-			}
-		} else {
-			if (a1.x < b1.x) {
-				a = a1;
-				b = b1;
-			} else {
-				a = b1;
-				b = a1;
-			}
-			double slope2 = (b.z - a.z) / (b.x - a.x);
-			double y = a.y;
-			double z = a.z;
-			for (int x = (int) a.x; x <= b.x; x++) {
-				fillPixel((int) x, (int) (y += slope), z += slope2, color);
-			}
-		}
-	}
-	
-	/**
-	 * Fill the the specified triangle in 2D space with the specified color.
-	 * @param a1
-	 * @param b1
-	 * @param c1
-	 * @param color
-	 */
-	private void fillTriangle(Vector3 a1, Vector3 b1, Vector3 c1, int color) {
-		Vector3 a = null;
-		Vector3 b = null;
-		Vector3 c = null;
-		if (a1.y < b1.y && b1.y < c1.y) {
-			a = a1;
-			b = b1;
-			c = c1;
-		} else if (a1.y < b1.y && a1.y < c1.y) {
-			a = a1;
-			b = c1;
-			c = b1;
-		} else if (b1.y < a1.y && a1.y < c1.y) {
-			a = b1;
-			b = a1;
-			c = c1;
-		} else if (b1.y < a1.y && b1.y < c1.y) {
-			a = b1;
-			b = c1;
-			c = a1;
-		} else if (c1.y < a1.y && a1.y < b1.y) {
-			a = c1;
-			b = a1;
-			c = b1;
-		} else {
-			a = c1;
-			b = b1;
-			c = a1;
-		}
-
-		Vector3 norm = c.subtract(a).cross(b.subtract(a));
-		double D = -norm.dot(a);
-
-		double d0 = b.y != a.y ? (b.x - a.x) / (b.y - a.y) : 0;
-		double d1 = c.y != b.y ? (c.x - b.x) / (c.y - b.y) : 0;
-		double d2 = a.y != c.y ? (a.x - c.x) / (a.y - c.y) : 0;
-
-		int sx, ex;
-		int minx = (int) Math.min(a.x, Math.min(b.x, c.x));
-		int maxx = (int) Math.max(a.x, Math.max(b.x, c.x));
-		
-		for (int y = (int) a.y; y < b.y; y++) {
-			sx = (int) (Math.max(minx, Math.min(maxx, a.x + (y - a.y) * d2)));
-			ex = (int) (Math.max(minx, Math.min(maxx, a.x + (y - a.y) * d0)));
-
-			if (sx < ex) {
-				for (int x = (sx < 0 ? 0 : sx); x <= (ex >= w ? w - 1 : ex); x++) {
-					fillPixel(x, y, getDepthOnPlane(x, y, norm, D), color);
-				}
-			} else {
-				for (int x = (ex < 0 ? 0 : ex); x <= (sx >= w ? w - 1 : sx); x++) {
-					fillPixel(x, y, getDepthOnPlane(x, y, norm, D), color);
-				}
-			}
-		}
-
-		for (int y = (int) b.y; y < c.y; y++) {
-			sx = (int) (Math.max(minx, Math.min(maxx, a.x + (y - a.y) * d2)));
-			ex = (int) (Math.max(minx, Math.min(maxx, b.x + (y - b.y) * d1)));
-
-			if (sx < ex) {
-				for (int x = (sx < 0 ? 0 : sx); x <= (ex >= w ? w - 1 : ex); x++) {
-					fillPixel(x, y, getDepthOnPlane(x, y, norm, D), color);
-				}
-			} else {
-				for (int x = (ex < 0 ? 0 : ex); x <= (sx >= w ? w - 1 : sx); x++) {
-					fillPixel(x, y, getDepthOnPlane(x, y, norm, D), color);
-				}
-			}
-		}
-	}
-	
-	/**
-	 * Calculates the depth of a 2D point using linear interpolation between 3 other points.
-	 * @param x
-	 * @param y
-	 * @param norm The normal of the plane intersecting the 3 reference points.
-	 * @param D The D value of the plane intersecting the 3 reference points.
-	 * @return
-	 */
-	private double getDepthOnPlane(double x, double y, Vector3 norm, double D) {
-		return (norm.x * x + norm.y * y + D) / -norm.z;
-	}
-	
-	/**
-	 * Fill in the specified pixel with the given color if it is in front of any previously drawn pixels at that location.
-	 * @param x
-	 * @param y
-	 * @param z
-	 * @param color
-	 */
-	private void fillPixel(int x, int y, double z, int color) {
-		int i = (int) x + (int) y * w;
-		if (x < 0 || x >= w || y < 0 || y >= h) return;
-		// If the depth is not set or the depth is less than what is being drawn, draw the specified color.
-		if (depth[i] == 0 || depth[i] < z || !Projector.input.useDepthBuffer) {
-			depth[i] = z;
-			pixels[i] = color;
-		}
-	}
-}
+package org.frustra.projector.gfx;
+
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.frustra.projector.Projector;
+import org.frustra.projector.WorldSnapshot;
+import org.frustra.projector.linear.Matrix4x4;
+import org.frustra.projector.linear.Vector3;
+import org.frustra.projector.mesh.Mesh;
+import org.frustra.projector.metrics.FrameStage;
+import org.frustra.projector.metrics.Metrics;
+import org.frustra.projector.pointcloud.PointCloud;
+import org.frustra.projector.scene.SceneNode;
+
+/**
+ * Stores pixel and depth data buffers for the screen.
+ * Contains many different custom drawing functions
+ * 
+ * @author Jacob Wirth
+ *
+ */
+public class Screen extends Canvas {
+	private static final long serialVersionUID = 1L;
+	
+	public final int w, h;
+	// Whether this is the screen in the window, rather than one drawn at a lower resolution for it
+	private final boolean top;
+	public BufferedImage image;
+	public Graphics2D g2;
+	
+	/**
+	 * Red, Green, Blue pixel data
+	 */
+	public int[] pixels;
+	
+	/**
+	 * Screen depth buffer (The depth of each pixel on screen, 0 if nothing was drawn, larger is closer)
+	 */
+	public float[] depth;
+	
+	/*
+	 * Coarse depth buffer, one entry per 64x64 tile, used to skip drawing behind closer geometry.
+	 * - tileFar is at most the farthest depth in the tile. It is only raised by refreshTile(),
+	 *   and drawing only brings pixels closer, so it stays a safe bound in between.
+	 * - tileEmpty counts the pixels that haven't been drawn yet, a tile with empty pixels hides nothing.
+	 * - tileWrites estimates the pixels drawn since the last refresh, to limit how often tiles are rescanned.
+	 */
+	final int tilesX, tilesY;
+	float[] tileFar;
+	int[] tileEmpty;
+	int[] tileWrites;
+	
+	/**
+	 * Worker threads shared by the parallel rendering stages
+	 */
+	public static final ForkJoinPool workers = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+	
+	/**
+	 * Collects projected primitives into screen tiles while rendering in parallel mode
+	 */
+	TileBinner binner;
+	boolean binning = false;
+	
+	/**
+	 * Draws the fire particles after the rest of the scene
+	 */
+	ParticleSplatter splatter;
+	
+	/**
+	 * Full screen passes run over each finished frame
+	 */
+	public final PostProcessor postProcess = new PostProcessor();
+	private final PostProcessPass depthOverlay = new DepthOverlayPass();
+	
+	/**
+	 * The static part of the last full frame, for drawing only what changed in incremental mode
+	 */
+	private final StaticFrameCache staticFrame;
+	
+	/**
+	 * Skips scene nodes and mesh copies hidden behind the occluders, when occlusion culling is on
+	 */
+	public final OcclusionCuller occlusion = new OcclusionCuller(OcclusionCuller.WIDTH, OcclusionCuller.HEIGHT);
+	
+	/**
+	 * Picks the resolution to draw at when dynamic resolution is turned on
+	 */
+	public final DynamicResolution resolution = DynamicResolution.fromProperties();
+	// Screens drawn at each of the lower resolutions, created when first needed
+	private final Screen[] levels = new Screen[DynamicResolution.SCALES.length];
+	/**
+	 * Size of this screen relative to the window, for drawing sizes given in window pixels.
+	 * Less than 1 for the lower resolution screens of dynamic resolution.
+	 */
+	double pixelScale = 1;
+	
+	/**
+	 * Draws and shows frames on separate threads in pipelined mode, created when first needed
+	 */
+	private FramePipeline pipeline;
+	
+	/**
+	 * The time in seconds to animate the scene to, or NaN to follow the clock. Replays set this from the tick number
+	 * so that every run draws the same frames.
+	 */
+	public double animationTime = Double.NaN;
+	
+	// Scratch space for projected vertices, so that drawing doesn't create any objects
+	private final Vector3 vec1 = new Vector3();
+	private final Vector3 vec2 = new Vector3();
+	private final Vector3 vec3 = new Vector3();
+	private float[] projected = new float[0];
+	private byte[] clipFlags = new byte[0];
+	// Scratch space for drawing mesh instances and finding where moving nodes are on the screen
+	private float[] instanceVertices = new float[0];
+	private final Matrix4x4 instanceMatrix = new Matrix4x4(1);
+	private final double[] instanceBox = new double[6];
+	private final float[] corners = new float[8 * 3];
+	private final float[] projectedCorners = new float[8 * 3];
+	private final byte[] cornerFlags = new byte[8];
+	// Cuts primitives crossing the near plane down to the part in front of the camera
+	private final Clipper clipper = new Clipper();
+	// Point cloud nodes picked for the current frame
+	private final PointCloud.Node[] cloudNodes = new PointCloud.Node[4096];
+	
+	/**
+	 * Most point cloud points drawn per frame, set with -Dprojector.pointBudget
+	 */
+	public static final int POINT_BUDGET = Integer.getInteger("projector.pointBudget", 1000000);
+	
+	// Scene geometry
+	private static final Vector3 ORIGIN = new Vector3();
+	private static final Vector3 AXIS_X = new Vector3(100, 0, 0);
+	private static final Vector3 AXIS_Y = new Vector3(0, 100, 0);
+	private static final Vector3 AXIS_Z = new Vector3(0, 0, 100);
+	// Direction of the light used to shade meshes
+	private static final Vector3 LIGHT = new Vector3(0.3, 0.8, 0.5).normalize();
+	// Static geometry, recorded once and drawn every frame
+	private final CommandList axes = new CommandList();
+	
+	public Screen(int w, int h, boolean top) {
+		this.w = w;
+		this.h = h;
+		this.top = top;
+		setSize(w, h);
+		
+		this.image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+		this.g2 = this.image.createGraphics();
+		this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		this.depth = new float[this.pixels.length];
+		this.tilesX = (w + TileBinner.TILE_SIZE - 1) >> TileBinner.TILE_SHIFT;
+		this.tilesY = (h + TileBinner.TILE_SIZE - 1) >> TileBinner.TILE_SHIFT;
+		this.tileFar = new float[tilesX * tilesY];
+		this.tileEmpty = new int[tilesX * tilesY];
+		this.tileWrites = new int[tilesX * tilesY];
+		clearDepth();
+		this.binner = new TileBinner(this);
+		this.splatter = new ParticleSplatter(this);
+		postProcess.add(depthOverlay);
+		
+		axes.addLine(ORIGIN, AXIS_X, 0xFF0000);
+		axes.addLine(ORIGIN, AXIS_Y, 0x00FF00);
+		axes.addLine(ORIGIN, AXIS_Z, 0x0000FF);
+		this.staticFrame = new StaticFrameCache(this);
+	}
+	
+	/**
+	 * Called 60 times per second by RenderThread.
+	 */
+	public void render() {
+		BufferStrategy bs = getBufferStrategy();
+		if (bs == null) {
+			createBufferStrategy(3);
+			requestFocus();
+			return;
+		}
+
+		if (!this.isVisible()) return;
+		try {
+			// Pipelined frames are drawn and shown on the pipeline's threads, which have to be done before drawing here.
+			if (Projector.input.pipelined && !Projector.input.incrementalRender && !Projector.input.dynamicResolution) {
+				if (pipeline == null) pipeline = FramePipeline.fromProperties(this);
+				Metrics.setRenderScale(1);
+				pipeline.submit();
+				return;
+			}
+			if (pipeline != null) pipeline.drain();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		long start = System.nanoTime();
+		Graphics g = bs.getDrawGraphics();
+		// With dynamic resolution the frame is drawn at a lower resolution when needed, and scaled up to the window.
+		Screen frame = this;
+		double scale = 1;
+		if (Projector.input.dynamicResolution) {
+			scale = resolution.getScale();
+			frame = getLevel(resolution.getLevel());
+			frame.animationTime = animationTime;
+			frame.renderFrame();
+			resolution.update(System.nanoTime() - start);
+		} else {
+			resolution.reset();
+			renderFrame();
+		}
+		Metrics.setRenderScale(scale);
+		
+		long t = System.nanoTime();
+		if (frame != this && Projector.capture != null) {
+			// Frames are captured at the window size, so scale this one up into the full size image first.
+			g2.drawImage(frame.image, 0, 0, w, h, null);
+			staticFrame.invalidate();
+			Projector.capture.capture(pixels);
+			frame = this;
+			t = Metrics.frame.lap(FrameStage.CAPTURE, t);
+		}
+		g.drawImage(frame.image, 0, 0, w, h, null);
+		g.dispose();
+		bs.show();
+		Metrics.frame.lap(FrameStage.PRESENT, t);
+		Metrics.frame.lap(FrameStage.TOTAL, start);
+		Metrics.endFrame();
+	}
+	
+	/**
+	 * @return The screen to draw at a level of DynamicResolution.SCALES, this one for the full resolution
+	 */
+	private Screen getLevel(int level) {
+		if (level == 0) return this;
+		if (levels[level] == null) {
+			double scale = DynamicResolution.SCALES[level];
+			levels[level] = new Screen(Math.max(1, (int) Math.round(w * scale)), Math.max(1, (int) Math.round(h * scale)), false);
+			levels[level].pixelScale = (double) levels[level].w / w;
+		}
+		return levels[level];
+	}
+	
+	/**
+	 * Draw the current frame into the pixel buffer without displaying it.
+	 * This doesn't need a window, so it can also be used off screen.
+	 */
+	public void renderFrame() {
+		long t = System.nanoTime();
+		Projector.camera.x = Projector.input.tx;
+		Projector.camera.y = Projector.input.ty;
+		Projector.camera.z = Projector.input.tz;
+		Projector.camera.setRotation(Projector.input.pitch, Projector.input.yaw);
+		t = Metrics.frame.lap(FrameStage.CAMERA, t);
+		
+		/*
+		 * In incremental mode the static scene is drawn after everything else has been cleared and saved,
+		 * and while the camera stays still only the tiles with moving objects are drawn again.
+		 * Without the depth buffer the drawing order shows, so then the whole frame is always drawn.
+		 */
+		WorldSnapshot world = Projector.snapshots.latest();
+		boolean keepStatic = Projector.input.incrementalRender && Projector.input.useDepthBuffer;
+		if (keepStatic) updateScene();
+		// A frame drawn in full without keeping the static frame leaves none of its pixels behind.
+		else staticFrame.invalidate();
+		boolean incremental = keepStatic && staticFrame.isValid();
+		if (keepStatic) {
+			staticFrame.clearDirty();
+			splatter.project(world);
+		}
+		if (incremental) {
+			// Restore the tiles the moving objects are about to draw to, and the ones they drew to last frame.
+			markMovingNodes();
+			splatter.markTiles(staticFrame.dirty);
+			staticFrame.restore();
+		} else {
+			g2.setBackground(Color.BLACK);
+			g2.clearRect(0, 0, w, h);
+			clearDepth();
+		}
+		t = Metrics.frame.lap(FrameStage.CLEAR, t);
+		
+		// In parallel mode primitives are only binned while drawing, and rasterized by tile afterwards.
+		binning = Projector.input.parallelRaster;
+		if (!incremental) renderAxes();
+		t = Metrics.frame.lap(FrameStage.AXES, t);
+		if (!keepStatic) {
+			renderScene();
+		} else {
+			if (!incremental) {
+				long loads = Projector.pointCloud != null ? Projector.pointCloud.getLoads() : 0;
+				renderStaticScene();
+				if (binning) binner.flush();
+				staticFrame.save(loads);
+				markMovingNodes();
+			}
+			Projector.scene.drawMoving(this);
+		}
+		t = Metrics.frame.lap(FrameStage.SCENE, t);
+		reportOcclusion();
+		if (binning) {
+			binner.flush();
+			binning = false;
+		}
+		t = Metrics.frame.lap(FrameStage.RASTER, t);
+		if (keepStatic) {
+			splatter.drawProjected(Projector.input.parallelRaster);
+			if (!incremental) {
+				splatter.markTiles(staticFrame.dirty);
+				staticFrame.keepDirty();
+			}
+		} else {
+			renderParticles(world);
+		}
+		t = Metrics.frame.lap(FrameStage.PARTICLES, t);
+		
+		if (incremental) postProcess.run(this, staticFrame.dirty);
+		else postProcess.run(this);
+		t = Metrics.frame.lap(FrameStage.OVERLAY, t);
+		
+		if (Projector.capture != null && top) {
+			Projector.capture.capture(pixels);
+			Metrics.frame.lap(FrameStage.CAPTURE, t);
+		}
+	}
+	
+	/**
+	 * Draw the whole next frame again in incremental mode, for changes to the static scene that the
+	 * screen can't see by itself. Moving the camera or changing the drawing options is noticed automatically.
+	 */
+	public void invalidateStaticFrame() {
+		staticFrame.invalidate();
+		for (Screen level : levels) {
+			if (level != null) level.invalidateStaticFrame();
+		}
+	}
+	
+	/**
+	 * Reset the depth buffer and the coarse tile depths.
+	 */
+	public void clearDepth() {
+		Arrays.fill(depth, 0);
+		Arrays.fill(tileFar, 0);
+		Arrays.fill(tileWrites, 0);
+		for (int ty = 0; ty < tilesY; ty++) {
+			for (int tx = 0; tx < tilesX; tx++) {
+				int tw = Math.min(TileBinner.TILE_SIZE, w - (tx << TileBinner.TILE_SHIFT));
+				int th = Math.min(TileBinner.TILE_SIZE, h - (ty << TileBinner.TILE_SHIFT));
+				tileEmpty[tx + ty * tilesX] = tw * th;
+			}
+		}
+	}
+	
+	/**
+	 * Make the pixels darker the farther away from the camera they are. (Overlay the depth buffer)
+	 */
+	public void renderDepthOverlay() {
+		postProcess.apply(this, depthOverlay);
+	}
+	
+	/**
+	 * Render the 3 axes. X: Red, Y: Green, Z: Blue
+	 */
+	public void renderAxes() {
+		axes.execute(this);
+	}
+	
+	/**
+	 * Render the fire particles from a world snapshot, on top of everything drawn so far.
+	 */
+	public void renderParticles(WorldSnapshot world) {
+		// Particles are tested against the finished depth buffer, so anything still binned has to be drawn first.
+		if (binning) binner.flush();
+		splatter.draw(world, Projector.input.parallelRaster);
+	}
+	
+	/**
+	 * Animate the scene graph and render it, moving nodes first, then the loaded point cloud.
+	 */
+	public void renderScene() {
+		updateScene();
+		Projector.scene.drawMoving(this);
+		renderStaticScene();
+	}
+	
+	/**
+	 * Render the parts of the scene that don't move. (The static scene graph nodes and the loaded point cloud)
+	 * The scene has to be updated for the frame first.
+	 */
+	public void renderStaticScene() {
+		Projector.scene.drawStatic(this);
+		if (Projector.pointCloud != null) drawPointCloud(Projector.pointCloud, POINT_BUDGET);
+	}
+	
+	/**
+	 * Animate the scene graph to the frame time, taken once for the whole frame, and draw the occluders
+	 * if occlusion culling is on. Culling only hides things that the depth buffer would, so it needs it on.
+	 */
+	private void updateScene() {
+		double time = Double.isNaN(animationTime) ? System.currentTimeMillis() / 1000.0 : animationTime;
+		Projector.scene.update(time);
+		if (Projector.input.occlusionCulling && Projector.input.useDepthBuffer) {
+			occlusion.begin(Projector.camera, w, h);
+			Projector.scene.drawOccluders(occlusion);
+		} else {
+			occlusion.disable();
+		}
+	}
+	
+	/**
+	 * Publish the occlusion culling counts of the frame drawn last.
+	 */
+	void reportOcclusion() {
+		Metrics.setOcclusion(occlusion.getOccluderTriangles(), occlusion.getTested(), occlusion.getCulled());
+	}
+	
+	/**
+	 * Mark the tiles the moving scene nodes will be drawn to as dirty, the ones in view of the screen rectangle
+	 * around their bounds. A node reaching behind the camera could be anywhere, so then the whole screen is marked.
+	 */
+	private void markMovingNodes() {
+		List<SceneNode> nodes = Projector.scene.getMovingNodes();
+		for (int n = 0; n < nodes.size(); n++) {
+			double[] b = nodes.get(n).getWorldBounds();
+			if (b == null || !Projector.camera.isBoxVisible(b[0], b[1], b[2], b[3], b[4], b[5])) continue;
+			for (int i = 0; i < 8; i++) {
+				corners[i * 3] = (float) b[(i & 1) == 0 ? 0 : 3];
+				corners[i * 3 + 1] = (float) b[(i & 2) == 0 ? 1 : 4];
+				corners[i * 3 + 2] = (float) b[(i & 4) == 0 ? 2 : 5];
+			}
+			Projector.camera.projectAll(corners, 8, projectedCorners, cornerFlags, w, h);
+			float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+			float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+			boolean behind = false;
+			for (int i = 0; i < 8; i++) {
+				if ((cornerFlags[i] & Camera.CLIP_NEAR) != 0) behind = true;
+				minX = Math.min(minX, projectedCorners[i * 3]);
+				minY = Math.min(minY, projectedCorners[i * 3 + 1]);
+				maxX = Math.max(maxX, projectedCorners[i * 3]);
+				maxY = Math.max(maxY, projectedCorners[i * 3 + 1]);
+			}
+			if (behind) staticFrame.markRect(0, 0, w, h);
+			else staticFrame.markRect((int) Math.floor(minX) - 1, (int) Math.floor(minY) - 1, (int) maxX + 2, (int) maxY + 2);
+		}
+	}
+	
+	/**
+	 * Draw a line from point A to point B in 3D space.
+	 * @param a
+	 * @param b
+	 * @param color
+	 */
+	public void drawLine(Vector3 a, Vector3 b, int color) {
+		// The part of the line behind the near plane is cut off.
+		if (!clipper.clipLine(Projector.camera, a, b, w, h)) return;
+		double[] out = clipper.out;
+		vec1.set(out[0], out[1], out[2]);
+		vec2.set(out[3], out[4], out[5]);
+		if (binning) binner.addLine(vec1, vec2, color);
+		else fillLine(vec1, vec2, color, 0, 0, w, h);
+	}
+
+	/**
+	 * Fill in the 3D point A with the specified color.
+	 * @param a
+	 * @param b
+	 * @param color
+	 */
+	public void drawPoint(Vector3 a, int color) {
+		Vector3 vec = Vector3.toScreenInPlace(Projector.camera.project(a, vec1), w, h);
+		if (vec != null) {
+			if (binning) binner.addPoint(vec, color);
+			else fillPixel((int) vec.x, (int) vec.y, vec.z, color, 0, 0, w, h);
+		}
+	}
+	
+	/**
+	 * Fill in many 3D points with the specified color, projecting them all at once.
+	 * @param xyz Packed x, y, z coordinates
+	 * @param count The number of points
+	 * @param color
+	 */
+	public void drawPoints(float[] xyz, int count, int color) {
+		if (projected.length < count * 3) {
+			projected = new float[count * 3];
+			clipFlags = new byte[count];
+		}
+		Projector.camera.projectAll(xyz, count, projected, clipFlags, w, h);
+		for (int i = 0; i < count; i++) {
+			if ((clipFlags[i] & Camera.CLIP_NEAR) != 0) continue;
+			if (binning) binner.addPoint(projected[i * 3], projected[i * 3 + 1], projected[i * 3 + 2], color);
+			else fillPixel((int) projected[i * 3], (int) projected[i * 3 + 1], projected[i * 3 + 2], color, 0, 0, w, h);
+		}
+	}
+	
+	/**
+	 * Fill in many 3D points, each with its own color, projecting them all at once.
+	 * @param xyz Packed x, y, z coordinates
+	 * @param colors The color of each point
+	 * @param count The number of points
+	 */
+	public void drawPoints(float[] xyz, int[] colors, int count) {
+		if (projected.length < count * 3) {
+			projected = new float[count * 3];
+			clipFlags = new byte[count];
+		}
+		Projector.camera.projectAll(xyz, count, projected, clipFlags, w, h);
+		for (int i = 0; i < count; i++) {
+			if (clipFlags[i] != 0) continue;
+			if (binning) binner.addPoint(projected[i * 3], projected[i * 3 + 1], projected[i * 3 + 2], colors[i]);
+			else fillPixel((int) projected[i * 3], (int) projected[i * 3 + 1], projected[i * 3 + 2], colors[i], 0, 0, w, h);
+		}
+	}
+	
+	/**
+	 * Draw a point cloud with as much detail as fits in a number of points.
+	 * @param cloud
+	 * @param budget The most points to draw
+	 */
+	public void drawPointCloud(PointCloud cloud, int budget) {
+		int count = cloud.select(Projector.camera, w, budget, cloudNodes);
+		for (int i = 0; i < count; i++) {
+			PointCloud.Node node = cloudNodes[i];
+			drawPoints(node.xyz, node.colors, node.count);
+			cloudNodes[i] = null;
+		}
+	}
+	
+	/**
+	 * Fill in every triangle of a mesh, projecting all of its vertices at once.
+	 * Each triangle is shaded by how much it faces a fixed light direction.
+	 * @param mesh
+	 * @param color The color of a triangle facing the light
+	 */
+	public void drawMesh(Mesh mesh, int color) {
+		// Skip the whole mesh if its bounding box is out of view.
+		float[] bounds = mesh.bounds;
+		if (!Projector.camera.isBoxVisible(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5])) return;
+		drawTriangles(mesh.positions, mesh.vertexCount, mesh.indices, mesh.triangleCount, color);
+	}
+	
+	/**
+	 * Fill in many copies of a mesh, each moved by its own transform, see drawMesh().
+	 * The vertices of each copy are moved into the same scratch space, so the mesh is never copied as a whole.
+	 * @param mesh
+	 * @param transforms 12 floats per copy, the top three rows of its matrix in column major order
+	 * @param count The number of copies
+	 * @param color The color of a triangle facing the light
+	 */
+	public void drawMeshInstances(Mesh mesh, float[] transforms, int count, int color) {
+		int vertices = mesh.vertexCount;
+		if (instanceVertices.length < vertices * 3) instanceVertices = new float[vertices * 3];
+		float[] src = mesh.positions, dst = instanceVertices;
+		float[] bounds = mesh.bounds;
+		for (int i = 0; i < count; i++) {
+			int o = i * 12;
+			for (int column = 0; column < 4; column++) {
+				instanceMatrix.setColumn(column, transforms[o + column * 3], transforms[o + column * 3 + 1], transforms[o + column * 3 + 2], column == 3 ? 1 : 0);
+			}
+			// Skip copies out of view before moving any of their vertices.
+			double[] box = instanceMatrix.transformBox(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5], instanceBox);
+			if (!Projector.camera.isBoxVisible(box[0], box[1], box[2], box[3], box[4], box[5])) continue;
+			if (occlusion.isBoxOccluded(box[0], box[1], box[2], box[3], box[4], box[5])) continue;
+			float m0 = transforms[o], m1 = transforms[o + 1], m2 = transforms[o + 2];
+			float m4 = transforms[o + 3], m5 = transforms[o + 4], m6 = transforms[o + 5];
+			float m8 = transforms[o + 6], m9 = transforms[o + 7], m10 = transforms[o + 8];
+			float m12 = transforms[o + 9], m13 = transforms[o + 10], m14 = transforms[o + 11];
+			for (int j = 0; j < vertices * 3; j += 3) {
+				float x = src[j], y = src[j + 1], z = src[j + 2];
+				dst[j] = m0 * x + m4 * y + m8 * z + m12;
+				dst[j + 1] = m1 * x + m5 * y + m9 * z + m13;
+				dst[j + 2] = m2 * x + m6 * y + m10 * z + m14;
+			}
+			drawTriangles(dst, vertices, mesh.indices, mesh.triangleCount, color);
+		}
+	}
+	
+	/**
+	 * Fill in indexed triangles, projecting all of their vertices at once.
+	 * Each triangle is shaded by how much it faces a fixed light direction.
+	 */
+	private void drawTriangles(float[] pos, int count, int[] indices, int triangleCount, int color) {
+		if (projected.length < count * 3) {
+			projected = new float[count * 3];
+			clipFlags = new byte[count];
+		}
+		Projector.camera.projectAll(pos, count, projected, clipFlags, w, h);
+		int r = (color >> 16) & 0xFF, g = (color >> 8) & 0xFF, b = color & 0xFF;
+		for (int t = 0; t < triangleCount; t++) {
+			int i0 = indices[t * 3], i1 = indices[t * 3 + 1], i2 = indices[t * 3 + 2];
+			byte f0 = clipFlags[i0], f1 = clipFlags[i1], f2 = clipFlags[i2];
+			/*
+			 * Skip triangles completely behind the camera, or completely off one side of the screen.
+			 * The side flags of a vertex behind the camera don't mean anything, so they are only used
+			 * when the whole triangle is in front.
+			 */
+			boolean crossesNear = ((f0 | f1 | f2) & Camera.CLIP_NEAR) != 0;
+			if (crossesNear ? (f0 & f1 & f2 & Camera.CLIP_NEAR) != 0 : (f0 & f1 & f2) != 0) continue;
+			
+			// Light the triangle by its normal, from both sides.
+			double ax = pos[i1 * 3] - pos[i0 * 3], ay = pos[i1 * 3 + 1] - pos[i0 * 3 + 1], az = pos[i1 * 3 + 2] - pos[i0 * 3 + 2];
+			double bx = pos[i2 * 3] - pos[i0 * 3], by = pos[i2 * 3 + 1] - pos[i0 * 3 + 1], bz = pos[i2 * 3 + 2] - pos[i0 * 3 + 2];
+			double nx = ay * bz - az * by, ny = az * bx - ax * bz, nz = ax * by - ay * bx;
+			double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+			double light = length == 0 ? 0 : Math.abs(nx * LIGHT.x + ny * LIGHT.y + nz * LIGHT.z) / length;
+			double shade = 0.3 + 0.7 * light;
+			int shaded = (int) (r * shade) << 16 | (int) (g * shade) << 8 | (int) (b * shade);
+			
+			// Triangles crossing the near plane or reaching far off screen need clipping first.
+			if (crossesNear || !insideGuardBand(i0) || !insideGuardBand(i1) || !insideGuardBand(i2)) {
+				int n = clipper.clipTriangle(Projector.camera, pos[i0 * 3], pos[i0 * 3 + 1], pos[i0 * 3 + 2],
+					pos[i1 * 3], pos[i1 * 3 + 1], pos[i1 * 3 + 2], pos[i2 * 3], pos[i2 * 3 + 1], pos[i2 * 3 + 2], w, h);
+				drawPolygon(clipper.out, n, shaded);
+				continue;
+			}
+			vec1.set(projected[i0 * 3], projected[i0 * 3 + 1], projected[i0 * 3 + 2]);
+			vec2.set(projected[i1 * 3], projected[i1 * 3 + 1], projected[i1 * 3 + 2]);
+			vec3.set(projected[i2 * 3], projected[i2 * 3 + 1], projected[i2 * 3 + 2]);
+			if (binning) binner.addTriangle(vec1, vec2, vec3, shaded);
+			else fillTriangle(vec1, vec2, vec3, shaded, 0, 0, w, h);
+		}
+	}
+	
+	/**
+	 * Check if a vertex projected by drawTriangles() is inside the clipper's guard band.
+	 */
+	private boolean insideGuardBand(int i) {
+		float x = projected[i * 3], y = projected[i * 3 + 1];
+		return x >= -Clipper.GUARD_BAND && x <= w + Clipper.GUARD_BAND && y >= -Clipper.GUARD_BAND && y <= h + Clipper.GUARD_BAND;
+	}
+	
+	/**
+	 * Draw a circle at the specified 3D point with the specified radius.
+	 * @param a
+	 * @param radius
+	 * @param color
+	 */
+	public void drawCircle(Vector3 a, double radius, int color) {
+		Vector3 vec = Vector3.toScreenInPlace(Projector.camera.project(a, vec1), w, h);
+		if (vec != null) {
+			int i = (int) vec.x + (int) vec.y * w;
+			if (vec.x < 0 || vec.x >= w || vec.y < 0 || vec.y >= h) return;
+			radius = Math.max(2, radius * (vec.z - 0.8) * 15) * pixelScale;
+			// The depth test at the center can't be done until the tile holding it has been drawn.
+			if (binning) binner.addCircle(vec, radius, color);
+			else if (depth[i] == 0 || depth[i] < (float) vec.z) {
+				fillCircle(vec, radius, color, 0, 0, w, h);
+			}
+		}
+	}
+	
+	/**
+	 * Fill in a triangle in 3D space with the specified color.
+	 * @param a
+	 * @param b
+	 * @param c
+	 * @param color
+	 */
+	public void drawTriangle(Vector3 a, Vector3 b, Vector3 c, int color) {
+		// A triangle crossing the near plane becomes a polygon with up to 4 corners.
+		int n = clipper.clipTriangle(Projector.camera, a, b, c, w, h);
+		drawPolygon(clipper.out, n, color);
+	}
+	
+	/**
+	 * Fill in a convex polygon that is already on the screen, as a fan of triangles.
+	 * @param xyz Packed x, y, depth screen coordinates of the corners
+	 * @param count The number of corners, nothing is drawn if it is less than 3
+	 * @param color
+	 */
+	private void drawPolygon(double[] xyz, int count, int color) {
+		for (int i = 2; i < count; i++) {
+			vec1.set(xyz[0], xyz[1], xyz[2]);
+			vec2.set(xyz[i * 3 - 3], xyz[i * 3 - 2], xyz[i * 3 - 1]);
+			vec3.set(xyz[i * 3], xyz[i * 3 + 1], xyz[i * 3 + 2]);
+			if (binning) binner.addTriangle(vec1, vec2, vec3, color);
+			else fillTriangle(vec1, vec2, vec3, color, 0, 0, w, h);
+		}
+	}
+	
+	/*
+	 * The fill functions below only touch pixels inside the clip rectangle (x0, y0) - (x1, y1) exclusive,
+	 * which is the whole screen when drawing directly, or a single tile when rasterizing in parallel.
+	 * The pixels they produce inside the rectangle don't depend on its size.
+	 */
+	
+	/**
+	 * Fill in a circle at point A in 2D space with the specified color.
+	 * @param a
+	 * @param radius
+	 * @param color
+	 */
+	void fillCircle(Vector3 a, double radius, int color, int x0, int y0, int x1, int y1) {
+		// Skip the whole circle, or the parts of it in tiles that are already covered by something closer.
+		float z = (float) a.z;
+		if (!touchTiles(a.x - radius - 1, a.y - radius - 1, a.x + radius + 1, a.y + radius + 1, z, x0, y0, x1, y1)) return;
+		double radiuss = radius * radius;
+		for (int y = (int) -radius; y < radius; y++) {
+			int py = (int) (a.y + y);
+			if (py < y0 || py >= y1) continue;
+			int hw = (int) Math.sqrt(radiuss - y * y);
+			int x = -hw;
+			while (x < hw) {
+				// Draw the row one tile at a time.
+				int px = (int) (a.x + x);
+				int tileEnd = px < 0 ? hw : Math.min(hw, x + (((px >> TileBinner.TILE_SHIFT) + 1) << TileBinner.TILE_SHIFT) - px);
+				if (px >= x0 && px < x1 && isTileHidden((px >> TileBinner.TILE_SHIFT) + (py >> TileBinner.TILE_SHIFT) * tilesX, z)) {
+					x = tileEnd;
+					continue;
+				}
+				for (; x < tileEnd; x++) {
+					fillPixel((int) (a.x + x), py, a.z, color, x0, y0, x1, y1);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Fill in a line from A to B in 2D space with the specified color.
+	 * @param a1
+	 * @param b1
+	 * @param color
+	 */
+	void fillLine(Vector3 a1, Vector3 b1, int color, int x0, int y0, int x1, int y1) {
+		Vector3 a = null;
+		Vector3 b = null;
+		double slope = (b1.y - a1.y) / (b1.x - a1.x);
+		if (slope > 1 || slope < -1) {
+			if (a1.y < b1.y) {
+				a = a1;
+				b = b1;
+			} else {
+				a = b1;
+				b = a1;
+			}
+			slope = (b.x - a.x) / (b.y - a.y);
+			double slope2 = (b.z - a.z) / (b.y - a.y);
+			double x = a.x;
+			double z = a.z;
+			for (int y = (int) a.y; y <= b.y; y++) {
+				fillPixel((int) (x += slope), (int) y, z += slope2, color, x0, y0, x1, y1);
+			}
+		} else {
+			if (a1.x < b1.x) {
+				a = a1;
+				b = b1;
+			} else {
+				a = b1;
+				b = a1;
+			}
+			double slope2 = (b.z - a.z) / (b.x - a.x);
+			double y = a.y;
+			double z = a.z;
+			for (int x = (int) a.x; x <= b.x; x++) {
+				fillPixel((int) x, (int) (y += slope), z += slope2, color, x0, y0, x1, y1);
+			}
+		}
+	}
+	
+	// Sub-pixel bits of the fixed point vertex coordinates used by fillTriangle()
+	private static final int SUBPIXEL_BITS = 4;
+	private static final int SUBPIXEL = 1 << SUBPIXEL_BITS;
+	// Vertices farther off screen than this would overflow the fixed point edge functions
+	private static final double FIXED_LIMIT = 1 << 24;
+	// Triangles are rasterized in 8x8 pixel blocks, lined up with the screen so that they never cross tiles.
+	private static final int BLOCK_SHIFT = 3;
+	private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+	
+	/**
+	 * Fill the the specified triangle in 2D space with the specified color.
+	 * Pixels are drawn if their center is inside the triangle, using edge functions on fixed point
+	 * coordinates. Pixel centers exactly on an edge belong to the triangle on the edge's top or left side,
+	 * so triangles that share an edge never draw the same pixel twice.
+	 * @param a
+	 * @param b
+	 * @param c
+	 * @param color
+	 */
+	void fillTriangle(Vector3 a, Vector3 b, Vector3 c, int color, int x0, int y0, int x1, int y1) {
+		if (!(Math.abs(a.x) < FIXED_LIMIT && Math.abs(a.y) < FIXED_LIMIT && Math.abs(b.x) < FIXED_LIMIT
+				&& Math.abs(b.y) < FIXED_LIMIT && Math.abs(c.x) < FIXED_LIMIT && Math.abs(c.y) < FIXED_LIMIT)) {
+			fillTriangleReference(a, b, c, color, x0, y0, x1, y1);
+			return;
+		}
+		long ax = Math.round(a.x * SUBPIXEL), ay = Math.round(a.y * SUBPIXEL);
+		long bx = Math.round(b.x * SUBPIXEL), by = Math.round(b.y * SUBPIXEL);
+		long cx = Math.round(c.x * SUBPIXEL), cy = Math.round(c.y * SUBPIXEL);
+		long area = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+		if (area == 0) return;
+		if (area < 0) {
+			// Wind the triangle the other way so that the inside is positive for every edge.
+			long tx = bx, ty = by;
+			bx = cx; by = cy;
+			cx = tx; cy = ty;
+		}
+		
+		// Depth is linear in screen space: z = z0 + dzdx * x + dzdy * y
+		double cax = c.x - a.x, cay = c.y - a.y, caz = c.z - a.z;
+		double bax = b.x - a.x, bay = b.y - a.y, baz = b.z - a.z;
+		double nx = cay * baz - bay * caz;
+		double ny = caz * bax - baz * cax;
+		double nz = cax * bay - bax * cay;
+		if (nz == 0) return;
+		double D = -(nx * a.x + ny * a.y + nz * a.z);
+		double dzdx = -nx / nz, dzdy = -ny / nz, z0 = -D / nz;
+		
+		// Bounding box of the pixels to test, clipped to the screen
+		int minx = Math.max(x0, (int) Math.floor(Math.min(a.x, Math.min(b.x, c.x))));
+		int miny = Math.max(y0, (int) Math.floor(Math.min(a.y, Math.min(b.y, c.y))));
+		int maxx = Math.min(x1 - 1, (int) Math.ceil(Math.max(a.x, Math.max(b.x, c.x))));
+		int maxy = Math.min(y1 - 1, (int) Math.ceil(Math.max(a.y, Math.max(b.y, c.y))));
+		if (minx > maxx || miny > maxy) return;
+		float zFront = getFrontDepth(minx + 0.5, miny + 0.5, maxx + 0.5, maxy + 0.5, nx, ny, nz, D);
+		if (!touchTiles(minx, miny, maxx, maxy, zFront, x0, y0, x1, y1)) return;
+		
+		// Edge functions E = A * x + B * y + C for the edges a-b, b-c and c-a, positive inside the triangle.
+		// The top-left rule is applied by taking 1 off edges that aren't top or left edges.
+		long A0 = ay - by, B0 = bx - ax, C0 = -A0 * ax - B0 * ay + topLeftBias(A0, B0);
+		long A1 = by - cy, B1 = cx - bx, C1 = -A1 * bx - B1 * by + topLeftBias(A1, B1);
+		long A2 = cy - ay, B2 = ax - cx, C2 = -A2 * cx - B2 * cy + topLeftBias(A2, B2);
+		// Steps in the edge functions for one pixel, and across the rest of a block
+		long X0 = A0 * SUBPIXEL, X1 = A1 * SUBPIXEL, X2 = A2 * SUBPIXEL;
+		long Y0 = B0 * SUBPIXEL, Y1 = B1 * SUBPIXEL, Y2 = B2 * SUBPIXEL;
+		long BX0 = Math.min(0, X0 * (BLOCK_SIZE - 1)), BY0 = Math.min(0, Y0 * (BLOCK_SIZE - 1));
+		long BX1 = Math.min(0, X1 * (BLOCK_SIZE - 1)), BY1 = Math.min(0, Y1 * (BLOCK_SIZE - 1));
+		long BX2 = Math.min(0, X2 * (BLOCK_SIZE - 1)), BY2 = Math.min(0, Y2 * (BLOCK_SIZE - 1));
+		long RX0 = Math.abs(X0 * (BLOCK_SIZE - 1)), RY0 = Math.abs(Y0 * (BLOCK_SIZE - 1));
+		long RX1 = Math.abs(X1 * (BLOCK_SIZE - 1)), RY1 = Math.abs(Y1 * (BLOCK_SIZE - 1));
+		long RX2 = Math.abs(X2 * (BLOCK_SIZE - 1)), RY2 = Math.abs(Y2 * (BLOCK_SIZE - 1));
+		double frontX = Math.max(0, dzdx * (BLOCK_SIZE - 1)), frontY = Math.max(0, dzdy * (BLOCK_SIZE - 1));
+		
+		boolean useDepthBuffer = Projector.input.useDepthBuffer;
+		for (int by0 = miny & -BLOCK_SIZE; by0 <= maxy; by0 += BLOCK_SIZE) {
+			int ys = Math.max(by0, miny), ye = Math.min(by0 + BLOCK_SIZE - 1, maxy);
+			long py = by0 * SUBPIXEL + SUBPIXEL / 2;
+			for (int bx0 = minx & -BLOCK_SIZE; bx0 <= maxx; bx0 += BLOCK_SIZE) {
+				long px = bx0 * SUBPIXEL + SUBPIXEL / 2;
+				// Edge functions at the top left pixel center of the block, and their smallest value anywhere in the block
+				long e0 = A0 * px + B0 * py + C0, m0 = e0 + BX0 + BY0;
+				long e1 = A1 * px + B1 * py + C1, m1 = e1 + BX1 + BY1;
+				long e2 = A2 * px + B2 * py + C2, m2 = e2 + BX2 + BY2;
+				// Skip the block if it is completely outside one of the edges.
+				if (m0 + RX0 + RY0 < 0 || m1 + RX1 + RY1 < 0 || m2 + RX2 + RY2 < 0) continue;
+				double zBlock = z0 + dzdx * (bx0 + 0.5) + dzdy * (by0 + 0.5);
+				int tile = (bx0 >> TileBinner.TILE_SHIFT) + (by0 >> TileBinner.TILE_SHIFT) * tilesX;
+				if (useDepthBuffer && tileEmpty[tile] == 0 && isTileHidden(tile, Math.nextUp((float) (zBlock + frontX + frontY)))) continue;
+				
+				int xs = Math.max(bx0, minx), xe = Math.min(bx0 + BLOCK_SIZE - 1, maxx);
+				e0 += X0 * (xs - bx0) + Y0 * (ys - by0);
+				e1 += X1 * (xs - bx0) + Y1 * (ys - by0);
+				e2 += X2 * (xs - bx0) + Y2 * (ys - by0);
+				double zRow = zBlock + dzdx * (xs - bx0) + dzdy * (ys - by0);
+				boolean inside = m0 >= 0 && m1 >= 0 && m2 >= 0;
+				for (int y = ys; y <= ye; y++) {
+					double z = zRow;
+					long f0 = e0, f1 = e1, f2 = e2;
+					for (int x = xs, i = xs + y * w; x <= xe; x++, i++) {
+						if (inside || (f0 | f1 | f2) >= 0) {
+							float d = depth[i];
+							if (d == 0 || d < (float) z || !useDepthBuffer) {
+								if (d == 0) tileEmpty[tile]--;
+								depth[i] = (float) z;
+								pixels[i] = color;
+							}
+						}
+						z += dzdx;
+						f0 += X0;
+						f1 += X1;
+						f2 += X2;
+					}
+					zRow += dzdy;
+					e0 += Y0;
+					e1 += Y1;
+					e2 += Y2;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * An edge whose inside is to its right (A > 0) is a left edge, and a horizontal edge whose inside is below it (B > 0) is a top edge.
+	 * @return The amount to add to the edge function so that pixel centers exactly on the edge are only drawn for top and left edges
+	 */
+	private static long topLeftBias(long A, long B) {
+		return A > 0 || (A == 0 && B > 0) ? 0 : -1;
+	}
+	
+	/**
+	 * The original scanline triangle rasterizer, used by fillTriangle() for vertices too far off screen for its fixed point math.
+	 * @param a1
+	 * @param b1
+	 * @param c1
+	 * @param color
+	 */
+	void fillTriangleReference(Vector3 a1, Vector3 b1, Vector3 c1, int color, int x0, int y0, int x1, int y1) {
+		Vector3 a = null;
+		Vector3 b = null;
+		Vector3 c = null;
+		if (a1.y < b1.y && b1.y < c1.y) {
+			a = a1;
+			b = b1;
+			c = c1;
+		} else if (a1.y < b1.y && a1.y < c1.y) {
+			a = a1;
+			b = c1;
+			c = b1;
+		} else if (b1.y < a1.y && a1.y < c1.y) {
+			a = b1;
+			b = a1;
+			c = c1;
+		} else if (b1.y < a1.y && b1.y < c1.y) {
+			a = b1;
+			b = c1;
+			c = a1;
+		} else if (c1.y < a1.y && a1.y < b1.y) {
+			a = c1;
+			b = a1;
+			c = b1;
+		} else {
+			a = c1;
+			b = b1;
+			c = a1;
+		}
+
+		// Normal of the triangle's plane, (c - a) x (b - a)
+		double cax = c.x - a.x, cay = c.y - a.y, caz = c.z - a.z;
+		double bax = b.x - a.x, bay = b.y - a.y, baz = b.z - a.z;
+		double nx = cay * baz - bay * caz;
+		double ny = caz * bax - baz * cax;
+		double nz = cax * bay - bax * cay;
+		double D = -(nx * a.x + ny * a.y + nz * a.z);
+
+		double d0 = b.y != a.y ? (b.x - a.x) / (b.y - a.y) : 0;
+		double d1 = c.y != b.y ? (c.x - b.x) / (c.y - b.y) : 0;
+		double d2 = a.y != c.y ? (a.x - c.x) / (a.y - c.y) : 0;
+
+		int sx, ex;
+		int minx = (int) Math.min(a.x, Math.min(b.x, c.x));
+		int maxx = (int) Math.max(a.x, Math.max(b.x, c.x));
+		
+		// Skip the triangle if it is behind everything in the tiles it covers.
+		int miny = (int) a.y;
+		double maxy = c.y;
+		float zFront = getFrontDepth(minx, miny, maxx, maxy, nx, ny, nz, D);
+		if (!touchTiles(minx, miny, maxx, maxy, zFront, x0, y0, x1, y1)) return;
+		
+		for (int y = Math.max((int) a.y, y0); y < b.y && y < y1; y++) {
+			sx = (int) (Math.max(minx, Math.min(maxx, a.x + (y - a.y) * d2)));
+			ex = (int) (Math.max(minx, Math.min(maxx, a.x + (y - a.y) * d0)));
+
+			if (sx < ex) {
+				fillSpan(y, (sx < x0 ? x0 : sx), (ex >= x1 ? x1 - 1 : ex), nx, ny, nz, D, minx, miny, maxx, maxy, color, x0, y0, x1, y1);
+			} else {
+				fillSpan(y, (ex < x0 ? x0 : ex), (sx >= x1 ? x1 - 1 : sx), nx, ny, nz, D, minx, miny, maxx, maxy, color, x0, y0, x1, y1);
+			}
+		}
+
+		for (int y = Math.max((int) b.y, y0); y < c.y && y < y1; y++) {
+			sx = (int) (Math.max(minx, Math.min(maxx, a.x + (y - a.y) * d2)));
+			ex = (int) (Math.max(minx, Math.min(maxx, b.x + (y - b.y) * d1)));
+
+			if (sx < ex) {
+				fillSpan(y, (sx < x0 ? x0 : sx), (ex >= x1 ? x1 - 1 : ex), nx, ny, nz, D, minx, miny, maxx, maxy, color, x0, y0, x1, y1);
+			} else {
+				fillSpan(y, (ex < x0 ? x0 : ex), (sx >= x1 ? x1 - 1 : sx), nx, ny, nz, D, minx, miny, maxx, maxy, color, x0, y0, x1, y1);
+			}
+		}
+	}
+	
+	/**
+	 * Fill in one row of a triangle from x = from to x = to (inclusive), skipping tiles that are covered by closer geometry.
+	 * @param minx, miny, maxx, maxy The triangle's bounding box
+	 */
+	private void fillSpan(int y, int from, int to, double nx, double ny, double nz, double D, int minx, int miny, int maxx, double maxy, int color, int x0, int y0, int x1, int y1) {
+		boolean useDepthBuffer = Projector.input.useDepthBuffer;
+		int ty = y >> TileBinner.TILE_SHIFT;
+		int x = from;
+		while (x <= to) {
+			int tx = x >> TileBinner.TILE_SHIFT;
+			int tileEnd = Math.min(to, ((tx + 1) << TileBinner.TILE_SHIFT) - 1);
+			if (useDepthBuffer && tileEmpty[tx + ty * tilesX] == 0) {
+				// The closest depth of the triangle inside this tile
+				float zFront = getFrontDepth(Math.max(minx, tx << TileBinner.TILE_SHIFT), Math.max(miny, ty << TileBinner.TILE_SHIFT),
+					Math.min(maxx, ((tx + 1) << TileBinner.TILE_SHIFT) - 1), Math.min(maxy, ((ty + 1) << TileBinner.TILE_SHIFT) - 1), nx, ny, nz, D);
+				if (isTileHidden(tx + ty * tilesX, zFront)) {
+					x = tileEnd + 1;
+					continue;
+				}
+			}
+			for (; x <= tileEnd; x++) {
+				fillPixel(x, y, getDepthOnPlane(x, y, nx, ny, nz, D), color, x0, y0, x1, y1);
+			}
+		}
+	}
+	
+	/**
+	 * Calculates the closest depth of a plane inside a rectangle. The plane is linear, so this is at one of the corners.
+	 * @return The depth, rounded up so that depths calculated for pixels inside the rectangle can't be any closer
+	 */
+	private float getFrontDepth(double minX, double minY, double maxX, double maxY, double nx, double ny, double nz, double D) {
+		double z = Math.max(
+			Math.max(getDepthOnPlane(minX, minY, nx, ny, nz, D), getDepthOnPlane(maxX, minY, nx, ny, nz, D)),
+			Math.max(getDepthOnPlane(minX, maxY, nx, ny, nz, D), getDepthOnPlane(maxX, maxY, nx, ny, nz, D)));
+		return Math.nextUp((float) z);
+	}
+	
+	/**
+	 * Prepare the tiles overlapping a rectangle for drawing at depth z or farther.
+	 * @return false if all of those tiles are already covered by something closer than z, so there is nothing to draw
+	 */
+	private boolean touchTiles(double minX, double minY, double maxX, double maxY, float z, int x0, int y0, int x1, int y1) {
+		if (maxX < x0 || maxY < y0 || minX >= x1 || minY >= y1) return false;
+		int px0 = Math.max(x0, (int) minX);
+		int py0 = Math.max(y0, (int) minY);
+		int px1 = maxX >= x1 ? x1 - 1 : (int) maxX;
+		int py1 = maxY >= y1 ? y1 - 1 : (int) maxY;
+		int tx0 = px0 >> TileBinner.TILE_SHIFT, tx1 = px1 >> TileBinner.TILE_SHIFT;
+		int ty0 = py0 >> TileBinner.TILE_SHIFT, ty1 = py1 >> TileBinner.TILE_SHIFT;
+		boolean visible = false;
+		for (int ty = ty0; ty <= ty1 && !visible; ty++) {
+			for (int tx = tx0; tx <= tx1 && !visible; tx++) {
+				visible = !isTileHidden(tx + ty * tilesX, z);
+			}
+		}
+		if (!visible) return false;
+		// Count the drawn area against each tile so that they get rescanned once enough has changed.
+		for (int ty = ty0; ty <= ty1; ty++) {
+			int rows = Math.min(py1, ((ty + 1) << TileBinner.TILE_SHIFT) - 1) - Math.max(py0, ty << TileBinner.TILE_SHIFT) + 1;
+			for (int tx = tx0; tx <= tx1; tx++) {
+				int cols = Math.min(px1, ((tx + 1) << TileBinner.TILE_SHIFT) - 1) - Math.max(px0, tx << TileBinner.TILE_SHIFT) + 1;
+				tileWrites[tx + ty * tilesX] += rows * cols;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Check if everything in a tile is already closer than depth z, so that nothing drawn at depth z or farther would show.
+	 */
+	boolean isTileHidden(int tile, float z) {
+		if (tileEmpty[tile] > 0 || !Projector.input.useDepthBuffer) return false;
+		if (tileFar[tile] >= z) return true;
+		if (tileWrites[tile] < TileBinner.TILE_SIZE * TileBinner.TILE_SIZE) return false;
+		refreshTile(tile);
+		return tileFar[tile] >= z;
+	}
+	
+	/**
+	 * Recalculate the farthest depth in a tile.
+	 */
+	private void refreshTile(int tile) {
+		int tx = (tile % tilesX) << TileBinner.TILE_SHIFT;
+		int ty = (tile / tilesX) << TileBinner.TILE_SHIFT;
+		int ex = Math.min(tx + TileBinner.TILE_SIZE, w);
+		int ey = Math.min(ty + TileBinner.TILE_SIZE, h);
+		float far = Float.MAX_VALUE;
+		for (int y = ty; y < ey; y++) {
+			for (int i = tx + y * w, end = ex + y * w; i < end; i++) {
+				if (depth[i] < far) far = depth[i];
+			}
+		}
+		tileFar[tile] = far;
+		tileWrites[tile] = 0;
+	}
+	
+	/**
+	 * Calculates the depth of a 2D point using linear interpolation between 3 other points.
+	 * @param x
+	 * @param y
+	 * @param nx, ny, nz The normal of the plane intersecting the 3 reference points.
+	 * @param D The D value of the plane intersecting the 3 reference points.
+	 * @return
+	 */
+	private double getDepthOnPlane(double x, double y, double nx, double ny, double nz, double D) {
+		return (nx * x + ny * y + D) / -nz;
+	}
+	
+	/**
+	 * Fill in the specified pixel with the given color if it is in front of any previously drawn pixels at that location.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param color
+	 */
+	void fillPixel(int x, int y, double z, int color, int x0, int y0, int x1, int y1) {
+		int i = (int) x + (int) y * w;
+		if (x < x0 || x >= x1 || y < y0 || y >= y1) return;
+		// If the depth is not set or the depth is less than what is being drawn, draw the specified color.
+		float d = depth[i];
+		if (d == 0 || d < (float) z || !Projector.input.useDepthBuffer) {
+			if (d == 0) tileEmpty[(x >> TileBinner.TILE_SHIFT) + (y >> TileBinner.TILE_SHIFT) * tilesX]--;
+			depth[i] = (float) z;
+			pixels[i] = color;
+		}
+	}
+}
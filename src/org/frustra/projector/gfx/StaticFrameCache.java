@@ -0,0 +1,156 @@
+package org.frustra.projector.gfx;
+
+import java.util.Arrays;
+
+import org.frustra.projector.Projector;
+
+/**
+ * Keeps a copy of the static part of a frame (the axes, the static scene nodes and any loaded point cloud), so that
+ * while the camera is still only the parts of the screen with moving objects have to be drawn again.
+ *
+ * The screen is tracked in tiles. Each frame the tiles that moving objects are about to draw to are marked dirty,
+ * those and the tiles that were dirty the frame before are restored from the copy, and only they are drawn
+ * and post processed. Every other tile keeps the finished pixels from the frame before.
+ *
+ * @author Jacob Wirth
+ *
+ */
+class StaticFrameCache {
+	private final Screen screen;
+
+	// The static frame before post processing, and the coarse tile depths that go with it
+	private final int[] pixels;
+	private final float[] depth;
+	private final float[] tileFar;
+	private final int[] tileEmpty;
+	private final int[] tileWrites;
+
+	/**
+	 * Tiles moving objects draw to this frame. After restore() it also includes the tiles from the frame before.
+	 */
+	final boolean[] dirty;
+	// Tiles moving objects drew to last frame
+	private final boolean[] previous;
+
+	// What the static frame was drawn with
+	private boolean valid = false;
+	private final double[] viewProj = new double[16];
+	private boolean overlay;
+	private Object mesh, pointCloud, scene;
+	private long sceneVersion;
+	private long pointCloudLoads;
+
+	StaticFrameCache(Screen screen) {
+		this.screen = screen;
+		this.pixels = new int[screen.pixels.length];
+		this.depth = new float[screen.depth.length];
+		int tiles = screen.tilesX * screen.tilesY;
+		this.tileFar = new float[tiles];
+		this.tileEmpty = new int[tiles];
+		this.tileWrites = new int[tiles];
+		this.dirty = new boolean[tiles];
+		this.previous = new boolean[tiles];
+	}
+
+	/**
+	 * Force the next frame to be drawn in full.
+	 */
+	void invalidate() {
+		valid = false;
+	}
+
+	/**
+	 * Check if the saved static frame is what drawing the static scene again would give.
+	 * The camera has to be set up for the new frame first.
+	 */
+	boolean isValid() {
+		// Moving objects are drawn after the static scene, which only hides the same things with the depth buffer on.
+		if (!valid || !Projector.input.useDepthBuffer) return false;
+		if (Projector.input.depthBufferOverlay != overlay) return false;
+		if (Projector.mesh != mesh || Projector.pointCloud != pointCloud) return false;
+		if (Projector.scene != scene || Projector.scene.getStaticVersion() != sceneVersion) return false;
+		return Arrays.equals(Projector.camera.viewProjMatrix.m, viewProj);
+	}
+
+	/**
+	 * Save the static frame, which has just been drawn on the screen, and everything it depends on.
+	 * @param pointCloudLoads The number of point cloud nodes loaded before the static frame was drawn
+	 */
+	void save(long pointCloudLoads) {
+		System.arraycopy(screen.pixels, 0, pixels, 0, pixels.length);
+		System.arraycopy(screen.depth, 0, depth, 0, depth.length);
+		System.arraycopy(screen.tileFar, 0, tileFar, 0, tileFar.length);
+		System.arraycopy(screen.tileEmpty, 0, tileEmpty, 0, tileEmpty.length);
+		System.arraycopy(screen.tileWrites, 0, tileWrites, 0, tileWrites.length);
+		System.arraycopy(Projector.camera.viewProjMatrix.m, 0, viewProj, 0, 16);
+		overlay = Projector.input.depthBufferOverlay;
+		mesh = Projector.mesh;
+		pointCloud = Projector.pointCloud;
+		scene = Projector.scene;
+		sceneVersion = Projector.scene.getStaticVersion();
+		// A point cloud that loaded nodes is missing the ones it couldn't load yet, so draw it again next frame.
+		valid = Projector.pointCloud == null || Projector.pointCloud.getLoads() == pointCloudLoads;
+		// The whole screen was just drawn, none of it is left over from an earlier frame.
+		Arrays.fill(previous, false);
+	}
+
+	/**
+	 * Restore the static frame in the dirty tiles and in the tiles that were dirty last frame.
+	 * @return The number of tiles restored
+	 */
+	int restore() {
+		int restored = 0;
+		int w = screen.w;
+		for (int t = 0; t < dirty.length; t++) {
+			boolean current = dirty[t];
+			dirty[t] |= previous[t];
+			previous[t] = current;
+			if (!dirty[t]) continue;
+			restored++;
+			int x0 = (t % screen.tilesX) << TileBinner.TILE_SHIFT;
+			int y0 = (t / screen.tilesX) << TileBinner.TILE_SHIFT;
+			int x1 = Math.min(x0 + TileBinner.TILE_SIZE, w);
+			int y1 = Math.min(y0 + TileBinner.TILE_SIZE, screen.h);
+			for (int y = y0; y < y1; y++) {
+				System.arraycopy(pixels, x0 + y * w, screen.pixels, x0 + y * w, x1 - x0);
+				System.arraycopy(depth, x0 + y * w, screen.depth, x0 + y * w, x1 - x0);
+			}
+			screen.tileFar[t] = tileFar[t];
+			screen.tileEmpty[t] = tileEmpty[t];
+			screen.tileWrites[t] = tileWrites[t];
+		}
+		return restored;
+	}
+
+	/**
+	 * Remember which tiles the moving objects drew to after a full frame, so they are restored next frame.
+	 */
+	void keepDirty() {
+		System.arraycopy(dirty, 0, previous, 0, dirty.length);
+	}
+
+	/**
+	 * Start marking the dirty tiles of a new frame.
+	 */
+	void clearDirty() {
+		Arrays.fill(dirty, false);
+	}
+
+	/**
+	 * Mark the tiles covering the given pixel rectangle dirty, the rectangle is clipped to the screen.
+	 * @param x0, y0 The top left corner
+	 * @param x1, y1 The bottom right corner, not included
+	 */
+	void markRect(int x0, int y0, int x1, int y1) {
+		x0 = Math.max(0, x0);
+		y0 = Math.max(0, y0);
+		x1 = Math.min(screen.w, x1);
+		y1 = Math.min(screen.h, y1);
+		if (x0 >= x1 || y0 >= y1) return;
+		for (int ty = y0 >> TileBinner.TILE_SHIFT; ty <= (y1 - 1) >> TileBinner.TILE_SHIFT; ty++) {
+			for (int tx = x0 >> TileBinner.TILE_SHIFT; tx <= (x1 - 1) >> TileBinner.TILE_SHIFT; tx++) {
+				dirty[tx + ty * screen.tilesX] = true;
+			}
+		}
+	}
+}
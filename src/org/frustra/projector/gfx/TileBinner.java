@@ -0,0 +1,315 @@
+package org.frustra.projector.gfx;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+import org.frustra.projector.Projector;
+import org.frustra.projector.linear.Vector3;
+
+/**
+ * Sorts projected primitives into screen tiles so that every tile can be rasterized on its own thread.
+ * A tile only writes to its own part of the pixel and depth buffers, and draws its primitives in the
+ * order they were added, so the result is the same as drawing them one after another.
+ *
+ * @author Jacob Wirth
+ *
+ */
+class TileBinner {
+	static final int TILE_SHIFT = 6;
+	static final int TILE_SIZE = 1 << TILE_SHIFT;
+
+	static final byte POINT = 0;
+	static final byte LINE = 1;
+	static final byte TRIANGLE = 2;
+	static final byte CIRCLE = 3;
+
+	private final Screen screen;
+	final int tilesX, tilesY;
+
+	// Primitive storage, 9 coordinates per primitive (x, y, z of up to 3 vertices, or x, y, z, radius for circles)
+	byte[] type = new byte[1024];
+	double[] coords = new double[1024 * 9];
+	int[] color = new int[1024];
+	// Whether a circle passed the depth test at its center
+	boolean[] visible = new boolean[1024];
+	int count = 0;
+	// Index of the first circle in the current batch, every primitive added after it in the batch is a circle
+	int firstCircle = -1;
+
+	/*
+	 * Whether to keep everything for flush(), even when circles have to be drawn before what comes next.
+	 * Then the primitives are split into batches drawn one after another, batch b ends at batchEnd[b]
+	 * and its circles start at batchCircle[b] (-1 if it has none). The current batch isn't in the list.
+	 */
+	boolean deferred = false;
+	private int[] batchEnd = new int[4];
+	private int[] batchCircle = new int[4];
+	private int batches = 0;
+
+	// Primitive indices for each tile, in the order they were added
+	int[][] bins;
+	int[] binSize;
+	// Three vertices per tile for drawTile(), only one worker draws a tile at a time
+	private final Vector3[] scratch;
+
+	TileBinner(Screen screen) {
+		this.screen = screen;
+		this.tilesX = (screen.w + TILE_SIZE - 1) >> TILE_SHIFT;
+		this.tilesY = (screen.h + TILE_SIZE - 1) >> TILE_SHIFT;
+		this.bins = new int[tilesX * tilesY][16];
+		this.binSize = new int[tilesX * tilesY];
+		this.scratch = new Vector3[tilesX * tilesY * 3];
+		for (int i = 0; i < scratch.length; i++) {
+			scratch[i] = new Vector3();
+		}
+	}
+
+	void addPoint(Vector3 a, int color) {
+		addPoint(a.x, a.y, a.z, color);
+	}
+
+	void addPoint(double px, double py, double pz, int color) {
+		int x = (int) px;
+		int y = (int) py;
+		if (x < 0 || x >= screen.w || y < 0 || y >= screen.h) return;
+		int i = add(POINT, color);
+		coords[i * 9] = px;
+		coords[i * 9 + 1] = py;
+		coords[i * 9 + 2] = pz;
+		binTile(i, (x >> TILE_SHIFT) + (y >> TILE_SHIFT) * tilesX);
+	}
+
+	void addLine(Vector3 a, Vector3 b, int color) {
+		int i = add(LINE, color);
+		set(i, 0, a);
+		set(i, 1, b);
+		// Line stepping can run up to 2 pixels past the end points.
+		double minY = Math.min(a.y, b.y) - 2;
+		// A zero length line is drawn on the first row.
+		if (a.x == b.x && a.y == b.y) minY = 0;
+		bin(i, Math.min(a.x, b.x) - 2, minY, Math.max(a.x, b.x) + 2, Math.max(a.y, b.y) + 2);
+	}
+
+	void addTriangle(Vector3 a, Vector3 b, Vector3 c, int color) {
+		int i = add(TRIANGLE, color);
+		set(i, 0, a);
+		set(i, 1, b);
+		set(i, 2, c);
+		bin(i, Math.min(a.x, Math.min(b.x, c.x)) - 1, Math.min(a.y, Math.min(b.y, c.y)) - 1, Math.max(a.x, Math.max(b.x, c.x)) + 1, Math.max(a.y, Math.max(b.y, c.y)) + 1);
+	}
+
+	void addCircle(Vector3 a, double radius, int color) {
+		int i = add(CIRCLE, color);
+		set(i, 0, a);
+		coords[i * 9 + 3] = radius;
+		if (firstCircle < 0) firstCircle = i;
+		bin(i, a.x - radius - 1, a.y - radius - 1, a.x + radius + 1, a.y + radius + 1);
+	}
+
+	private int add(byte primitive, int rgb) {
+		// Circles need the depth buffer from everything before them, so draw what is already binned first.
+		if (primitive != CIRCLE && firstCircle >= 0) {
+			if (deferred) endBatch();
+			else flush();
+		}
+		if (count == type.length) {
+			int size = count * 2;
+			type = Arrays.copyOf(type, size);
+			coords = Arrays.copyOf(coords, size * 9);
+			color = Arrays.copyOf(color, size);
+			visible = Arrays.copyOf(visible, size);
+		}
+		type[count] = primitive;
+		color[count] = rgb;
+		visible[count] = true;
+		return count++;
+	}
+
+	private void endBatch() {
+		if (batches == batchEnd.length) {
+			batchEnd = Arrays.copyOf(batchEnd, batches * 2);
+			batchCircle = Arrays.copyOf(batchCircle, batches * 2);
+		}
+		batchEnd[batches] = count;
+		batchCircle[batches] = firstCircle;
+		batches++;
+		firstCircle = -1;
+	}
+
+	private void set(int i, int vertex, Vector3 vec) {
+		coords[i * 9 + vertex * 3] = vec.x;
+		coords[i * 9 + vertex * 3 + 1] = vec.y;
+		coords[i * 9 + vertex * 3 + 2] = vec.z;
+	}
+
+	/**
+	 * Add a primitive to every tile overlapping the given screen rectangle.
+	 */
+	private void bin(int i, double minX, double minY, double maxX, double maxY) {
+		if (maxX < 0 || maxY < 0 || minX >= screen.w || minY >= screen.h) return;
+		int tx0 = minX < 0 ? 0 : (int) minX >> TILE_SHIFT;
+		int ty0 = minY < 0 ? 0 : (int) minY >> TILE_SHIFT;
+		int tx1 = maxX >= screen.w ? tilesX - 1 : (int) maxX >> TILE_SHIFT;
+		int ty1 = maxY >= screen.h ? tilesY - 1 : (int) maxY >> TILE_SHIFT;
+		for (int ty = ty0; ty <= ty1; ty++) {
+			for (int tx = tx0; tx <= tx1; tx++) {
+				binTile(i, tx + ty * tilesX);
+			}
+		}
+	}
+
+	private void binTile(int i, int tile) {
+		if (binSize[tile] == bins[tile].length) bins[tile] = Arrays.copyOf(bins[tile], binSize[tile] * 2);
+		bins[tile][binSize[tile]++] = i;
+	}
+
+	/**
+	 * Rasterize all binned primitives and empty the bins.
+	 */
+	void flush() {
+		if (count == 0) return;
+		int from = 0;
+		for (int b = 0; b < batches; b++) {
+			drawBatch(from, batchCircle[b], batchEnd[b]);
+			from = batchEnd[b];
+		}
+		drawBatch(from, firstCircle, count);
+		clear();
+	}
+
+	/**
+	 * Empty the bins without drawing anything.
+	 */
+	void clear() {
+		Arrays.fill(binSize, 0);
+		count = 0;
+		firstCircle = -1;
+		batches = 0;
+	}
+
+	/**
+	 * Rasterize primitives from..to (exclusive), of which the ones from firstCircle on are circles (-1 if there are none).
+	 */
+	private void drawBatch(int from, int firstCircle, int to) {
+		if (firstCircle < 0) {
+			Screen.workers.invoke(new TileTask(0, tilesX * tilesY, from, to));
+		} else {
+			if (firstCircle > from) Screen.workers.invoke(new TileTask(0, tilesX * tilesY, from, firstCircle));
+			testCircles(firstCircle, to);
+			Screen.workers.invoke(new TileTask(0, tilesX * tilesY, firstCircle, to));
+		}
+	}
+
+	/**
+	 * Decide which circles pass the depth test at their center pixel.
+	 * The depth at the center is the value left by earlier primitives, followed by any earlier
+	 * circles in the range that cover the center pixel.
+	 */
+	private void testCircles(int from, int to) {
+		boolean useDepthBuffer = Projector.input.useDepthBuffer;
+		for (int i = from; i < to; i++) {
+			float z = (float) coords[i * 9 + 2];
+			int x = (int) coords[i * 9];
+			int y = (int) coords[i * 9 + 1];
+			float d = screen.depth[x + y * screen.w];
+			int tile = (x >> TILE_SHIFT) + (y >> TILE_SHIFT) * tilesX;
+			int[] bin = bins[tile];
+			for (int k = 0; k < binSize[tile]; k++) {
+				int j = bin[k];
+				if (j >= i) break;
+				if (j < from || !visible[j] || !covers(j, x, y)) continue;
+				float zj = (float) coords[j * 9 + 2];
+				if (d == 0 || d < zj || !useDepthBuffer) d = zj;
+			}
+			visible[i] = d == 0 || d < z;
+		}
+	}
+
+	/**
+	 * Check if Screen.fillCircle() would draw the pixel at x, y for the given circle.
+	 */
+	private boolean covers(int i, int x, int y) {
+		double cx = coords[i * 9];
+		double cy = coords[i * 9 + 1];
+		double radius = coords[i * 9 + 3];
+		if (x < cx - radius - 1 || x > cx + radius + 1 || y < cy - radius - 1 || y > cy + radius + 1) return false;
+		double radiuss = radius * radius;
+		int start = (int) Math.floor(y - cy);
+		for (int dy = start - 1; dy <= start + 1; dy++) {
+			if (dy < (int) -radius || dy >= radius || (int) (cy + dy) != y) continue;
+			int hw = (int) Math.sqrt(radiuss - dy * dy);
+			int startX = (int) Math.floor(x - cx);
+			for (int dx = startX - 1; dx <= startX + 1; dx++) {
+				if (dx >= -hw && dx < hw && (int) (cx + dx) == x) return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Rasterizes a range of tiles, splitting it between worker threads.
+	 */
+	private class TileTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int start, end;
+		private final int from, to;
+
+		TileTask(int start, int end, int from, int to) {
+			this.start = start;
+			this.end = end;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (end - start > 1) {
+				int mid = (start + end) >>> 1;
+				invokeAll(new TileTask(start, mid, from, to), new TileTask(mid, end, from, to));
+			} else {
+				drawTile(start, from, to);
+			}
+		}
+	}
+
+	/**
+	 * Draw primitives from..to (exclusive) that overlap the given tile, clipped to the tile.
+	 */
+	private void drawTile(int tile, int from, int to) {
+		int x0 = (tile % tilesX) << TILE_SHIFT;
+		int y0 = (tile / tilesX) << TILE_SHIFT;
+		int x1 = Math.min(x0 + TILE_SIZE, screen.w);
+		int y1 = Math.min(y0 + TILE_SIZE, screen.h);
+		Vector3 a = scratch[tile * 3];
+		Vector3 b = scratch[tile * 3 + 1];
+		Vector3 c = scratch[tile * 3 + 2];
+		int[] bin = bins[tile];
+		for (int k = 0; k < binSize[tile]; k++) {
+			int i = bin[k];
+			if (i < from) continue;
+			if (i >= to) break;
+			int o = i * 9;
+			switch (type[i]) {
+				case POINT:
+					screen.fillPixel((int) coords[o], (int) coords[o + 1], coords[o + 2], color[i], x0, y0, x1, y1);
+					break;
+				case LINE:
+					a.x = coords[o]; a.y = coords[o + 1]; a.z = coords[o + 2];
+					b.x = coords[o + 3]; b.y = coords[o + 4]; b.z = coords[o + 5];
+					screen.fillLine(a, b, color[i], x0, y0, x1, y1);
+					break;
+				case TRIANGLE:
+					a.x = coords[o]; a.y = coords[o + 1]; a.z = coords[o + 2];
+					b.x = coords[o + 3]; b.y = coords[o + 4]; b.z = coords[o + 5];
+					c.x = coords[o + 6]; c.y = coords[o + 7]; c.z = coords[o + 8];
+					screen.fillTriangle(a, b, c, color[i], x0, y0, x1, y1);
+					break;
+				case CIRCLE:
+					if (!visible[i]) break;
+					a.x = coords[o]; a.y = coords[o + 1]; a.z = coords[o + 2];
+					screen.fillCircle(a, coords[o + 3], color[i], x0, y0, x1, y1);
+					break;
+			}
+		}
+	}
+}
@@ -1,77 +1,181 @@
-package org.frustra.projector.linear;
-
-/**
- * A 4x4 Matrix structure that can be multiplied.
- * 
- * @author Jacob Wirth
- *
- */
-public class Matrix4x4 {
-	// Vectors are columns
-	public Vector4[] data = new Vector4[4];
-	
-	public Matrix4x4() {}
-
-	public Matrix4x4(double num) {
-		data[0] = new Vector4(num, 0, 0, 0);
-		data[1] = new Vector4(0, num, 0, 0);
-		data[2] = new Vector4(0, 0, num, 0);
-		data[3] = new Vector4(0, 0, 0, num);
-	}
-	
-	public Matrix4x4(Vector4 a, Vector4 b, Vector4 c, Vector4 d) {
-		data[0] = a;
-		data[1] = b;
-		data[2] = c;
-		data[3] = d;
-	}
-	
-	public Matrix4x4(
-		double a0, double b0, double c0, double d0,
-		double a1, double b1, double c1, double d1,
-		double a2, double b2, double c2, double d2,
-		double a3, double b3, double c3, double d3
-	) {
-		data[0] = new Vector4(a0, a1, a2, a3);
-		data[1] = new Vector4(b0, b1, b2, b3);
-		data[2] = new Vector4(c0, c1, c2, c3);
-		data[3] = new Vector4(d0, d1, d2, d3);
-	}
-	
-	public Matrix4x4 multiply(double scalar) {
-		return new Matrix4x4(data[0].multiply(scalar), data[1].multiply(scalar), data[2].multiply(scalar), data[3].multiply(scalar));
-	}
-	
-	public Matrix4x4 multiply(Matrix4x4 matrix) {
-		return new Matrix4x4(
-			matrix.data[0].dot(data[0].x, data[1].x, data[2].x, data[3].x),
-			matrix.data[0].dot(data[0].y, data[1].y, data[2].y, data[3].y),
-			matrix.data[0].dot(data[0].z, data[1].z, data[2].z, data[3].z),
-			matrix.data[0].dot(data[0].w, data[1].w, data[2].w, data[3].w),
-
-			matrix.data[1].dot(data[0].x, data[1].x, data[2].x, data[3].x),
-			matrix.data[1].dot(data[0].y, data[1].y, data[2].y, data[3].y),
-			matrix.data[1].dot(data[0].z, data[1].z, data[2].z, data[3].z),
-			matrix.data[1].dot(data[0].w, data[1].w, data[2].w, data[3].w),
-
-			matrix.data[2].dot(data[0].x, data[1].x, data[2].x, data[3].x),
-			matrix.data[2].dot(data[0].y, data[1].y, data[2].y, data[3].y),
-			matrix.data[2].dot(data[0].z, data[1].z, data[2].z, data[3].z),
-			matrix.data[2].dot(data[0].w, data[1].w, data[2].w, data[3].w),
-
-			matrix.data[3].dot(data[0].x, data[1].x, data[2].x, data[3].x),
-			matrix.data[3].dot(data[0].y, data[1].y, data[2].y, data[3].y),
-			matrix.data[3].dot(data[0].z, data[1].z, data[2].z, data[3].z),
-			matrix.data[3].dot(data[0].w, data[1].w, data[2].w, data[3].w)
-		);
-	}
-	
-	public Vector4 multiply(Vector4 vec) {
-		return new Vector4(
-			data[0].x * vec.x + data[1].x * vec.y + data[2].x * vec.z + data[3].x * vec.w,
-			data[0].y * vec.x + data[1].y * vec.y + data[2].y * vec.z + data[3].y * vec.w,
-			data[0].z * vec.x + data[1].z * vec.y + data[2].z * vec.z + data[3].z * vec.w,
-			data[0].w * vec.x + data[1].w * vec.y + data[2].w * vec.z + data[3].w * vec.w
-		);
-	}
-}
+package org.frustra.projector.linear;
+
+/**
+ * A 4x4 Matrix structure that can be multiplied.
+ * The methods ending in Into or InPlace write their result to an existing object instead of creating a new one.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class Matrix4x4 {
+	/**
+	 * Matrix values in column major order (m[column * 4 + row])
+	 */
+	public final double[] m = new double[16];
+
+	public Matrix4x4() {}
+
+	public Matrix4x4(double num) {
+		m[0] = num;
+		m[5] = num;
+		m[10] = num;
+		m[15] = num;
+	}
+
+	public Matrix4x4(Vector4 a, Vector4 b, Vector4 c, Vector4 d) {
+		setColumn(0, a);
+		setColumn(1, b);
+		setColumn(2, c);
+		setColumn(3, d);
+	}
+
+	public Matrix4x4(
+		double a0, double b0, double c0, double d0,
+		double a1, double b1, double c1, double d1,
+		double a2, double b2, double c2, double d2,
+		double a3, double b3, double c3, double d3
+	) {
+		m[0] = a0; m[1] = a1; m[2] = a2; m[3] = a3;
+		m[4] = b0; m[5] = b1; m[6] = b2; m[7] = b3;
+		m[8] = c0; m[9] = c1; m[10] = c2; m[11] = c3;
+		m[12] = d0; m[13] = d1; m[14] = d2; m[15] = d3;
+	}
+
+	public Matrix4x4(Matrix4x4 matrix) {
+		set(matrix);
+	}
+
+	public double get(int column, int row) {
+		return m[column * 4 + row];
+	}
+
+	public void set(int column, int row, double value) {
+		m[column * 4 + row] = value;
+	}
+
+	public Vector4 getColumn(int column) {
+		return new Vector4(m[column * 4], m[column * 4 + 1], m[column * 4 + 2], m[column * 4 + 3]);
+	}
+
+	public void setColumn(int column, Vector4 vec) {
+		setColumn(column, vec.x, vec.y, vec.z, vec.w);
+	}
+
+	public void setColumn(int column, double x, double y, double z, double w) {
+		m[column * 4] = x;
+		m[column * 4 + 1] = y;
+		m[column * 4 + 2] = z;
+		m[column * 4 + 3] = w;
+	}
+
+	public Matrix4x4 set(Matrix4x4 matrix) {
+		System.arraycopy(matrix.m, 0, m, 0, 16);
+		return this;
+	}
+
+	public Matrix4x4 setIdentity() {
+		for (int i = 0; i < 16; i++) m[i] = (i % 5 == 0) ? 1 : 0;
+		return this;
+	}
+
+	public Matrix4x4 multiply(double scalar) {
+		return new Matrix4x4(this).multiplyInPlace(scalar);
+	}
+
+	public Matrix4x4 multiplyInPlace(double scalar) {
+		for (int i = 0; i < 16; i++) m[i] *= scalar;
+		return this;
+	}
+
+	public Matrix4x4 multiply(Matrix4x4 matrix) {
+		return mulInto(matrix, new Matrix4x4());
+	}
+
+	/**
+	 * Multiply this matrix by another one (this * matrix) and store the result in dst.
+	 * dst may be this matrix or the other matrix.
+	 * @return dst
+	 */
+	public Matrix4x4 mulInto(Matrix4x4 matrix, Matrix4x4 dst) {
+		double[] a = m;
+		double a0 = a[0], a1 = a[1], a2 = a[2], a3 = a[3];
+		double a4 = a[4], a5 = a[5], a6 = a[6], a7 = a[7];
+		double a8 = a[8], a9 = a[9], a10 = a[10], a11 = a[11];
+		double a12 = a[12], a13 = a[13], a14 = a[14], a15 = a[15];
+		double[] b = matrix.m;
+		double[] r = dst.m;
+		for (int c = 0; c < 16; c += 4) {
+			double bx = b[c], by = b[c + 1], bz = b[c + 2], bw = b[c + 3];
+			r[c] = bx * a0 + by * a4 + bz * a8 + bw * a12;
+			r[c + 1] = bx * a1 + by * a5 + bz * a9 + bw * a13;
+			r[c + 2] = bx * a2 + by * a6 + bz * a10 + bw * a14;
+			r[c + 3] = bx * a3 + by * a7 + bz * a11 + bw * a15;
+		}
+		return dst;
+	}
+
+	public Matrix4x4 transpose() {
+		return new Matrix4x4(this).transposeInPlace();
+	}
+
+	public Matrix4x4 transposeInPlace() {
+		for (int c = 0; c < 4; c++) {
+			for (int r = c + 1; r < 4; r++) {
+				double tmp = m[c * 4 + r];
+				m[c * 4 + r] = m[r * 4 + c];
+				m[r * 4 + c] = tmp;
+			}
+		}
+		return this;
+	}
+
+	public Vector4 multiply(Vector4 vec) {
+		return transform(vec, new Vector4());
+	}
+
+	/**
+	 * Multiply a vector by this matrix and store the result in dst. src and dst may be the same vector.
+	 * @return dst
+	 */
+	public Vector4 transform(Vector4 src, Vector4 dst) {
+		return transform(src.x, src.y, src.z, src.w, dst);
+	}
+
+	/**
+	 * Multiply the vector (x, y, z, w) by this matrix and store the result in dst.
+	 * @return dst
+	 */
+	public Vector4 transform(double x, double y, double z, double w, Vector4 dst) {
+		double[] a = m;
+		dst.x = a[0] * x + a[4] * y + a[8] * z + a[12] * w;
+		dst.y = a[1] * x + a[5] * y + a[9] * z + a[13] * w;
+		dst.z = a[2] * x + a[6] * y + a[10] * z + a[14] * w;
+		dst.w = a[3] * x + a[7] * y + a[11] * z + a[15] * w;
+		return dst;
+	}
+
+	/**
+	 * Find the axis aligned box around an axis aligned box moved by this matrix, which must not have a projection part.
+	 * @param dst Receives minX, minY, minZ, maxX, maxY, maxZ
+	 * @return dst
+	 */
+	public double[] transformBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ, double[] dst) {
+		double[] a = m;
+		for (int row = 0; row < 3; row++) {
+			// Each term is smallest at one end of its axis and largest at the other.
+			double lo = a[12 + row], hi = lo;
+			double x0 = a[row] * minX, x1 = a[row] * maxX;
+			double y0 = a[4 + row] * minY, y1 = a[4 + row] * maxY;
+			double z0 = a[8 + row] * minZ, z1 = a[8 + row] * maxZ;
+			lo += Math.min(x0, x1) + Math.min(y0, y1) + Math.min(z0, z1);
+			hi += Math.max(x0, x1) + Math.max(y0, y1) + Math.max(z0, z1);
+			dst[row] = lo;
+			dst[row + 3] = hi;
+		}
+		return dst;
+	}
+
+	public String toString() {
+		return "[" + getColumn(0) + "], [" + getColumn(1) + "], [" + getColumn(2) + "], [" + getColumn(3) + "]";
+	}
+}
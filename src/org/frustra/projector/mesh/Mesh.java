@@ -0,0 +1,86 @@
+package org.frustra.projector.mesh;
+
+import java.util.Arrays;
+
+import org.frustra.projector.collision.MeshCollider;
+
+/**
+ * A triangle mesh stored in packed arrays, ready to be projected all at once.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class Mesh {
+	/**
+	 * Vertex positions, packed as x, y, z
+	 */
+	public final float[] positions;
+
+	/**
+	 * Vertex indices, 3 per triangle
+	 */
+	public final int[] indices;
+
+	public final int vertexCount;
+	public final int triangleCount;
+
+	/**
+	 * The axis aligned bounding box as minX, minY, minZ, maxX, maxY, maxZ.
+	 * Call updateBounds() after moving the vertices.
+	 */
+	public final float[] bounds = new float[6];
+
+	/**
+	 * The arrays are used directly, not copied. They may be longer than needed.
+	 */
+	public Mesh(float[] positions, int vertexCount, int[] indices, int triangleCount) {
+		if (positions.length < vertexCount * 3 || indices.length < triangleCount * 3) {
+			throw new IllegalArgumentException("Mesh arrays are shorter than the vertex and triangle counts");
+		}
+		this.positions = positions;
+		this.indices = indices;
+		this.vertexCount = vertexCount;
+		this.triangleCount = triangleCount;
+		updateBounds();
+	}
+
+	/**
+	 * Recalculate the bounding box from the vertex positions.
+	 */
+	public void updateBounds() {
+		bounds[0] = bounds[1] = bounds[2] = Float.POSITIVE_INFINITY;
+		bounds[3] = bounds[4] = bounds[5] = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < vertexCount * 3; i += 3) {
+			for (int axis = 0; axis < 3; axis++) {
+				float v = positions[i + axis];
+				if (v < bounds[axis]) bounds[axis] = v;
+				if (v > bounds[axis + 3]) bounds[axis + 3] = v;
+			}
+		}
+	}
+
+	/**
+	 * Scale and move the mesh in place so that its largest side is the given size, centered on (x, y, z).
+	 * @return this
+	 */
+	public Mesh fit(double x, double y, double z, double size) {
+		float[] b = bounds;
+		double extent = Math.max(b[3] - b[0], Math.max(b[4] - b[1], b[5] - b[2]));
+		double scale = extent > 0 ? size / extent : 1;
+		double cx = (b[0] + b[3]) / 2, cy = (b[1] + b[4]) / 2, cz = (b[2] + b[5]) / 2;
+		for (int i = 0; i < vertexCount * 3; i += 3) {
+			positions[i] = (float) ((positions[i] - cx) * scale + x);
+			positions[i + 1] = (float) ((positions[i + 1] - cy) * scale + y);
+			positions[i + 2] = (float) ((positions[i + 2] - cz) * scale + z);
+		}
+		updateBounds();
+		return this;
+	}
+
+	/**
+	 * Create a collider with the shape of this mesh. The mesh should be closed.
+	 */
+	public MeshCollider createCollider() {
+		return new MeshCollider(positions, indices.length == triangleCount * 3 ? indices : Arrays.copyOf(indices, triangleCount * 3));
+	}
+}
@@ -0,0 +1,463 @@
+package org.frustra.projector.mesh;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Loads triangle meshes from Wavefront OBJ and binary PLY files.
+ * Files are memory mapped and parsed straight from the mapped bytes into the packed mesh arrays,
+ * without creating a String or any other object per line, vertex or face.
+ * Polygons with more than 3 vertices are split into triangle fans. Only positions are loaded.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class MeshLoader {
+	/**
+	 * Load an OBJ or PLY file, chosen by its contents.
+	 */
+	public static Mesh load(Path path) throws IOException {
+		MappedByteBuffer buf = map(path);
+		if (buf.limit() >= 4 && buf.get(0) == 'p' && buf.get(1) == 'l' && buf.get(2) == 'y' && (buf.get(3) == '\n' || buf.get(3) == '\r')) {
+			return parsePly(buf, path);
+		}
+		return parseObj(buf, path);
+	}
+
+	public static Mesh loadObj(Path path) throws IOException {
+		return parseObj(map(path), path);
+	}
+
+	public static Mesh loadPly(Path path) throws IOException {
+		return parsePly(map(path), path);
+	}
+
+	private static MappedByteBuffer map(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			if (channel.size() > Integer.MAX_VALUE) throw new IOException(path + ": mesh files larger than 2 GB are not supported");
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			// The mapping stays valid after the channel is closed.
+			channel.close();
+		}
+	}
+
+	/*
+	 * Wavefront OBJ
+	 */
+
+	private static Mesh parseObj(MappedByteBuffer buf, Path path) throws IOException {
+		ObjParser parser = new ObjParser(buf, path);
+		parser.parse();
+		return new Mesh(parser.positions, parser.vertexCount, parser.indices, parser.indexCount / 3);
+	}
+
+	/**
+	 * Reads "v" and "f" lines one byte at a time, skipping everything else.
+	 */
+	private static class ObjParser {
+		private final MappedByteBuffer buf;
+		private final Path path;
+		private final int limit;
+		private int pos = 0;
+
+		float[] positions = new float[3 * 1024];
+		int vertexCount = 0;
+		int[] indices = new int[3 * 1024];
+		int indexCount = 0;
+
+		// Powers of 10 that a double holds exactly
+		private static final double[] POW10 = new double[23];
+		static {
+			POW10[0] = 1;
+			for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10;
+		}
+
+		ObjParser(MappedByteBuffer buf, Path path) {
+			this.buf = buf;
+			this.path = path;
+			this.limit = buf.limit();
+		}
+
+		void parse() throws IOException {
+			while (pos < limit) {
+				skipSpaces();
+				if (pos + 1 < limit && isSpace(buf.get(pos + 1))) {
+					byte c = buf.get(pos);
+					if (c == 'v') {
+						pos++;
+						parseVertex();
+					} else if (c == 'f') {
+						pos++;
+						parseFace();
+					}
+				}
+				skipLine();
+			}
+			// Faces may use negative indices relative to the vertices before them, but all of them have to exist.
+			for (int i = 0; i < indexCount; i++) {
+				if (indices[i] < 0 || indices[i] >= vertexCount) throw error("face uses vertex " + (indices[i] + 1) + " of " + vertexCount);
+			}
+		}
+
+		private void parseVertex() throws IOException {
+			if (positions.length < vertexCount * 3 + 3) positions = Arrays.copyOf(positions, positions.length * 2);
+			int o = vertexCount * 3;
+			positions[o] = parseFloat();
+			positions[o + 1] = parseFloat();
+			positions[o + 2] = parseFloat();
+			vertexCount++;
+		}
+
+		private void parseFace() throws IOException {
+			int first = 0, previous = 0, count = 0;
+			while (true) {
+				skipSpaces();
+				if (pos >= limit || isLineEnd(buf.get(pos))) break;
+				int index = parseIndex();
+				// Skip the texture and normal indices (v/vt/vn).
+				while (pos < limit && !isSpace(buf.get(pos)) && !isLineEnd(buf.get(pos))) pos++;
+				if (count == 0) {
+					first = index;
+				} else if (count >= 2) {
+					if (indices.length < indexCount + 3) indices = Arrays.copyOf(indices, indices.length * 2);
+					indices[indexCount++] = first;
+					indices[indexCount++] = previous;
+					indices[indexCount++] = index;
+				}
+				previous = index;
+				count++;
+			}
+			if (count < 3) throw error("face with fewer than 3 vertices");
+		}
+
+		/**
+		 * @return The zero based vertex index
+		 */
+		private int parseIndex() throws IOException {
+			boolean negative = false;
+			if (pos < limit && buf.get(pos) == '-') {
+				negative = true;
+				pos++;
+			}
+			int start = pos;
+			long value = 0;
+			while (pos < limit) {
+				int d = buf.get(pos) - '0';
+				if (d < 0 || d > 9) break;
+				value = value * 10 + d;
+				if (value > Integer.MAX_VALUE) throw error("vertex index out of range");
+				pos++;
+			}
+			if (pos == start) throw error("expected a vertex index");
+			return negative ? vertexCount - (int) value : (int) value - 1;
+		}
+
+		private float parseFloat() throws IOException {
+			skipSpaces();
+			boolean negative = false;
+			if (pos < limit) {
+				byte c = buf.get(pos);
+				if (c == '-' || c == '+') {
+					negative = c == '-';
+					pos++;
+				}
+			}
+			// Up to 18 significant digits fit in a long, any more can't change a float.
+			long mantissa = 0;
+			int digits = 0;
+			int exponent = 0;
+			boolean any = false;
+			boolean fraction = false;
+			while (pos < limit) {
+				byte c = buf.get(pos);
+				if (c == '.' && !fraction) {
+					fraction = true;
+				} else if (c >= '0' && c <= '9') {
+					any = true;
+					if (digits < 18) {
+						mantissa = mantissa * 10 + (c - '0');
+						if (mantissa != 0) digits++;
+						if (fraction) exponent--;
+					} else if (!fraction) {
+						exponent++;
+					}
+				} else {
+					break;
+				}
+				pos++;
+			}
+			if (!any) throw error("expected a number");
+			if (pos < limit && (buf.get(pos) == 'e' || buf.get(pos) == 'E')) {
+				pos++;
+				boolean negativeExponent = false;
+				if (pos < limit && (buf.get(pos) == '-' || buf.get(pos) == '+')) {
+					negativeExponent = buf.get(pos) == '-';
+					pos++;
+				}
+				int e = 0;
+				while (pos < limit && buf.get(pos) >= '0' && buf.get(pos) <= '9') {
+					if (e < 1000) e = e * 10 + (buf.get(pos) - '0');
+					pos++;
+				}
+				exponent += negativeExponent ? -e : e;
+			}
+			double value = mantissa;
+			if (exponent > 0) value *= exponent < POW10.length ? POW10[exponent] : Math.pow(10, exponent);
+			else if (exponent < 0) value /= -exponent < POW10.length ? POW10[-exponent] : Math.pow(10, -exponent);
+			return (float) (negative ? -value : value);
+		}
+
+		private static boolean isSpace(byte c) {
+			return c == ' ' || c == '\t' || c == '\r';
+		}
+
+		private static boolean isLineEnd(byte c) {
+			return c == '\n' || c == '#';
+		}
+
+		private void skipSpaces() {
+			while (pos < limit && isSpace(buf.get(pos))) pos++;
+		}
+
+		private void skipLine() {
+			while (pos < limit && buf.get(pos) != '\n') pos++;
+			pos++;
+		}
+
+		private IOException error(String message) {
+			// Only count lines when something went wrong.
+			int line = 1;
+			for (int i = 0; i < Math.min(pos, limit); i++) {
+				if (buf.get(i) == '\n') line++;
+			}
+			return new IOException(path + ":" + line + ": " + message);
+		}
+	}
+
+	/*
+	 * Binary PLY
+	 */
+
+	private static final int CHAR = 0, UCHAR = 1, SHORT = 2, USHORT = 3, INT = 4, UINT = 5, FLOAT = 6, DOUBLE = 7;
+	private static final String[][] TYPE_NAMES = {
+		{ "char", "int8" }, { "uchar", "uint8" }, { "short", "int16" }, { "ushort", "uint16" },
+		{ "int", "int32" }, { "uint", "uint32" }, { "float", "float32" }, { "double", "float64" }
+	};
+	private static final int[] TYPE_SIZES = { 1, 1, 2, 2, 4, 4, 4, 8 };
+
+	private static class PlyProperty {
+		String name;
+		int type;
+		// For list properties, the type of the length before the items
+		int countType = -1;
+	}
+
+	private static class PlyElement {
+		String name;
+		int count;
+		ArrayList<PlyProperty> properties = new ArrayList<PlyProperty>();
+
+		/**
+		 * @return The size of one element in bytes, or -1 if it has list properties
+		 */
+		int stride() {
+			int size = 0;
+			for (PlyProperty p : properties) {
+				if (p.countType >= 0) return -1;
+				size += TYPE_SIZES[p.type];
+			}
+			return size;
+		}
+
+		int offsetOf(String property) {
+			int offset = 0;
+			for (PlyProperty p : properties) {
+				if (p.name.equals(property)) return offset;
+				offset += TYPE_SIZES[p.type];
+			}
+			return -1;
+		}
+
+		PlyProperty get(String property) {
+			for (PlyProperty p : properties) {
+				if (p.name.equals(property)) return p;
+			}
+			return null;
+		}
+	}
+
+	private static Mesh parsePly(MappedByteBuffer buf, Path path) throws IOException {
+		// The header is a few short lines of text, so it is fine to read it as strings.
+		ArrayList<PlyElement> elements = new ArrayList<PlyElement>();
+		int pos = 0;
+		boolean ended = false;
+		while (pos < buf.limit() && !ended) {
+			int start = pos;
+			while (pos < buf.limit() && buf.get(pos) != '\n') pos++;
+			byte[] bytes = new byte[pos - start];
+			for (int i = 0; i < bytes.length; i++) bytes[i] = buf.get(start + i);
+			pos++;
+			String[] words = new String(bytes, StandardCharsets.US_ASCII).trim().split("\\s+");
+			if (words[0].equals("format")) {
+				if (words[1].equals("binary_little_endian")) buf.order(ByteOrder.LITTLE_ENDIAN);
+				else if (words[1].equals("binary_big_endian")) buf.order(ByteOrder.BIG_ENDIAN);
+				else throw new IOException(path + ": only binary PLY files are supported, not " + words[1]);
+			} else if (words[0].equals("element")) {
+				PlyElement element = new PlyElement();
+				element.name = words[1];
+				element.count = Integer.parseInt(words[2]);
+				if (element.count < 0) throw new IOException(path + ": element " + element.name + " has a negative count");
+				elements.add(element);
+			} else if (words[0].equals("property")) {
+				if (elements.isEmpty()) throw new IOException(path + ": property before any element");
+				PlyProperty property = new PlyProperty();
+				if (words[1].equals("list")) {
+					property.countType = plyType(words[2], path);
+					property.type = plyType(words[3], path);
+					property.name = words[4];
+				} else {
+					property.type = plyType(words[1], path);
+					property.name = words[2];
+				}
+				elements.get(elements.size() - 1).properties.add(property);
+			} else if (words[0].equals("end_header")) {
+				ended = true;
+			}
+		}
+		if (!ended) throw new IOException(path + ": PLY header has no end_header");
+
+		float[] positions = new float[0];
+		int vertexCount = 0;
+		int[] indices = new int[0];
+		int indexCount = 0;
+		for (PlyElement element : elements) {
+			if (element.name.equals("vertex")) {
+				int stride = element.stride();
+				PlyProperty px = element.get("x"), py = element.get("y"), pz = element.get("z");
+				if (px == null || py == null || pz == null) throw new IOException(path + ": vertices have no x, y, z");
+				vertexCount = element.count;
+				positions = new float[vertexCount * 3];
+				if (stride > 0 && px.type == FLOAT && py.type == FLOAT && pz.type == FLOAT) {
+					// Vertices have a fixed size, read the coordinates straight from their offsets.
+					int ox = element.offsetOf("x"), oy = element.offsetOf("y"), oz = element.offsetOf("z");
+					checkSize(buf, pos + (long) stride * vertexCount, path);
+					for (int i = 0; i < vertexCount; i++, pos += stride) {
+						positions[i * 3] = buf.getFloat(pos + ox);
+						positions[i * 3 + 1] = buf.getFloat(pos + oy);
+						positions[i * 3 + 2] = buf.getFloat(pos + oz);
+					}
+				} else {
+					for (int i = 0; i < vertexCount; i++) {
+						for (PlyProperty p : element.properties) {
+							if (p.countType >= 0) {
+								pos = skipList(buf, pos, p, path);
+								continue;
+							}
+							checkSize(buf, pos + TYPE_SIZES[p.type], path);
+							if (p == px) positions[i * 3] = (float) readNumber(buf, pos, p.type);
+							else if (p == py) positions[i * 3 + 1] = (float) readNumber(buf, pos, p.type);
+							else if (p == pz) positions[i * 3 + 2] = (float) readNumber(buf, pos, p.type);
+							pos += TYPE_SIZES[p.type];
+						}
+					}
+				}
+			} else if (element.name.equals("face")) {
+				PlyProperty list = element.get("vertex_indices");
+				if (list == null) list = element.get("vertex_index");
+				if (list == null || list.countType < 0) throw new IOException(path + ": faces have no vertex_indices list");
+				indices = new int[element.count * 3];
+				int countSize = TYPE_SIZES[list.countType];
+				int indexSize = TYPE_SIZES[list.type];
+				for (int i = 0; i < element.count; i++) {
+					for (PlyProperty p : element.properties) {
+						if (p != list) {
+							pos = p.countType >= 0 ? skipList(buf, pos, p, path) : pos + TYPE_SIZES[p.type];
+							continue;
+						}
+						checkSize(buf, pos + countSize, path);
+						int n = (int) readNumber(buf, pos, list.countType);
+						pos += countSize;
+						if (n < 3) throw new IOException(path + ": face " + i + " has fewer than 3 vertices");
+						checkSize(buf, pos + (long) n * indexSize, path);
+						if (indices.length < indexCount + (n - 2) * 3) indices = Arrays.copyOf(indices, Math.max(indices.length * 2, indexCount + (n - 2) * 3));
+						int first = readIndex(buf, pos, list.type);
+						int previous = readIndex(buf, pos + indexSize, list.type);
+						for (int k = 2; k < n; k++) {
+							int index = readIndex(buf, pos + k * indexSize, list.type);
+							indices[indexCount++] = first;
+							indices[indexCount++] = previous;
+							indices[indexCount++] = index;
+							previous = index;
+						}
+						pos += n * indexSize;
+					}
+				}
+			} else {
+				// Skip any other elements.
+				int stride = element.stride();
+				if (stride >= 0) {
+					checkSize(buf, pos + (long) stride * element.count, path);
+					pos += stride * element.count;
+				} else {
+					for (int i = 0; i < element.count; i++) {
+						for (PlyProperty p : element.properties) {
+							pos = p.countType >= 0 ? skipList(buf, pos, p, path) : pos + TYPE_SIZES[p.type];
+						}
+					}
+				}
+			}
+		}
+		for (int i = 0; i < indexCount; i++) {
+			if (indices[i] < 0 || indices[i] >= vertexCount) throw new IOException(path + ": face uses vertex " + indices[i] + " of " + vertexCount);
+		}
+		return new Mesh(positions, vertexCount, indices, indexCount / 3);
+	}
+
+	private static int plyType(String name, Path path) throws IOException {
+		for (int i = 0; i < TYPE_NAMES.length; i++) {
+			if (TYPE_NAMES[i][0].equals(name) || TYPE_NAMES[i][1].equals(name)) return i;
+		}
+		throw new IOException(path + ": unknown PLY type " + name);
+	}
+
+	private static double readNumber(MappedByteBuffer buf, int pos, int type) {
+		switch (type) {
+			case CHAR: return buf.get(pos);
+			case UCHAR: return buf.get(pos) & 0xFF;
+			case SHORT: return buf.getShort(pos);
+			case USHORT: return buf.getShort(pos) & 0xFFFF;
+			case INT: return buf.getInt(pos);
+			case UINT: return buf.getInt(pos) & 0xFFFFFFFFL;
+			case FLOAT: return buf.getFloat(pos);
+			default: return buf.getDouble(pos);
+		}
+	}
+
+	private static int readIndex(MappedByteBuffer buf, int pos, int type) {
+		// Indices are almost always 32 bit ints, indices too large for an int fail the range check.
+		if (type == INT || type == UINT) return buf.getInt(pos);
+		return (int) readNumber(buf, pos, type);
+	}
+
+	private static int skipList(MappedByteBuffer buf, int pos, PlyProperty p, Path path) throws IOException {
+		checkSize(buf, pos + TYPE_SIZES[p.countType], path);
+		long n = (long) readNumber(buf, pos, p.countType);
+		if (n < 0) throw new IOException(path + ": list " + p.name + " has a negative length");
+		long end = pos + TYPE_SIZES[p.countType] + n * TYPE_SIZES[p.type];
+		checkSize(buf, end, path);
+		return (int) end;
+	}
+
+	private static void checkSize(MappedByteBuffer buf, long end, Path path) throws IOException {
+		if (end > buf.limit()) throw new IOException(path + ": PLY file is truncated");
+	}
+}
@@ -0,0 +1,35 @@
+package org.frustra.projector.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event with the stage timings and occlusion culling counts of one frame.
+ *
+ * @author Jacob Wirth
+ *
+ */
+@Name("org.frustra.projector.Frame")
+@Label("Frame")
+@Category("3D Projector")
+@Description("Time spent in each stage of drawing a frame")
+@StackTrace(false)
+class FrameEvent extends Event {
+	@Label("Camera") @Timespan(Timespan.NANOSECONDS) long camera;
+	@Label("Clear") @Timespan(Timespan.NANOSECONDS) long clear;
+	@Label("Axes") @Timespan(Timespan.NANOSECONDS) long axes;
+	@Label("Scene") @Timespan(Timespan.NANOSECONDS) long scene;
+	@Label("Particles") @Timespan(Timespan.NANOSECONDS) long particles;
+	@Label("Tile Raster") @Timespan(Timespan.NANOSECONDS) long raster;
+	@Label("Post Process") @Timespan(Timespan.NANOSECONDS) long overlay;
+	@Label("Capture") @Timespan(Timespan.NANOSECONDS) long capture;
+	@Label("Present") @Timespan(Timespan.NANOSECONDS) long present;
+	@Label("Total") @Timespan(Timespan.NANOSECONDS) long total;
+	@Label("Occlusion Tested") int occlusionTested;
+	@Label("Occlusion Culled") int occlusionCulled;
+}
@@ -0,0 +1,28 @@
+package org.frustra.projector.metrics;
+
+/**
+ * The timed stages of drawing a frame, in the order Screen runs them.
+ * Pipelined frames run CAMERA, AXES and SCENE first on the submitting thread, and the rest on the stage threads.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public enum FrameStage {
+	/** Moving the camera to the input location */
+	CAMERA,
+	/** Clearing the pixel and depth buffers */
+	CLEAR,
+	AXES,
+	SCENE,
+	/** Rasterizing the tile bins, in parallel mode and for every pipelined frame */
+	RASTER,
+	PARTICLES,
+	/** Running the post process passes, like the depth overlay */
+	OVERLAY,
+	/** Copying the frame for the frame capture, if it is on */
+	CAPTURE,
+	/** Copying the frame to the window */
+	PRESENT,
+	/** The whole frame */
+	TOTAL
+}
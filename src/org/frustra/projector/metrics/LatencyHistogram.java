@@ -0,0 +1,97 @@
+package org.frustra.projector.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in log-linear buckets: every power of 2 is split into 16 equal buckets,
+ * so percentiles are within about 6% of the real value while recording stays allocation free.
+ * Recording and reading can happen on different threads at the same time.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class LatencyHistogram {
+	private static final int SUB_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Add one duration in nanoseconds.
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) nanos = 0;
+		counts.incrementAndGet(bucket(nanos));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+		long m = max.get();
+		while (nanos > m && !max.compareAndSet(m, nanos)) m = max.get();
+	}
+
+	/**
+	 * Values below 16 get a bucket each, after that every power of 2 gets 16 buckets.
+	 */
+	private static int bucket(long value) {
+		if (value < SUB_BUCKETS) return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	/**
+	 * The largest value that falls into a bucket.
+	 */
+	private static long bucketEnd(int bucket) {
+		if (bucket < SUB_BUCKETS) return bucket;
+		int shift = bucket / SUB_BUCKETS - 1;
+		long start = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return start + (1L << shift) - 1;
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @return The mean duration in nanoseconds, or 0 if nothing was recorded
+	 */
+	public double getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : total.get() / (double) n;
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @param percentile Between 0 and 100
+	 * @return The duration in nanoseconds that the given percentage of recorded durations are at or below
+	 */
+	public long getPercentile(double percentile) {
+		long n = count.get();
+		if (n == 0) return 0;
+		long target = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= target) return Math.min(bucketEnd(i), max.get());
+		}
+		return max.get();
+	}
+
+	/**
+	 * Forget everything recorded so far.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+}
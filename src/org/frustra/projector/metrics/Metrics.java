@@ -0,0 +1,167 @@
+package org.frustra.projector.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Frame and tick timings, and simulation counts.
+ * Screen and EngineThread time their stages here. The results can be read over JMX once register()
+ * has been called, and each frame and tick is also emitted as a JFR event while a recording is running.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class Metrics implements ProjectorMetricsMXBean {
+	public static final String OBJECT_NAME = "org.frustra.projector:type=Metrics";
+
+	/**
+	 * Timings of the stages of a frame, recorded by the render thread
+	 */
+	public static final StageTimer<FrameStage> frame = new StageTimer<FrameStage>(FrameStage.class);
+
+	/**
+	 * Timings of the phases of a tick, recorded by the engine thread
+	 */
+	public static final StageTimer<TickStage> tick = new StageTimer<TickStage>(TickStage.class);
+
+	// Counts as of the end of the last tick
+	static volatile int particleCount = 0;
+	static volatile int fireCount = 0;
+	// Resolution scale of the last frame
+	static volatile double renderScale = 1;
+	// Occlusion culling counts of the last frame
+	static volatile int occluderTriangles = 0;
+	static volatile int occlusionTested = 0;
+	static volatile int occlusionCulled = 0;
+
+	private static boolean registered = false;
+
+	/**
+	 * Publish the metrics through the platform MBean server. Calling this again does nothing.
+	 */
+	public static synchronized void register() {
+		if (registered) return;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(new Metrics(), new ObjectName(OBJECT_NAME));
+			registered = true;
+		} catch (JMException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Record the end of a frame, after the FrameStage.TOTAL stage has been timed.
+	 */
+	public static void endFrame() {
+		FrameEvent event = new FrameEvent();
+		if (event.shouldCommit()) {
+			long[] laps = new long[FrameStage.values().length];
+			for (FrameStage stage : FrameStage.values()) laps[stage.ordinal()] = frame.last(stage);
+			commitFrame(event, laps, occlusionTested, occlusionCulled);
+		}
+	}
+
+	/**
+	 * Record the end of a frame from stage durations kept with the frame, indexed by FrameStage ordinal.
+	 * For frames drawn across several threads, where the latest durations can already belong to the next frame.
+	 */
+	public static void endFrame(long[] laps, int occlusionTested, int occlusionCulled) {
+		FrameEvent event = new FrameEvent();
+		if (event.shouldCommit()) commitFrame(event, laps, occlusionTested, occlusionCulled);
+	}
+
+	private static void commitFrame(FrameEvent event, long[] laps, int tested, int culled) {
+		event.camera = laps[FrameStage.CAMERA.ordinal()];
+		event.clear = laps[FrameStage.CLEAR.ordinal()];
+		event.axes = laps[FrameStage.AXES.ordinal()];
+		event.scene = laps[FrameStage.SCENE.ordinal()];
+		event.particles = laps[FrameStage.PARTICLES.ordinal()];
+		event.raster = laps[FrameStage.RASTER.ordinal()];
+		event.overlay = laps[FrameStage.OVERLAY.ordinal()];
+		event.capture = laps[FrameStage.CAPTURE.ordinal()];
+		event.present = laps[FrameStage.PRESENT.ordinal()];
+		event.total = laps[FrameStage.TOTAL.ordinal()];
+		event.occlusionTested = tested;
+		event.occlusionCulled = culled;
+		event.commit();
+	}
+
+	/**
+	 * Record the fraction of the window size the last frame was drawn at.
+	 */
+	public static void setRenderScale(double scale) {
+		renderScale = scale;
+	}
+
+	/**
+	 * Record the occlusion culling counts of the last frame.
+	 * @param occluders The number of occluder triangles drawn into the occlusion buffer
+	 * @param tested The number of boxes tested against it
+	 * @param culled The number of those that were hidden and not drawn
+	 */
+	public static void setOcclusion(int occluders, int tested, int culled) {
+		occluderTriangles = occluders;
+		occlusionTested = tested;
+		occlusionCulled = culled;
+	}
+
+	/**
+	 * Record the end of a tick, after the TickStage.TOTAL stage has been timed.
+	 */
+	public static void endTick(int particles, int fires) {
+		particleCount = particles;
+		fireCount = fires;
+		TickEvent event = new TickEvent();
+		if (event.shouldCommit()) {
+			event.spawn = tick.last(TickStage.SPAWN);
+			event.fires = tick.last(TickStage.FIRES);
+			event.particles = tick.last(TickStage.PARTICLES);
+			event.snapshot = tick.last(TickStage.SNAPSHOT);
+			event.total = tick.last(TickStage.TOTAL);
+			event.particleCount = particles;
+			event.fireCount = fires;
+			event.commit();
+		}
+	}
+
+	public int getParticleCount() {
+		return particleCount;
+	}
+
+	public int getFireCount() {
+		return fireCount;
+	}
+
+	public double getRenderScale() {
+		return renderScale;
+	}
+
+	public int getOccluderTriangles() {
+		return occluderTriangles;
+	}
+
+	public int getOcclusionTested() {
+		return occlusionTested;
+	}
+
+	public int getOcclusionCulled() {
+		return occlusionCulled;
+	}
+
+	public StageStatistics[] getFrameStages() {
+		return frame.getStatistics();
+	}
+
+	public StageStatistics[] getTickStages() {
+		return tick.getStatistics();
+	}
+
+	public void reset() {
+		frame.reset();
+		tick.reset();
+	}
+}
@@ -0,0 +1,48 @@
+package org.frustra.projector.metrics;
+
+/**
+ * Management interface for the projector's metrics, registered as org.frustra.projector:type=Metrics.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public interface ProjectorMetricsMXBean {
+	int getParticleCount();
+
+	int getFireCount();
+
+	/**
+	 * Fraction of the window size the last frame was drawn at, below 1 while dynamic resolution is holding the frame budget
+	 */
+	double getRenderScale();
+
+	/**
+	 * Occluder triangles drawn into the occlusion buffer in the last frame
+	 */
+	int getOccluderTriangles();
+
+	/**
+	 * Scene nodes and mesh copies tested against the occlusion buffer in the last frame
+	 */
+	int getOcclusionTested();
+
+	/**
+	 * Scene nodes and mesh copies skipped in the last frame because they were hidden behind occluders
+	 */
+	int getOcclusionCulled();
+
+	/**
+	 * Time spent in each stage of a frame
+	 */
+	StageStatistics[] getFrameStages();
+
+	/**
+	 * Time spent in each phase of a simulation tick
+	 */
+	StageStatistics[] getTickStages();
+
+	/**
+	 * Clear the histograms, to measure from now on
+	 */
+	void reset();
+}
@@ -0,0 +1,63 @@
+package org.frustra.projector.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * A summary of one stage's durations, shown as a composite value over JMX. Times are in milliseconds.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class StageStatistics {
+	private final String name;
+	private final long count;
+	private final double mean, p50, p90, p99, max;
+
+	@ConstructorProperties({"name", "count", "mean", "p50", "p90", "p99", "max"})
+	public StageStatistics(String name, long count, double mean, double p50, double p90, double p99, double max) {
+		this.name = name;
+		this.count = count;
+		this.mean = mean;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.max = max;
+	}
+
+	StageStatistics(String name, LatencyHistogram histogram) {
+		this(name, histogram.getCount(), histogram.getMean() / 1e6, histogram.getPercentile(50) / 1e6,
+			histogram.getPercentile(90) / 1e6, histogram.getPercentile(99) / 1e6, histogram.getMax() / 1e6);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	public double getP50() {
+		return p50;
+	}
+
+	public double getP90() {
+		return p90;
+	}
+
+	public double getP99() {
+		return p99;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	public String toString() {
+		return String.format("%s: n=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms", name, count, mean, p50, p90, p99, max);
+	}
+}
@@ -0,0 +1,59 @@
+package org.frustra.projector.metrics;
+
+/**
+ * Times the stages of a repeating piece of work (a frame or a tick), keeping a histogram per stage
+ * and the durations from the latest run.
+ * Only one thread should time each stage, but any thread can read the histograms.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class StageTimer<S extends Enum<S>> {
+	private final S[] stages;
+	private final LatencyHistogram[] histograms;
+	private final long[] last;
+
+	public StageTimer(Class<S> type) {
+		this.stages = type.getEnumConstants();
+		this.histograms = new LatencyHistogram[stages.length];
+		for (int i = 0; i < stages.length; i++) histograms[i] = new LatencyHistogram();
+		this.last = new long[stages.length];
+	}
+
+	/**
+	 * Record a stage as having run from start until now.
+	 * @return The current time, to use as the start of the next stage
+	 */
+	public long lap(S stage, long start) {
+		long now = System.nanoTime();
+		histograms[stage.ordinal()].record(now - start);
+		last[stage.ordinal()] = now - start;
+		return now;
+	}
+
+	/**
+	 * @return The duration of the stage in the latest run, in nanoseconds
+	 */
+	public long last(S stage) {
+		return last[stage.ordinal()];
+	}
+
+	public LatencyHistogram histogram(S stage) {
+		return histograms[stage.ordinal()];
+	}
+
+	/**
+	 * Summarize every stage's histogram.
+	 */
+	public StageStatistics[] getStatistics() {
+		StageStatistics[] stats = new StageStatistics[stages.length];
+		for (int i = 0; i < stages.length; i++) {
+			stats[i] = new StageStatistics(stages[i].name().toLowerCase(), histograms[i]);
+		}
+		return stats;
+	}
+
+	public void reset() {
+		for (int i = 0; i < histograms.length; i++) histograms[i].reset();
+	}
+}
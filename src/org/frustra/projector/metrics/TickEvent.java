@@ -0,0 +1,30 @@
+package org.frustra.projector.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event with the phase timings and simulation counts of one tick.
+ *
+ * @author Jacob Wirth
+ *
+ */
+@Name("org.frustra.projector.Tick")
+@Label("Tick")
+@Category("3D Projector")
+@Description("Time spent in each phase of a simulation tick")
+@StackTrace(false)
+class TickEvent extends Event {
+	@Label("Spawn") @Timespan(Timespan.NANOSECONDS) long spawn;
+	@Label("Fires") @Timespan(Timespan.NANOSECONDS) long fires;
+	@Label("Particles") @Timespan(Timespan.NANOSECONDS) long particles;
+	@Label("Snapshot") @Timespan(Timespan.NANOSECONDS) long snapshot;
+	@Label("Total") @Timespan(Timespan.NANOSECONDS) long total;
+	@Label("Particle Count") int particleCount;
+	@Label("Fire Count") int fireCount;
+}
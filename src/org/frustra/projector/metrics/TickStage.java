@@ -0,0 +1,20 @@
+package org.frustra.projector.metrics;
+
+/**
+ * The timed phases of a simulation tick, in the order EngineThread runs them.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public enum TickStage {
+	/** Adding particles from the camera */
+	SPAWN,
+	/** Emitting particles from fires */
+	FIRES,
+	/** Moving particles and testing collisions */
+	PARTICLES,
+	/** Copying state for the renderer */
+	SNAPSHOT,
+	/** The whole tick */
+	TOTAL
+}
@@ -0,0 +1,295 @@
+package org.frustra.projector.pointcloud;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.frustra.projector.gfx.Camera;
+
+/**
+ * A point cloud octree file written by PointCloudBuilder, drawn with level of detail.
+ *
+ * Only the node table is read when the file is opened. The file is memory mapped once, in chunks since one mapping
+ * can't be larger than 2 GB, and the points of a node are read from the mapping the first time the node is drawn, and decoded nodes are kept in a cache that drops the least recently
+ * drawn nodes once it holds more than a set number of points. So clouds larger than memory can be drawn,
+ * and the operating system decides which parts of the file stay in memory.
+ *
+ * Each frame select() picks the nodes to draw, starting from the root and always refining the node that looks
+ * largest on the screen, until the point budget is spent. The number of points drawn per frame depends on the
+ * budget and not on the size of the cloud, so neither does the frame time.
+ *
+ * Rendering reads nodes from one thread at a time.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class PointCloud implements Closeable {
+	/**
+	 * Nodes that look smaller than this many pixels across show all the detail the screen can, and aren't refined
+	 */
+	private static final double DETAIL_PIXELS = PointCloudBuilder.GRID;
+
+	/**
+	 * Most nodes read from the file in one frame, so that flying into a new part of the cloud doesn't stall a frame.
+	 * Nodes that aren't loaded yet are skipped and fill in over the next frames.
+	 */
+	private static final int MAX_LOADS_PER_FRAME = 32;
+
+	/**
+	 * The file is mapped in chunks starting this many bytes apart. Each chunk also covers the largest node
+	 * past its end, so that every node can be read from the chunk it starts in.
+	 */
+	private static final int CHUNK_SHIFT = 30;
+
+	public final Path file;
+	public final int nodeCount;
+	public final long pointCount;
+
+	// The node table, NODE_FIELDS per node: x, y, z, size, point count and the first child of the 8 children
+	private static final int NODE_FIELDS = 13;
+	private final float[] cubes;
+	private final int[] counts;
+	private final long[] offsets;
+	private final int[] children;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer[] chunks;
+	private final long cacheLimit;
+	private long cachedPoints = 0;
+	private final LinkedHashMap<Integer, Node> cache = new LinkedHashMap<Integer, Node>(256, 0.75f, true);
+
+	private long loads = 0, evictions = 0;
+
+	/**
+	 * The decoded points of one node.
+	 */
+	public static class Node {
+		public final float[] xyz;
+		public final int[] colors;
+		public final int count;
+
+		Node(int count) {
+			this.xyz = new float[count * 3];
+			this.colors = new int[count];
+			this.count = count;
+		}
+	}
+
+	// Scratch space for select(), nodes waiting to be refined as a heap ordered by screen size
+	private int[] heap = new int[64];
+	private double[] heapSize = new double[64];
+
+	/**
+	 * Open a point cloud file.
+	 * @param cacheLimit The most decoded points kept in memory
+	 */
+	public PointCloud(Path file, long cacheLimit) throws IOException {
+		this.file = file;
+		this.cacheLimit = cacheLimit;
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, PointCloudBuilder.HEADER_BYTES);
+			if (header.getInt() != PointCloudBuilder.MAGIC) throw new IOException("Not a point cloud file: " + file);
+			nodeCount = header.getInt();
+			pointCount = header.getLong();
+			if (nodeCount < 1) throw new IOException("Point cloud has no nodes: " + file);
+
+			ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, PointCloudBuilder.HEADER_BYTES, (long) nodeCount * PointCloudBuilder.NODE_ENTRY);
+			cubes = new float[nodeCount * 4];
+			counts = new int[nodeCount];
+			offsets = new long[nodeCount];
+			children = new int[nodeCount * 8];
+			for (int i = 0; i < nodeCount; i++) {
+				for (int k = 0; k < 4; k++) cubes[i * 4 + k] = table.getFloat();
+				counts[i] = table.getInt();
+				offsets[i] = table.getLong();
+				for (int k = 0; k < 8; k++) {
+					int child = table.getInt();
+					if (child >= nodeCount) throw new IOException("Point cloud node table is corrupt: " + file);
+					children[i * 8 + k] = child;
+				}
+			}
+
+			long size = channel.size();
+			long largest = 0;
+			for (int i = 0; i < nodeCount; i++) {
+				long bytes = (long) counts[i] * PointCloudBuilder.POINT_BYTES;
+				if (counts[i] < 0 || offsets[i] < 0 || offsets[i] + bytes > size) throw new IOException("Point cloud node table is corrupt: " + file);
+				largest = Math.max(largest, bytes);
+			}
+			if (largest > Integer.MAX_VALUE - (1L << CHUNK_SHIFT)) throw new IOException("Point cloud has a node too large to map: " + file);
+			chunks = new MappedByteBuffer[(int) ((size >> CHUNK_SHIFT) + 1)];
+			for (int c = 0; c < chunks.length; c++) {
+				long start = (long) c << CHUNK_SHIFT;
+				chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, (1L << CHUNK_SHIFT) + largest));
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Open a point cloud file, caching up to -Dprojector.pointCache decoded points (default 8 million).
+	 */
+	public static PointCloud open(Path file) throws IOException {
+		return new PointCloud(file, Long.getLong("projector.pointCache", 8000000));
+	}
+
+	/**
+	 * Pick the nodes to draw this frame, loading them as needed.
+	 * @param camera The camera the cloud is drawn from
+	 * @param width The screen width
+	 * @param budget The most points to select
+	 * @param out Receives the selected nodes, parents before their children
+	 * @return The number of nodes selected
+	 */
+	public int select(Camera camera, int width, int budget, Node[] out) {
+		int selected = 0, points = 0, loaded = 0, heapCount = 0;
+		heapCount = push(heapCount, 0, camera, width);
+		while (heapCount > 0 && selected < out.length) {
+			int index = heap[0];
+			double size = heapSize[0];
+			heapCount = pop(heapCount);
+			if (points + counts[index] > budget) continue;
+			Node node = cache.get(index);
+			if (node == null) {
+				// Wait for the next frame once this frame's loads are used up, without the node's children.
+				if (loaded >= MAX_LOADS_PER_FRAME) continue;
+				node = load(index);
+				loaded++;
+			}
+			out[selected++] = node;
+			points += node.count;
+			if (size <= DETAIL_PIXELS) continue;
+			for (int k = 0; k < 8; k++) {
+				int child = children[index * 8 + k];
+				if (child >= 0) heapCount = push(heapCount, child, camera, width);
+			}
+		}
+		evict();
+		return selected;
+	}
+
+	/**
+	 * Add a node to the heap if it is visible.
+	 * @return The new heap size
+	 */
+	private int push(int heapCount, int index, Camera camera, int width) {
+		float x = cubes[index * 4], y = cubes[index * 4 + 1], z = cubes[index * 4 + 2], s = cubes[index * 4 + 3];
+		if (!camera.isBoxVisible(x, y, z, x + s, y + s, z + s)) return heapCount;
+		double half = s * 0.5;
+		// The cube fits in a sphere with a radius of half its diagonal.
+		double size = camera.projectedSize(x + half, y + half, z + half, half * 1.7320508, width);
+		if (heapCount == heap.length) {
+			heap = Arrays.copyOf(heap, heapCount * 2);
+			heapSize = Arrays.copyOf(heapSize, heapCount * 2);
+		}
+		int i = heapCount;
+		while (i > 0) {
+			int parent = (i - 1) >> 1;
+			if (heapSize[parent] >= size) break;
+			heap[i] = heap[parent];
+			heapSize[i] = heapSize[parent];
+			i = parent;
+		}
+		heap[i] = index;
+		heapSize[i] = size;
+		return heapCount + 1;
+	}
+
+	/**
+	 * Remove the largest node from the heap.
+	 * @return The new heap size
+	 */
+	private int pop(int heapCount) {
+		heapCount--;
+		int last = heap[heapCount];
+		double lastSize = heapSize[heapCount];
+		int i = 0;
+		while (true) {
+			int child = i * 2 + 1;
+			if (child >= heapCount) break;
+			if (child + 1 < heapCount && heapSize[child + 1] > heapSize[child]) child++;
+			if (heapSize[child] <= lastSize) break;
+			heap[i] = heap[child];
+			heapSize[i] = heapSize[child];
+			i = child;
+		}
+		heap[i] = last;
+		heapSize[i] = lastSize;
+		return heapCount;
+	}
+
+	/**
+	 * Read and decode the points of a node, and add them to the cache.
+	 */
+	private Node load(int index) {
+		int count = counts[index];
+		Node node = new Node(count);
+		if (count > 0) {
+			MappedByteBuffer data = chunks[(int) (offsets[index] >> CHUNK_SHIFT)];
+			int p = (int) (offsets[index] & ((1L << CHUNK_SHIFT) - 1));
+			float x = cubes[index * 4], y = cubes[index * 4 + 1], z = cubes[index * 4 + 2];
+			float scale = cubes[index * 4 + 3] / 65535;
+			float[] xyz = node.xyz;
+			int[] colors = node.colors;
+			for (int i = 0; i < count; i++, p += PointCloudBuilder.POINT_BYTES) {
+				xyz[i * 3] = x + (data.getShort(p) & 0xFFFF) * scale;
+				xyz[i * 3 + 1] = y + (data.getShort(p + 2) & 0xFFFF) * scale;
+				xyz[i * 3 + 2] = z + (data.getShort(p + 4) & 0xFFFF) * scale;
+				colors[i] = (data.get(p + 6) & 0xFF) << 16 | (data.get(p + 7) & 0xFF) << 8 | (data.get(p + 8) & 0xFF);
+			}
+		}
+		cache.put(index, node);
+		cachedPoints += count;
+		loads++;
+		return node;
+	}
+
+	/**
+	 * Drop the least recently drawn nodes until the cache is under its limit.
+	 */
+	private void evict() {
+		Iterator<Node> it = cache.values().iterator();
+		while (cachedPoints > cacheLimit && it.hasNext()) {
+			cachedPoints -= it.next().count;
+			it.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * @return The number of decoded points in the cache
+	 */
+	public long getCachedPoints() {
+		return cachedPoints;
+	}
+
+	/**
+	 * @return The number of nodes read from the file so far
+	 */
+	public long getLoads() {
+		return loads;
+	}
+
+	/**
+	 * @return The number of nodes dropped from the cache so far
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public void close() throws IOException {
+		cache.clear();
+		cachedPoints = 0;
+		channel.close();
+	}
+}
@@ -0,0 +1,246 @@
+package org.frustra.projector.pointcloud;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+import org.frustra.projector.mesh.Mesh;
+import org.frustra.projector.mesh.MeshLoader;
+
+/**
+ * Builds a point cloud octree file that PointCloud can draw with level of detail.
+ *
+ * Every node of the octree is a cube. An inner node keeps an evenly spread sample of the points in its cube,
+ * at most one per cell of a GRID x GRID x GRID grid, and passes the rest down to its 8 children.
+ * Drawing a node and all of its ancestors shows every point in its cube, so drawing a node only adds detail.
+ * Leaves keep every point that reaches them.
+ *
+ * File layout (big endian):
+ * - Header: magic "PCO1", node count (int), point count (long)
+ * - Node table, NODE_ENTRY bytes per node: cube corner x, y, z and side length (floats), point count (int),
+ *   offset of the point data in the file (long), the 8 child node indices (ints, -1 if there is no child)
+ * - Point data, POINT_BYTES per point: x, y, z as unsigned shorts across the node's cube, then red, green, blue
+ *
+ * The points are built in memory, the file is what lets PointCloud draw clouds much larger than memory.
+ * Building takes about BYTES_PER_POINT bytes of heap per point, and at most MAX_POINTS points.
+ * main() also loads the whole input file with MeshLoader, which reads files of up to 2 GB. That is about
+ * 170 million points in a binary PLY file with float coordinates, and fewer in ASCII or OBJ files.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class PointCloudBuilder {
+	static final int MAGIC = 0x50434F31; // "PCO1"
+	static final int HEADER_BYTES = 16;
+	static final int NODE_ENTRY = 16 + 4 + 8 + 8 * 4;
+	static final int POINT_BYTES = 9;
+
+	/**
+	 * Sample grid size of an inner node, points drawn from a node are about 1 / GRID of its size apart
+	 */
+	static final int GRID = 32;
+
+	/**
+	 * Largest number of points in one build, the packed coordinates have to fit in one array
+	 */
+	public static final int MAX_POINTS = (Integer.MAX_VALUE - 8) / 3;
+
+	/**
+	 * Heap used per point while building: the coordinates, color and order, and the octant sort of the root
+	 */
+	public static final int BYTES_PER_POINT = 28;
+
+	// Nodes with at most this many points, or this deep, are not split
+	private static final int LEAF_POINTS = 16384;
+	private static final int MAX_DEPTH = 20;
+
+	private final float[] xyz;
+	private final int[] colors;
+	// Point indices, reordered so that every node's own points are next to each other
+	private final int[] order;
+	private final ArrayList<NodeBuild> nodes = new ArrayList<NodeBuild>();
+
+	private static class NodeBuild {
+		float x, y, z, size;
+		int start, count;
+		final int[] children = { -1, -1, -1, -1, -1, -1, -1, -1 };
+	}
+
+	private PointCloudBuilder(float[] xyz, int[] colors, int count) {
+		this.xyz = xyz;
+		this.colors = colors;
+		this.order = new int[count];
+		for (int i = 0; i < count; i++) order[i] = i;
+	}
+
+	/**
+	 * Build a point cloud file.
+	 * @param xyz Packed x, y, z point coordinates
+	 * @param colors The color of each point as 0xRRGGBB
+	 * @param count The number of points
+	 * @param file Where to write the point cloud
+	 */
+	public static void build(float[] xyz, int[] colors, int count, Path file) throws IOException {
+		if (count > MAX_POINTS) throw new IllegalArgumentException("A point cloud can be built from at most " + MAX_POINTS + " points");
+		if (xyz.length < count * 3 || colors.length < count) throw new IllegalArgumentException("Point arrays are shorter than the point count");
+		PointCloudBuilder builder = new PointCloudBuilder(xyz, colors, count);
+		builder.buildTree(count);
+		OutputStream stream = Files.newOutputStream(file);
+		try {
+			builder.write(new DataOutputStream(new BufferedOutputStream(stream, 1 << 16)));
+		} finally {
+			stream.close();
+		}
+	}
+
+	private void buildTree(int count) {
+		// The root is the cube around the bounding box of all points.
+		float[] min = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE };
+		float[] max = { -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+		for (int i = 0; i < count * 3; i += 3) {
+			for (int axis = 0; axis < 3; axis++) {
+				min[axis] = Math.min(min[axis], xyz[i + axis]);
+				max[axis] = Math.max(max[axis], xyz[i + axis]);
+			}
+		}
+		if (count == 0) min[0] = min[1] = min[2] = max[0] = max[1] = max[2] = 0;
+		float size = Math.max(max[0] - min[0], Math.max(max[1] - min[1], max[2] - min[2]));
+		// Grow the cube slightly so that points on its far sides still quantize inside it.
+		size = Math.max(size * 1.0001f, 1e-6f);
+		split(min[0], min[1], min[2], size, 0, count, 0);
+	}
+
+	/**
+	 * Create the node for the points order[start] to order[end - 1] in the given cube, and its children.
+	 * @return The node index
+	 */
+	private int split(float x, float y, float z, float size, int start, int end, int depth) {
+		NodeBuild node = new NodeBuild();
+		int index = nodes.size();
+		nodes.add(node);
+		node.x = x;
+		node.y = y;
+		node.z = z;
+		node.size = size;
+		node.start = start;
+		if (end - start <= LEAF_POINTS || depth >= MAX_DEPTH) {
+			node.count = end - start;
+			return index;
+		}
+
+		// Keep the first point in each grid cell, moving the kept points to the front of the range.
+		boolean[] taken = new boolean[GRID * GRID * GRID];
+		float scale = GRID / size;
+		int kept = start;
+		for (int k = start; k < end; k++) {
+			int i = order[k];
+			int cell = cell(xyz[i * 3] - x, scale) + cell(xyz[i * 3 + 1] - y, scale) * GRID + cell(xyz[i * 3 + 2] - z, scale) * GRID * GRID;
+			if (taken[cell]) continue;
+			taken[cell] = true;
+			order[k] = order[kept];
+			order[kept++] = i;
+		}
+		node.count = kept - start;
+
+		// Sort the remaining points into the 8 octants (counting sort).
+		float half = size / 2;
+		int[] octantCount = new int[8];
+		int rest = end - kept;
+		int[] octants = new int[rest];
+		for (int k = kept; k < end; k++) {
+			int i = order[k];
+			int octant = (xyz[i * 3] >= x + half ? 1 : 0) | (xyz[i * 3 + 1] >= y + half ? 2 : 0) | (xyz[i * 3 + 2] >= z + half ? 4 : 0);
+			octants[k - kept] = octant;
+			octantCount[octant]++;
+		}
+		int[] octantStart = new int[9];
+		for (int o = 0; o < 8; o++) octantStart[o + 1] = octantStart[o] + octantCount[o];
+		int[] sorted = new int[rest];
+		int[] fill = octantStart.clone();
+		for (int k = kept; k < end; k++) sorted[fill[octants[k - kept]]++] = order[k];
+		System.arraycopy(sorted, 0, order, kept, rest);
+
+		for (int o = 0; o < 8; o++) {
+			if (octantCount[o] == 0) continue;
+			node.children[o] = split(x + ((o & 1) != 0 ? half : 0), y + ((o & 2) != 0 ? half : 0), z + ((o & 4) != 0 ? half : 0), half,
+				kept + octantStart[o], kept + octantStart[o + 1], depth + 1);
+		}
+		return index;
+	}
+
+	private static int cell(float offset, float scale) {
+		int cell = (int) (offset * scale);
+		return cell < 0 ? 0 : cell >= GRID ? GRID - 1 : cell;
+	}
+
+	private void write(DataOutputStream out) throws IOException {
+		long points = 0;
+		for (NodeBuild node : nodes) points += node.count;
+		out.writeInt(MAGIC);
+		out.writeInt(nodes.size());
+		out.writeLong(points);
+
+		long offset = HEADER_BYTES + (long) nodes.size() * NODE_ENTRY;
+		for (NodeBuild node : nodes) {
+			out.writeFloat(node.x);
+			out.writeFloat(node.y);
+			out.writeFloat(node.z);
+			out.writeFloat(node.size);
+			out.writeInt(node.count);
+			out.writeLong(offset);
+			for (int o = 0; o < 8; o++) out.writeInt(node.children[o]);
+			offset += (long) node.count * POINT_BYTES;
+		}
+
+		for (NodeBuild node : nodes) {
+			float scale = 65535 / node.size;
+			for (int k = node.start; k < node.start + node.count; k++) {
+				int i = order[k];
+				out.writeShort(quantize(xyz[i * 3] - node.x, scale));
+				out.writeShort(quantize(xyz[i * 3 + 1] - node.y, scale));
+				out.writeShort(quantize(xyz[i * 3 + 2] - node.z, scale));
+				int color = colors[i];
+				out.writeByte(color >> 16);
+				out.writeByte(color >> 8);
+				out.writeByte(color);
+			}
+		}
+		out.flush();
+	}
+
+	private static int quantize(float offset, float scale) {
+		int q = Math.round(offset * scale);
+		return q < 0 ? 0 : q > 65535 ? 65535 : q;
+	}
+
+	/**
+	 * Convert the vertices of an OBJ or PLY file into a point cloud file, colored by height.
+	 * The points are moved next to the cube like a mesh given on the command line.
+	 * Usage: PointCloudBuilder input.ply output.pco
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: PointCloudBuilder INPUT OUTPUT");
+			System.err.println("The input is loaded into memory whole. Files of up to 2 GB are supported, about 170 million points");
+			System.err.println("in a binary PLY file with float coordinates, and building needs about " + BYTES_PER_POINT + " bytes of heap");
+			System.err.println("per point (set with -Xmx).");
+			System.exit(1);
+		}
+		long start = System.currentTimeMillis();
+		Mesh mesh = MeshLoader.load(Paths.get(args[0])).fit(60, 20, 15, 40);
+		int[] colors = new int[mesh.vertexCount];
+		float minY = mesh.bounds[1], height = Math.max(mesh.bounds[4] - minY, 1e-6f);
+		for (int i = 0; i < mesh.vertexCount; i++) {
+			// Blue at the bottom to orange at the top
+			float t = (mesh.positions[i * 3 + 1] - minY) / height;
+			colors[i] = (int) (40 + 215 * t) << 16 | (int) (80 + 80 * t) << 8 | (int) (255 - 215 * t);
+		}
+		build(mesh.positions, colors, mesh.vertexCount, Paths.get(args[1]));
+		System.out.println("Built a point cloud of " + mesh.vertexCount + " points in " + (System.currentTimeMillis() - start) + "ms");
+	}
+}
@@ -0,0 +1,86 @@
+package org.frustra.projector.replay;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.frustra.projector.InputHandler;
+
+/**
+ * Plays back a file written by InputRecorder, one recorded tick at a time.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class InputLog implements InputSource, Closeable {
+	public final Path file;
+
+	/**
+	 * The seed and screen size the recording was made with
+	 */
+	public final long seed;
+	public final int width, height;
+
+	private final DataInputStream in;
+	private final double[] values = new double[InputRecorder.VALUES];
+	private long ticks = 0;
+
+	public InputLog(Path file) throws IOException {
+		this.file = file;
+		this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+		if (in.readInt() != InputRecorder.MAGIC) {
+			in.close();
+			throw new IOException(file + " is not an input recording");
+		}
+		this.seed = in.readLong();
+		this.width = in.readInt();
+		this.height = in.readInt();
+	}
+
+	public boolean next(InputHandler input) {
+		int flags, changed;
+		try {
+			flags = in.read();
+			if (flags < 0) return false;
+			changed = in.readUnsignedByte();
+			for (int i = 0; i < InputRecorder.VALUES; i++) {
+				if ((changed & (1 << i)) != 0) values[i] = in.readDouble();
+			}
+		} catch (EOFException e) {
+			// The recording was cut off in the middle of a tick, stop at the last whole one.
+			return false;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		input.tx = values[0];
+		input.ty = values[1];
+		input.tz = values[2];
+		input.pitch = values[3];
+		input.yaw = values[4];
+		input.leftClick = (flags & InputRecorder.LEFT_CLICK) != 0;
+		input.rightClick = (flags & InputRecorder.RIGHT_CLICK) != 0;
+		input.useDepthBuffer = (flags & InputRecorder.USE_DEPTH_BUFFER) != 0;
+		input.depthBufferOverlay = (flags & InputRecorder.DEPTH_BUFFER_OVERLAY) != 0;
+		input.parallelRaster = (flags & InputRecorder.PARALLEL_RASTER) != 0;
+		input.incrementalRender = (flags & InputRecorder.INCREMENTAL_RENDER) != 0;
+		input.occlusionCulling = (flags & InputRecorder.OCCLUSION_CULLING) != 0;
+		ticks++;
+		return true;
+	}
+
+	/**
+	 * @return The number of ticks played back so far
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+}
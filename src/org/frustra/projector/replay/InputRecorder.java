@@ -0,0 +1,116 @@
+package org.frustra.projector.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.frustra.projector.InputHandler;
+
+/**
+ * Writes the input state of every tick to a file, so that a run can be replayed later by ReplayDriver.
+ *
+ * The file starts with a header of the magic number, the simulation seed and the screen size.
+ * Each tick is then a byte of button and drawing option flags, a byte saying which camera values changed
+ * since the previous tick, and the changed values as doubles. A tick where the camera didn't move takes two bytes.
+ * Dynamic resolution and pipelining aren't recorded, since replays draw every frame in full on one thread.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class InputRecorder implements Closeable {
+	public static final int MAGIC = 0x50524931;
+
+	// Flag bits
+	static final int LEFT_CLICK = 1;
+	static final int RIGHT_CLICK = 1 << 1;
+	static final int USE_DEPTH_BUFFER = 1 << 2;
+	static final int DEPTH_BUFFER_OVERLAY = 1 << 3;
+	static final int PARALLEL_RASTER = 1 << 4;
+	static final int INCREMENTAL_RENDER = 1 << 5;
+	static final int OCCLUSION_CULLING = 1 << 6;
+
+	// Camera values in the order they are stored, tx, ty, tz, pitch and yaw
+	static final int VALUES = 5;
+
+	public final Path file;
+	private final DataOutputStream out;
+	private final double[] last = new double[VALUES];
+	private final double[] values = new double[VALUES];
+	private long ticks = 0;
+	private boolean closed = false;
+
+	/**
+	 * Start a recording. An existing file is replaced.
+	 * @param seed The seed the simulation was started with
+	 * @param width The width of the screen
+	 * @param height The height of the screen
+	 */
+	public InputRecorder(Path file, long seed, int width, int height) throws IOException {
+		this.file = file;
+		this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+		out.writeInt(MAGIC);
+		out.writeLong(seed);
+		out.writeInt(width);
+		out.writeInt(height);
+	}
+
+	/**
+	 * Record the input state for one tick. If writing fails the error is printed and recording stops.
+	 */
+	public synchronized void record(InputHandler input) {
+		if (closed) return;
+		values[0] = input.tx;
+		values[1] = input.ty;
+		values[2] = input.tz;
+		values[3] = input.pitch;
+		values[4] = input.yaw;
+		int changed = 0;
+		for (int i = 0; i < VALUES; i++) {
+			// The first tick stores everything, the replay starts from nothing.
+			if (ticks == 0 || Double.doubleToLongBits(values[i]) != Double.doubleToLongBits(last[i])) changed |= 1 << i;
+		}
+		try {
+			out.writeByte(flags(input));
+			out.writeByte(changed);
+			for (int i = 0; i < VALUES; i++) {
+				if ((changed & (1 << i)) == 0) continue;
+				out.writeDouble(values[i]);
+				last[i] = values[i];
+			}
+			ticks++;
+		} catch (IOException e) {
+			e.printStackTrace();
+			closed = true;
+		}
+	}
+
+	/**
+	 * @return The number of ticks recorded so far
+	 */
+	public synchronized long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * Write out the remaining ticks and stop recording
+	 */
+	public synchronized void close() throws IOException {
+		closed = true;
+		out.close();
+	}
+
+	private static int flags(InputHandler input) {
+		int flags = 0;
+		if (input.leftClick) flags |= LEFT_CLICK;
+		if (input.rightClick) flags |= RIGHT_CLICK;
+		if (input.useDepthBuffer) flags |= USE_DEPTH_BUFFER;
+		if (input.depthBufferOverlay) flags |= DEPTH_BUFFER_OVERLAY;
+		if (input.parallelRaster) flags |= PARALLEL_RASTER;
+		if (input.incrementalRender) flags |= INCREMENTAL_RENDER;
+		if (input.occlusionCulling) flags |= OCCLUSION_CULLING;
+		return flags;
+	}
+}
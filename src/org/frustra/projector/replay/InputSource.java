@@ -0,0 +1,17 @@
+package org.frustra.projector.replay;
+
+import org.frustra.projector.InputHandler;
+
+/**
+ * Drives the camera and mouse buttons one tick at a time instead of the keyboard and mouse.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public interface InputSource {
+	/**
+	 * Set the input state for the next tick.
+	 * @return false once there are no more ticks, the input is left unchanged then
+	 */
+	boolean next(InputHandler input);
+}
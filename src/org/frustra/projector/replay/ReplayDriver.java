@@ -0,0 +1,108 @@
+package org.frustra.projector.replay;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.frustra.projector.EngineThread;
+import org.frustra.projector.Projector;
+import org.frustra.projector.capture.FrameCapture;
+import org.frustra.projector.metrics.FrameStage;
+import org.frustra.projector.metrics.Metrics;
+import org.frustra.projector.metrics.StageStatistics;
+
+/**
+ * Replays recorded or scripted input without a window, running one engine tick and drawing one frame per tick
+ * on a single thread, then prints the frame and tick timings. Every run of the same input draws the same frames,
+ * so the timings of two builds can be compared directly.
+ *
+ * Usage: ReplayDriver (recording.rec | path.txt | orbit) [model]
+ * - recording.rec is a file written with -Dprojector.record, replayed with its seed and screen size.
+ * - path.txt is a SplinePath keyframe file, and orbit is the built-in SplinePath.orbit().
+ * - model is a mesh or point cloud file, as given to Projector.
+ *
+ * -Dprojector.replay.warmup sets the number of ticks left out of the timings (120 by default),
+ * and -Dprojector.replay.size the screen size for paths as WIDTHxHEIGHT. Frames can be captured with -Dprojector.capture.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class ReplayDriver {
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: ReplayDriver (recording.rec | path.txt | orbit) [model]");
+			System.exit(1);
+		}
+		if (System.getProperty("java.awt.headless") == null) System.setProperty("java.awt.headless", "true");
+
+		InputSource source;
+		if (args[0].toLowerCase().endsWith(".rec")) {
+			InputLog log = new InputLog(Paths.get(args[0]));
+			Projector.seed = log.seed;
+			Projector.WIDTH = log.width;
+			Projector.HEIGHT = log.height;
+			source = log;
+		} else {
+			source = args[0].equals("orbit") ? SplinePath.orbit() : SplinePath.load(Paths.get(args[0]));
+			Projector.seed = Long.getLong("projector.seed", 1);
+			String[] size = System.getProperty("projector.replay.size", Projector.WIDTH + "x" + Projector.HEIGHT).split("x");
+			Projector.WIDTH = Integer.parseInt(size[0]);
+			Projector.HEIGHT = Integer.parseInt(size[1]);
+		}
+		int warmup = Integer.getInteger("projector.replay.warmup", 120);
+
+		if (args.length > 1) Projector.loadModel(args[1]);
+		Projector.createWorld();
+		Projector.capture = FrameCapture.fromProperties(Projector.screen.w, Projector.screen.h);
+
+		long start = System.nanoTime();
+		long ticks = replay(source, new EngineThread(), warmup);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		if (source instanceof InputLog) ((InputLog) source).close();
+		if (Projector.capture != null) {
+			Projector.capture.close();
+			System.out.println("Captured " + Projector.capture.getWritten() + " frames to " + Projector.capture.target + ", dropped " + Projector.capture.getDropped());
+		}
+
+		System.out.println(String.format("Replayed %d ticks of %s at %dx%d with seed %d in %.2fs", ticks, args[0], Projector.screen.w, Projector.screen.h, Projector.seed, seconds));
+		System.out.println(String.format("Final frame checksum %08x, %d particles, %d fires", Arrays.hashCode(Projector.screen.pixels), Projector.particles.size(), Projector.fires.size()));
+		if (ticks <= warmup) {
+			System.out.println("No timings, the input is no longer than the " + warmup + " warmup ticks");
+			return;
+		}
+		System.out.println("Frame stages, after " + warmup + " warmup ticks:");
+		print(Metrics.frame.getStatistics());
+		System.out.println("Tick stages:");
+		print(Metrics.tick.getStatistics());
+	}
+
+	/**
+	 * Run the engine and draw a frame for every tick of input, one after the other on this thread.
+	 * The world must already have been created.
+	 * @param warmup The number of ticks before the timings are reset
+	 * @return The number of ticks replayed
+	 */
+	public static long replay(InputSource source, EngineThread engine, int warmup) {
+		long ticks = 0;
+		while (source.next(Projector.input)) {
+			if (ticks == warmup) {
+				Metrics.frame.reset();
+				Metrics.tick.reset();
+			}
+			engine.tick();
+			Projector.screen.animationTime = ticks / 60.0;
+			long start = System.nanoTime();
+			Projector.screen.renderFrame();
+			Metrics.frame.lap(FrameStage.TOTAL, start);
+			Metrics.endFrame();
+			ticks++;
+		}
+		return ticks;
+	}
+
+	private static void print(StageStatistics[] stages) {
+		for (StageStatistics stage : stages) {
+			if (stage.getCount() > 0) System.out.println("  " + stage);
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package org.frustra.projector.replay;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.frustra.projector.InputHandler;
+
+/**
+ * A scripted camera path, a Catmull-Rom spline through keyframes at given ticks.
+ *
+ * Keyframes are read from a text file, one per line as: tick tx ty tz pitch yaw [fire]
+ * The values are the same as InputHandler's, so tx, ty and tz are the camera position negated. Fire is 1 to hold
+ * the left mouse button down until the next keyframe. Blank lines and lines starting with # are skipped.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class SplinePath implements InputSource {
+	private final int[] ticks;
+	// tx, ty, tz, pitch and yaw of each keyframe
+	private final double[][] values;
+	private final boolean[] fire;
+	private int tick;
+	private int segment = 0;
+
+	/**
+	 * @param ticks The tick of each keyframe, increasing
+	 * @param values The tx, ty, tz, pitch and yaw of each keyframe
+	 * @param fire Whether to hold the left mouse button down from each keyframe to the next
+	 */
+	public SplinePath(int[] ticks, double[][] values, boolean[] fire) {
+		if (ticks.length < 2) throw new IllegalArgumentException("A path needs at least two keyframes");
+		for (int i = 1; i < ticks.length; i++) {
+			if (ticks[i] <= ticks[i - 1]) throw new IllegalArgumentException("Keyframe ticks must increase, " + ticks[i] + " follows " + ticks[i - 1]);
+		}
+		this.ticks = ticks;
+		this.values = values;
+		this.fire = fire;
+		this.tick = ticks[0];
+	}
+
+	/**
+	 * Read keyframes from a text file
+	 */
+	public static SplinePath load(Path file) throws IOException {
+		List<String> lines = Files.readAllLines(file);
+		List<double[]> keys = new ArrayList<double[]>();
+		for (int n = 0; n < lines.size(); n++) {
+			String line = lines.get(n).trim();
+			if (line.isEmpty() || line.startsWith("#")) continue;
+			String[] parts = line.split("\\s+");
+			if (parts.length < 6 || parts.length > 7) throw new IOException(file + ":" + (n + 1) + ": expected tick tx ty tz pitch yaw [fire]");
+			double[] key = new double[7];
+			try {
+				for (int i = 0; i < parts.length; i++) key[i] = Double.parseDouble(parts[i]);
+			} catch (NumberFormatException e) {
+				throw new IOException(file + ":" + (n + 1) + ": " + e.getMessage());
+			}
+			keys.add(key);
+		}
+		int[] ticks = new int[keys.size()];
+		double[][] values = new double[keys.size()][InputRecorder.VALUES];
+		boolean[] fire = new boolean[keys.size()];
+		for (int i = 0; i < keys.size(); i++) {
+			double[] key = keys.get(i);
+			ticks[i] = (int) key[0];
+			System.arraycopy(key, 1, values[i], 0, InputRecorder.VALUES);
+			fire[i] = key[6] != 0;
+		}
+		try {
+			return new SplinePath(ticks, values, fire);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(file + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * A 16 second orbit around the scene starting from the default camera position,
+	 * firing particles at it for two stretches of a few seconds.
+	 */
+	public static SplinePath orbit() {
+		int keyframes = 17;
+		int[] ticks = new int[keyframes];
+		double[][] values = new double[keyframes][];
+		boolean[] fire = new boolean[keyframes];
+		double centerX = 20, centerY = 30, centerZ = 20;
+		double radius = 45, height = 70;
+		double lastYaw = 0;
+		for (int i = 0; i < keyframes; i++) {
+			double angle = Math.PI / 4 + i * Math.PI * 2 / (keyframes - 1);
+			double x = centerX + Math.cos(angle) * radius;
+			double z = centerZ + Math.sin(angle) * radius;
+			// Look at the center, the camera faces (sin(yaw) * cos(pitch), sin(pitch), -cos(yaw) * cos(pitch)).
+			double dx = centerX - x, dy = centerY - height, dz = centerZ - z;
+			double pitch = Math.atan2(dy, Math.sqrt(dx * dx + dz * dz));
+			double yaw = Math.atan2(dx, -dz);
+			// Keep turning the same way instead of jumping back a whole turn.
+			if (i > 0) yaw += Math.rint((lastYaw - yaw) / (Math.PI * 2)) * Math.PI * 2;
+			lastYaw = yaw;
+			ticks[i] = i * 60;
+			values[i] = new double[] {-x, -height, -z, pitch, yaw};
+			fire[i] = (i >= 2 && i < 5) || (i >= 10 && i < 13);
+		}
+		return new SplinePath(ticks, values, fire);
+	}
+
+	/**
+	 * @return The number of ticks from the first keyframe to the last
+	 */
+	public int length() {
+		return ticks[ticks.length - 1] - ticks[0] + 1;
+	}
+
+	public boolean next(InputHandler input) {
+		int last = ticks.length - 1;
+		if (tick > ticks[last]) return false;
+		while (segment < last - 1 && tick >= ticks[segment + 1]) segment++;
+		int i = segment;
+		double s = (double) (tick - ticks[i]) / (ticks[i + 1] - ticks[i]);
+		double[] p0 = values[Math.max(0, i - 1)], p1 = values[i], p2 = values[i + 1], p3 = values[Math.min(last, i + 2)];
+		input.tx = interpolate(p0[0], p1[0], p2[0], p3[0], s);
+		input.ty = interpolate(p0[1], p1[1], p2[1], p3[1], s);
+		input.tz = interpolate(p0[2], p1[2], p2[2], p3[2], s);
+		input.pitch = Math.max(Math.PI / -2, Math.min(Math.PI / 2, interpolate(p0[3], p1[3], p2[3], p3[3], s)));
+		input.yaw = interpolate(p0[4], p1[4], p2[4], p3[4], s);
+		input.leftClick = fire[i] && tick < ticks[last];
+		tick++;
+		return true;
+	}
+
+	/**
+	 * Catmull-Rom interpolation between p1 and p2, s goes from 0 to 1
+	 */
+	private static double interpolate(double p0, double p1, double p2, double p3, double s) {
+		return 0.5 * (2 * p1 + (p2 - p0) * s + (2 * p0 - 5 * p1 + 4 * p2 - p3) * s * s + (3 * p1 - p0 - 3 * p2 + p3) * s * s * s);
+	}
+}
@@ -0,0 +1,15 @@
+package org.frustra.projector.scene;
+
+/**
+ * Moves a scene node over time, by changing its local transform.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public interface Animator {
+	/**
+	 * Called once per frame by Scene.update(), before the node's world transform is recalculated.
+	 * @param time The frame time in seconds, the same for every node
+	 */
+	void animate(SceneNode node, double time);
+}
@@ -0,0 +1,55 @@
+package org.frustra.projector.scene;
+
+import org.frustra.projector.Projector;
+import org.frustra.projector.gfx.CommandList;
+import org.frustra.projector.gfx.OcclusionCuller;
+import org.frustra.projector.gfx.Screen;
+
+/**
+ * Recorded draw commands, given in local space. With the depth buffer on the triangles are drawn nearest first.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class CommandNode extends SceneNode {
+	public final CommandList list;
+
+	// The commands moved into world space. Not needed while the world transform doesn't move anything.
+	private CommandList world;
+	private long cachedVersion = -1;
+
+	/**
+	 * @param list Used directly. Call markDirty() after recording more into it.
+	 */
+	public CommandNode(String name, CommandList list) {
+		super(name);
+		this.list = list;
+	}
+
+	protected boolean getLocalBounds(double[] dst) {
+		return list.getBounds(dst);
+	}
+
+	public void draw(Screen screen) {
+		CommandList commands = getWorldList();
+		if (Projector.input.useDepthBuffer) commands.executeFrontToBack(screen, Projector.camera);
+		else commands.execute(screen);
+	}
+
+	public void drawOccluder(OcclusionCuller culler) {
+		getWorldList().drawOccluders(culler);
+	}
+
+	/**
+	 * @return The commands in world space
+	 */
+	private CommandList getWorldList() {
+		if (isWorldIdentity()) return list;
+		if (cachedVersion != getVersion()) {
+			if (world == null) world = new CommandList();
+			list.transformInto(getWorld(), world);
+			cachedVersion = getVersion();
+		}
+		return world;
+	}
+}
@@ -0,0 +1,150 @@
+package org.frustra.projector.scene;
+
+import java.util.Arrays;
+
+import org.frustra.projector.gfx.OcclusionCuller;
+import org.frustra.projector.gfx.Screen;
+import org.frustra.projector.linear.Matrix4x4;
+import org.frustra.projector.mesh.Mesh;
+
+/**
+ * One mesh drawn many times, each copy with its own transform, without copying the vertices for each one.
+ *
+ * Instance transforms are stored 12 floats each, the top three rows of the matrix in column major order,
+ * the same layout Screen.drawMeshInstances() takes.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class InstancedMeshNode extends SceneNode {
+	public final Mesh mesh;
+	public final int color;
+
+	// Instance transforms relative to this node, and combined with the world transform for drawing
+	private float[] instances = new float[12 * 16];
+	private float[] world = new float[12 * 16];
+	private int count = 0;
+	private long cachedVersion = -1;
+
+	// Scratch space for combining transforms
+	private final Matrix4x4 instance = new Matrix4x4(1);
+	private final Matrix4x4 combined = new Matrix4x4(1);
+	private final double[] box = new double[6];
+	private float[] occluderVertices = new float[0];
+
+	public InstancedMeshNode(String name, Mesh mesh, int color) {
+		super(name);
+		this.mesh = mesh;
+		this.color = color;
+	}
+
+	/**
+	 * @return The number of copies drawn
+	 */
+	public int getInstanceCount() {
+		return count;
+	}
+
+	/**
+	 * Add a copy of the mesh.
+	 * @param transform Places the copy relative to this node, it must not have a projection part
+	 * @return The index of the copy
+	 */
+	public int addInstance(Matrix4x4 transform) {
+		if (count * 12 == instances.length) {
+			instances = Arrays.copyOf(instances, instances.length * 2);
+			world = new float[instances.length];
+		}
+		setInstance(count++, transform);
+		return count - 1;
+	}
+
+	/**
+	 * Move a copy of the mesh.
+	 */
+	public void setInstance(int i, Matrix4x4 transform) {
+		double[] m = transform.m;
+		int o = i * 12;
+		for (int column = 0; column < 4; column++) {
+			instances[o + column * 3] = (float) m[column * 4];
+			instances[o + column * 3 + 1] = (float) m[column * 4 + 1];
+			instances[o + column * 3 + 2] = (float) m[column * 4 + 2];
+		}
+		markDirty();
+	}
+
+	/**
+	 * Remove every copy.
+	 */
+	public void clearInstances() {
+		count = 0;
+		markDirty();
+	}
+
+	protected boolean getLocalBounds(double[] dst) {
+		dst[0] = dst[1] = dst[2] = Double.POSITIVE_INFINITY;
+		dst[3] = dst[4] = dst[5] = Double.NEGATIVE_INFINITY;
+		float[] b = mesh.bounds;
+		for (int i = 0; i < count; i++) {
+			load(instances, i, instance).transformBox(b[0], b[1], b[2], b[3], b[4], b[5], box);
+			for (int axis = 0; axis < 3; axis++) {
+				dst[axis] = Math.min(dst[axis], box[axis]);
+				dst[axis + 3] = Math.max(dst[axis + 3], box[axis + 3]);
+			}
+		}
+		return count > 0 && mesh.triangleCount > 0;
+	}
+
+	public void draw(Screen screen) {
+		screen.drawMeshInstances(mesh, getWorldInstances(), count, color);
+	}
+
+	public void drawOccluder(OcclusionCuller culler) {
+		float[] transforms = getWorldInstances();
+		int vertices = mesh.vertexCount;
+		if (occluderVertices.length < vertices * 3) occluderVertices = new float[vertices * 3];
+		float[] src = mesh.positions, dst = occluderVertices;
+		for (int i = 0; i < count; i++) {
+			int o = i * 12;
+			for (int j = 0; j < vertices * 3; j += 3) {
+				float x = src[j], y = src[j + 1], z = src[j + 2];
+				dst[j] = transforms[o] * x + transforms[o + 3] * y + transforms[o + 6] * z + transforms[o + 9];
+				dst[j + 1] = transforms[o + 1] * x + transforms[o + 4] * y + transforms[o + 7] * z + transforms[o + 10];
+				dst[j + 2] = transforms[o + 2] * x + transforms[o + 5] * y + transforms[o + 8] * z + transforms[o + 11];
+			}
+			culler.addOccluder(dst, vertices, mesh.indices, mesh.triangleCount);
+		}
+	}
+
+	/**
+	 * @return The instance transforms combined with the world transform
+	 */
+	private float[] getWorldInstances() {
+		if (isWorldIdentity()) return instances;
+		if (cachedVersion != getVersion()) {
+			for (int i = 0; i < count; i++) {
+				getWorld().mulInto(load(instances, i, instance), combined);
+				double[] m = combined.m;
+				int o = i * 12;
+				for (int column = 0; column < 4; column++) {
+					world[o + column * 3] = (float) m[column * 4];
+					world[o + column * 3 + 1] = (float) m[column * 4 + 1];
+					world[o + column * 3 + 2] = (float) m[column * 4 + 2];
+				}
+			}
+			cachedVersion = getVersion();
+		}
+		return world;
+	}
+
+	/**
+	 * Unpack instance i into a matrix.
+	 */
+	private static Matrix4x4 load(float[] transforms, int i, Matrix4x4 dst) {
+		int o = i * 12;
+		for (int column = 0; column < 4; column++) {
+			dst.setColumn(column, transforms[o + column * 3], transforms[o + column * 3 + 1], transforms[o + column * 3 + 2], column == 3 ? 1 : 0);
+		}
+		return dst;
+	}
+}
@@ -0,0 +1,57 @@
+package org.frustra.projector.scene;
+
+import org.frustra.projector.gfx.OcclusionCuller;
+import org.frustra.projector.gfx.Screen;
+import org.frustra.projector.mesh.Mesh;
+
+/**
+ * A mesh of one color, given in local space.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class MeshNode extends SceneNode {
+	public final Mesh mesh;
+	public final int color;
+
+	// The mesh moved into world space, sharing the triangles. Not needed while the world transform doesn't move anything.
+	private Mesh world;
+	private long cachedVersion = -1;
+
+	/**
+	 * @param mesh Used directly. Call markDirty() after moving its vertices.
+	 */
+	public MeshNode(String name, Mesh mesh, int color) {
+		super(name);
+		this.mesh = mesh;
+		this.color = color;
+	}
+
+	protected boolean getLocalBounds(double[] dst) {
+		for (int i = 0; i < 6; i++) dst[i] = mesh.bounds[i];
+		return mesh.triangleCount > 0;
+	}
+
+	public void draw(Screen screen) {
+		screen.drawMesh(getWorldMesh(), color);
+	}
+
+	public void drawOccluder(OcclusionCuller culler) {
+		Mesh m = getWorldMesh();
+		culler.addOccluder(m.positions, m.vertexCount, m.indices, m.triangleCount);
+	}
+
+	/**
+	 * @return The mesh in world space
+	 */
+	private Mesh getWorldMesh() {
+		if (isWorldIdentity()) return mesh;
+		if (cachedVersion != getVersion()) {
+			if (world == null) world = new Mesh(new float[mesh.vertexCount * 3], mesh.vertexCount, mesh.indices, mesh.triangleCount);
+			transformPoints(mesh.positions, world.positions, mesh.vertexCount);
+			world.updateBounds();
+			cachedVersion = getVersion();
+		}
+		return world;
+	}
+}
@@ -0,0 +1,50 @@
+package org.frustra.projector.scene;
+
+import org.frustra.projector.gfx.Screen;
+
+/**
+ * Points of one color, given in local space.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class PointsNode extends SceneNode {
+	public final float[] xyz;
+	public final int count;
+	public final int color;
+
+	// The points moved into world space, redone when the world transform changes
+	private final float[] world;
+	private long cachedVersion = -1;
+
+	/**
+	 * @param xyz Packed x, y, z coordinates, used directly. Call markDirty() after changing them.
+	 */
+	public PointsNode(String name, float[] xyz, int count, int color) {
+		super(name);
+		this.xyz = xyz;
+		this.count = count;
+		this.color = color;
+		this.world = new float[count * 3];
+	}
+
+	protected boolean getLocalBounds(double[] dst) {
+		dst[0] = dst[1] = dst[2] = Double.POSITIVE_INFINITY;
+		dst[3] = dst[4] = dst[5] = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < count * 3; i += 3) {
+			for (int axis = 0; axis < 3; axis++) {
+				dst[axis] = Math.min(dst[axis], xyz[i + axis]);
+				dst[axis + 3] = Math.max(dst[axis + 3], xyz[i + axis]);
+			}
+		}
+		return count > 0;
+	}
+
+	public void draw(Screen screen) {
+		if (cachedVersion != getVersion()) {
+			transformPoints(xyz, world, count);
+			cachedVersion = getVersion();
+		}
+		screen.drawPoints(world, count, color);
+	}
+}
@@ -0,0 +1,217 @@
+package org.frustra.projector.scene;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.frustra.projector.Projector;
+import org.frustra.projector.gfx.CommandList;
+import org.frustra.projector.gfx.OcclusionCuller;
+import org.frustra.projector.gfx.Screen;
+import org.frustra.projector.linear.Vector3;
+
+/**
+ * The scene graph drawn by Screen. Once per frame update() runs the animators with the frame time,
+ * recalculates the world transforms of the nodes that changed, and sorts the nodes into the static scene
+ * and the moving one. Nodes with an animator, and their children, are moving.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class Scene {
+	public final SceneNode root = new SceneNode("root");
+
+	// Nodes in drawing order, as of the last update
+	private final ArrayList<SceneNode> staticNodes = new ArrayList<SceneNode>();
+	private final ArrayList<SceneNode> movingNodes = new ArrayList<SceneNode>();
+	private final ArrayList<SceneNode> lastStatic = new ArrayList<SceneNode>();
+	private double time;
+	private long staticVersion = 0;
+
+	/**
+	 * Animate the scene to a frame time and recalculate the world transforms that changed.
+	 * @param time The frame time in seconds
+	 * @return Whether the static scene changed since the last update, see getStaticVersion()
+	 */
+	public boolean update(double time) {
+		this.time = time;
+		staticNodes.clear();
+		movingNodes.clear();
+		boolean changed = visit(root, false, false, time);
+		// Adding, removing or animating a static node changes the static scene too.
+		if (staticNodes.size() != lastStatic.size()) changed = true;
+		for (int i = 0; i < staticNodes.size() && !changed; i++) {
+			if (staticNodes.get(i) != lastStatic.get(i)) changed = true;
+		}
+		if (changed) {
+			staticVersion++;
+			lastStatic.clear();
+			for (int i = 0; i < staticNodes.size(); i++) lastStatic.add(staticNodes.get(i));
+		}
+		return changed;
+	}
+
+	/**
+	 * @return Whether a static node moved
+	 */
+	private boolean visit(SceneNode node, boolean parentChanged, boolean moving, double time) {
+		if (node.animator != null) {
+			node.animator.animate(node, time);
+			moving = true;
+		}
+		boolean changed = node.updateWorld(parentChanged);
+		if (moving) movingNodes.add(node);
+		else staticNodes.add(node);
+		boolean staticChanged = changed && !moving;
+		for (int i = 0; i < node.getChildCount(); i++) {
+			if (visit(node.getChild(i), changed, moving, time)) staticChanged = true;
+		}
+		return staticChanged;
+	}
+
+	/**
+	 * @return The frame time of the last update
+	 */
+	public double getTime() {
+		return time;
+	}
+
+	/**
+	 * @return A number that changes every time an update changes the static scene
+	 */
+	public long getStaticVersion() {
+		return staticVersion;
+	}
+
+	/**
+	 * @return The nodes that don't move, as of the last update
+	 */
+	public List<SceneNode> getStaticNodes() {
+		return staticNodes;
+	}
+
+	/**
+	 * @return The nodes with an animator and their children, as of the last update
+	 */
+	public List<SceneNode> getMovingNodes() {
+		return movingNodes;
+	}
+
+	/**
+	 * Draw the nodes that don't move, skipping the ones out of view.
+	 */
+	public void drawStatic(Screen screen) {
+		draw(staticNodes, screen);
+	}
+
+	/**
+	 * Draw the nodes that move, skipping the ones out of view.
+	 */
+	public void drawMoving(Screen screen) {
+		draw(movingNodes, screen);
+	}
+
+	private static void draw(List<SceneNode> nodes, Screen screen) {
+		for (int i = 0; i < nodes.size(); i++) {
+			SceneNode node = nodes.get(i);
+			double[] b = node.getWorldBounds();
+			if (b == null || !Projector.camera.isBoxVisible(b[0], b[1], b[2], b[3], b[4], b[5])) continue;
+			if (screen.occlusion.isBoxOccluded(b[0], b[1], b[2], b[3], b[4], b[5])) continue;
+			node.draw(screen);
+		}
+	}
+
+	/**
+	 * Draw the static occluders in view into an occlusion buffer, after the update for the frame.
+	 * Moving nodes are never used, since in incremental mode the static scene is kept without them.
+	 */
+	public void drawOccluders(OcclusionCuller culler) {
+		for (int i = 0; i < staticNodes.size(); i++) {
+			SceneNode node = staticNodes.get(i);
+			if (!node.occluder) continue;
+			double[] b = node.getWorldBounds();
+			if (b == null || !Projector.camera.isBoxVisible(b[0], b[1], b[2], b[3], b[4], b[5])) continue;
+			node.drawOccluder(culler);
+		}
+	}
+
+	/**
+	 * Create the default scene, a turning sphere of points above a cube with a face intersecting it.
+	 */
+	public static Scene createDefault() {
+		Scene scene = new Scene();
+
+		// Spread the points evenly over the sphere, along a spiral.
+		int points = 500;
+		float[] xyz = new float[points * 3];
+		double inc = Math.PI * (3.0 - Math.sqrt(5));
+		double off = 2.0 / points;
+		for (int k = 0; k < points; k++) {
+			double y = k * off - 1.0 + (off / 2.0);
+			double r = Math.sqrt(1 - y * y);
+			double phi = k * inc;
+			xyz[k * 3] = (float) (Math.cos(phi) * r * 10);
+			xyz[k * 3 + 1] = (float) (y * 10);
+			xyz[k * 3 + 2] = (float) (Math.sin(phi) * r * 10);
+		}
+		SceneNode sphere = new PointsNode("sphere", xyz, points, 0xFFFFFF);
+		sphere.animator = new Animator() {
+			public void animate(SceneNode node, double time) {
+				// One turn every 2 pi seconds.
+				node.setTransform(15, 55, 15, time, 1);
+			}
+		};
+		scene.root.add(sphere);
+
+		SceneNode cube = new CommandNode("cube", recordCube());
+		cube.setTransform(5, 5, 5, 0, 1);
+		cube.occluder = true;
+		scene.root.add(cube);
+		return scene;
+	}
+
+	/**
+	 * Record a 20 unit cube with a corner at the origin, and a face intersecting it.
+	 */
+	private static CommandList recordCube() {
+		CommandList list = new CommandList();
+
+		// The 8 points on the cube.
+		Vector3 vec1 = new Vector3(0, 0, 0);
+		Vector3 vec2 = new Vector3(20, 0, 0);
+		Vector3 vec3 = new Vector3(0, 20, 0);
+		Vector3 vec4 = new Vector3(0, 0, 20);
+		Vector3 vec5 = new Vector3(20, 20, 0);
+		Vector3 vec6 = new Vector3(0, 20, 20);
+		Vector3 vec7 = new Vector3(20, 0, 20);
+		Vector3 vec8 = new Vector3(20, 20, 20);
+
+		// Top and bottom face lines.
+		list.addLine(vec3, vec8, 0xFFFFFF);
+		list.addLine(vec5, vec6, 0xFFFFFF);
+
+		list.addLine(vec1, vec7, 0xFFFFFF);
+		list.addLine(vec4, vec2, 0xFFFFFF);
+
+		// The 4 solid faces.
+		list.addTriangle(vec1, vec4, vec6, 0x550000);
+		list.addTriangle(vec1, vec3, vec6, 0x550000);
+
+		list.addTriangle(vec2, vec7, vec8, 0x555500);
+		list.addTriangle(vec2, vec5, vec8, 0x555500);
+
+		list.addTriangle(vec1, vec2, vec5, 0x000055);
+		list.addTriangle(vec1, vec3, vec5, 0x000055);
+
+		list.addTriangle(vec4, vec7, vec8, 0x005555);
+		list.addTriangle(vec4, vec6, vec8, 0x005555);
+
+		// A face intersecting another one of the faces to demonstrate and test the depth buffer.
+		Vector3 face1 = new Vector3(10, 0, 10);
+		Vector3 face2 = new Vector3(30, 0, 10);
+		Vector3 face3 = new Vector3(30, 20, 10);
+		Vector3 face4 = new Vector3(10, 20, 10);
+		list.addTriangle(face1, face2, face3, 0x005555);
+		list.addTriangle(face1, face4, face3, 0x005555);
+		return list;
+	}
+}
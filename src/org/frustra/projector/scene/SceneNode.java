@@ -0,0 +1,203 @@
+package org.frustra.projector.scene;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.frustra.projector.gfx.OcclusionCuller;
+import org.frustra.projector.gfx.Screen;
+import org.frustra.projector.linear.Matrix4x4;
+
+/**
+ * A node in the scene graph, placed relative to its parent by a local transform.
+ *
+ * The world transform (parent's world * local) and the box around the node's contents in world space are cached,
+ * and only recalculated by Scene.update() when the node or one of its parents was marked dirty.
+ * Subclasses draw something with the world transform, this class on its own only groups its children.
+ *
+ * @author Jacob Wirth
+ *
+ */
+public class SceneNode {
+	public final String name;
+
+	/**
+	 * Moves the node every frame if set, which also makes it and its children part of the moving scene
+	 */
+	public Animator animator;
+
+	/**
+	 * Draw the node into the occlusion buffer before the rest of the scene, to skip what is behind it.
+	 * Only nodes that don't move are used, and only ones that can draw occluders, like meshes and command lists.
+	 */
+	public boolean occluder = false;
+
+	private final Matrix4x4 local = new Matrix4x4(1);
+	private final Matrix4x4 world = new Matrix4x4(1);
+	private boolean identity = true;
+	private boolean dirty = true;
+	private long version = 0;
+
+	private SceneNode parent;
+	private final List<SceneNode> children = new ArrayList<SceneNode>();
+
+	// The box around the contents in world space, if there are any
+	private final double[] bounds = new double[6];
+	private boolean bounded = false;
+
+	public SceneNode(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Add a child, taking it away from its current parent.
+	 */
+	public void add(SceneNode child) {
+		if (child.parent != null) child.parent.remove(child);
+		children.add(child);
+		child.parent = this;
+		child.dirty = true;
+	}
+
+	public void remove(SceneNode child) {
+		if (children.remove(child)) child.parent = null;
+	}
+
+	public SceneNode getParent() {
+		return parent;
+	}
+
+	/**
+	 * @return The children, which can't be changed through this list
+	 */
+	public List<SceneNode> getChildren() {
+		return Collections.unmodifiableList(children);
+	}
+
+	int getChildCount() {
+		return children.size();
+	}
+
+	SceneNode getChild(int i) {
+		return children.get(i);
+	}
+
+	/**
+	 * @return The local transform. Call markDirty() after changing it.
+	 */
+	public Matrix4x4 getLocal() {
+		return local;
+	}
+
+	public void setLocal(Matrix4x4 matrix) {
+		local.set(matrix);
+		dirty = true;
+	}
+
+	/**
+	 * Set the local transform to a uniform scale, then a turn around the vertical axis, then a move.
+	 * @param angle The turn in radians, from x towards z
+	 */
+	public void setTransform(double x, double y, double z, double angle, double scale) {
+		double cos = Math.cos(angle) * scale, sin = Math.sin(angle) * scale;
+		double[] m = local.m;
+		m[0] = cos; m[1] = 0; m[2] = sin; m[3] = 0;
+		m[4] = 0; m[5] = scale; m[6] = 0; m[7] = 0;
+		m[8] = -sin; m[9] = 0; m[10] = cos; m[11] = 0;
+		m[12] = x; m[13] = y; m[14] = z; m[15] = 1;
+		dirty = true;
+	}
+
+	/**
+	 * Recalculate the world transform and bounds at the next update, after the local transform or the contents changed.
+	 */
+	public void markDirty() {
+		dirty = true;
+	}
+
+	/**
+	 * @return The world transform as of the last Scene.update()
+	 */
+	public Matrix4x4 getWorld() {
+		return world;
+	}
+
+	/**
+	 * @return Whether the world transform doesn't move anything
+	 */
+	public boolean isWorldIdentity() {
+		return identity;
+	}
+
+	/**
+	 * @return A number that changes every time the world transform or bounds are recalculated,
+	 *         for caching things made from them
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return The box around the contents in world space as minX, minY, minZ, maxX, maxY, maxZ, or null if there is nothing to draw
+	 */
+	public double[] getWorldBounds() {
+		return bounded ? bounds : null;
+	}
+
+	/**
+	 * Find the box around the contents in local space.
+	 * @param dst Receives minX, minY, minZ, maxX, maxY, maxZ
+	 * @return false if there is nothing to draw
+	 */
+	protected boolean getLocalBounds(double[] dst) {
+		return false;
+	}
+
+	/**
+	 * Draw the contents with the world transform. Only called when the world bounds might be in view.
+	 */
+	public void draw(Screen screen) {}
+
+	/**
+	 * Draw the solid parts of the contents into an occlusion buffer with the world transform.
+	 * Only called for occluders when the world bounds might be in view.
+	 */
+	public void drawOccluder(OcclusionCuller culler) {}
+
+	/**
+	 * Recalculate the world transform and bounds if this node or a parent changed.
+	 * @return Whether they were recalculated
+	 */
+	boolean updateWorld(boolean parentChanged) {
+		if (!dirty && !parentChanged) return false;
+		if (parent == null) world.set(local);
+		else parent.world.mulInto(local, world);
+		identity = isIdentity(world);
+		bounded = getLocalBounds(bounds);
+		if (bounded) world.transformBox(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5], bounds);
+		dirty = false;
+		version++;
+		return true;
+	}
+
+	private static boolean isIdentity(Matrix4x4 matrix) {
+		double[] m = matrix.m;
+		for (int i = 0; i < 16; i++) {
+			if (m[i] != (i % 5 == 0 ? 1 : 0)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Move packed x, y, z coordinates by the world transform.
+	 */
+	protected void transformPoints(float[] src, float[] dst, int count) {
+		double[] m = world.m;
+		for (int i = 0; i < count * 3; i += 3) {
+			double x = src[i], y = src[i + 1], z = src[i + 2];
+			dst[i] = (float) (m[0] * x + m[4] * y + m[8] * z + m[12]);
+			dst[i + 1] = (float) (m[1] * x + m[5] * y + m[9] * z + m[13]);
+			dst[i + 2] = (float) (m[2] * x + m[6] * y + m[10] * z + m[14]);
+		}
+	}
+}